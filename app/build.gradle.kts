@@ -31,6 +31,11 @@ android {
     }
     buildFeatures {
         viewBinding = true
+        buildConfig = true
+    }
+    testOptions {
+        // Os testes de JVM passam pelo DataLog, que chama android.util.Log
+        unitTests.isReturnDefaultValues = true
     }
 }
 
@@ -44,6 +49,8 @@ dependencies {
     implementation(libs.navigation.fragment)
     implementation(libs.navigation.ui)
     testImplementation(libs.junit)
+    // Mesma versão do OkHttp trazido pelo Retrofit
+    testImplementation(libs.mockwebserver)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     
@@ -70,4 +77,7 @@ dependencies {
     
     // Gson para conversão JSON
     implementation("com.google.code.gson:gson:2.10.1")
+    
+    // WorkManager para enviar a fila de alterações em segundo plano
+    implementation("androidx.work:work-runtime:2.9.1")
 }
\ No newline at end of file
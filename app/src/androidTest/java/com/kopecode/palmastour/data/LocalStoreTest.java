@@ -0,0 +1,92 @@
+package com.kopecode.palmastour.data;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Atualização da cópia local com páginas do servidor, em um banco em memória.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocalStoreTest {
+    private LocalStore store;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = new LocalStore(context, null);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void summaryPageKeepsLocalPhotos() {
+        Location kept = location("kept", "Praia da Graciosa", 2000);
+        kept.addPhoto(photo("photo-1", kept, 2100));
+        kept.addPhoto(photo("photo-2", kept, 2200));
+        store.putLocation(kept);
+        store.putLocation(location("gone", "Parque Cesamar", 1000));
+
+        // O resumo traz só as colunas da localização e a contagem, sem as fotos
+        Location summary = location("kept", "Praia da Graciosa (orla)", 2000);
+        summary.setPhotoCount(2);
+        store.replaceLocations(null, null, Collections.singletonList(summary), false);
+
+        assertEquals(2, store.getPhotosByLocation("kept").size());
+        assertEquals("Praia da Graciosa (orla)", store.getLocation("kept").getName());
+        assertNull(store.getLocation("gone"));
+    }
+
+    @Test
+    public void summaryPageOnlyDeletesInsideRange() {
+        Location newer = location("newer", "Ponte FHC", 3000);
+        Location older = location("older", "Palácio Araguaia", 1000);
+        older.addPhoto(photo("photo-1", older, 1100));
+        store.putLocation(newer);
+        store.putLocation(older);
+
+        // Página que começa depois de "newer" e termina em "older"
+        PageCursor after = new PageCursor(newer.getCreatedAt(), newer.getId());
+        PageCursor last = new PageCursor(older.getCreatedAt(), older.getId());
+        store.replaceLocations(after, last, Collections.singletonList(location("older", "Palácio Araguaia", 1000)), false);
+
+        assertNotNull(store.getLocation("newer"));
+        assertEquals(1, store.getPhotosByLocation("older").size());
+    }
+
+    private static Location location(String id, String name, long createdAt) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName(name);
+        location.setLatitude(-10.18);
+        location.setLongitude(-48.33);
+        location.setCreatedAt(new Date(createdAt));
+        return location;
+    }
+
+    private static Photo photo(String id, Location location, long createdAt) {
+        Photo photo = new Photo();
+        photo.setId(id);
+        photo.setLocationId(location.getId());
+        photo.setFilePath("/fotos/" + id + ".jpg");
+        photo.setCreatedAt(new Date(createdAt));
+        return photo;
+    }
+}
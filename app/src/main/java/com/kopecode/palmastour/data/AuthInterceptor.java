@@ -0,0 +1,39 @@
+package com.kopecode.palmastour.data;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Adiciona os cabeçalhos {@code apikey} e {@code Authorization} às requisições
+ * feitas ao Supabase, para que cada chamada não precise montá-los.
+ * Requisições para outros hosts seguem sem a chave.
+ */
+class AuthInterceptor implements Interceptor {
+    private final String supabaseUrl;
+    private final String supabaseKey;
+
+    AuthInterceptor(String supabaseUrl, String supabaseKey) {
+        this.supabaseUrl = supabaseUrl;
+        this.supabaseKey = supabaseKey;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!request.url().toString().startsWith(supabaseUrl)) {
+            return chain.proceed(request);
+        }
+
+        Request.Builder builder = request.newBuilder();
+        if (request.header("apikey") == null) {
+            builder.header("apikey", supabaseKey);
+        }
+        if (request.header("Authorization") == null) {
+            builder.header("Authorization", "Bearer " + supabaseKey);
+        }
+        return chain.proceed(builder.build());
+    }
+}
@@ -0,0 +1,62 @@
+package com.kopecode.palmastour.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de uma gravação em lote ({@link SupabaseClient#saveLocations(List)},
+ * {@link SupabaseClient#savePhotos(List)}), linha a linha
+ */
+public final class BulkResult {
+    private final List<String> savedIds = new ArrayList<>();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+    private int requestCount;
+
+    void saved(String id) {
+        savedIds.add(id);
+    }
+
+    void failed(String id, String error) {
+        errors.put(id, error);
+    }
+
+    void countRequest() {
+        requestCount++;
+    }
+
+    /**
+     * Se todas as linhas foram gravadas
+     */
+    public boolean isComplete() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * IDs das linhas gravadas, na ordem da lista enviada
+     */
+    public List<String> getSavedIds() {
+        return Collections.unmodifiableList(savedIds);
+    }
+
+    /**
+     * Linhas que não foram gravadas: ID e o motivo (resposta do servidor ou falha de rede)
+     */
+    public Map<String, String> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Requisições feitas, incluindo as divisões de lotes recusados
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return savedIds.size() + " gravadas, " + errors.size() + " com erro, em " + requestCount + " requisições";
+    }
+}
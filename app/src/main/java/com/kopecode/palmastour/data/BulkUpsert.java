@@ -0,0 +1,215 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Gravação de muitas linhas de uma tabela em poucas requisições: as linhas vão
+ * em arrays JSON com {@code Prefer: resolution=merge-duplicates} (inserem ou
+ * substituem pelo {@code id}), em lotes limitados pelo número de linhas e pelo
+ * tamanho do corpo.
+ *
+ * O PostgREST grava cada lote em uma única instrução. Se um lote for recusado por
+ * causa dos dados (400, 409 ou 422; ex.: foto de uma localização que não existe),
+ * ele é dividido ao meio até isolar as linhas recusadas, e as demais são gravadas.
+ * Falhas de rede, do servidor ou de autenticação e permissão (401, 403) marcam o
+ * lote inteiro como não gravado: dividi-lo só repetiria a mesma recusa. O mesmo
+ * vale para os erros do próprio PostgREST (código {@code PGRST...}, ex.: coluna
+ * desconhecida) e para uma recusa repetida igual nas duas metades do lote.
+ */
+class BulkUpsert<T> {
+    // Limites de cada lote: número de linhas e tamanho aproximado do corpo
+    static final int MAX_ROWS = 500;
+    static final int MAX_BODY_CHARS = 512 * 1024;
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final Sender sender;
+    private final Gson gson;
+    private final HttpUrl url;
+    private final Function<T, String> idOf;
+
+    /**
+     * Executa as requisições dos lotes ({@link SupabaseClient#execute(Request)})
+     */
+    interface Sender {
+        Response execute(Request request) throws IOException;
+    }
+
+    /**
+     * Linha já convertida para JSON
+     */
+    private static final class Row {
+        final String id;
+        final String json;
+
+        Row(String id, String json) {
+            this.id = id;
+            this.json = json;
+        }
+    }
+
+    /**
+     * @param table Tabela de destino
+     * @param columns Colunas gravadas, separadas por vírgula; as que faltarem em uma
+     *                linha recebem o valor padrão da coluna
+     * @param idOf ID de cada linha, para o resultado
+     */
+    BulkUpsert(Sender sender, Gson gson, String supabaseUrl, String table, String columns,
+               Function<T, String> idOf) {
+        this.sender = sender;
+        this.gson = gson;
+        this.url = HttpUrl.get(supabaseUrl + "/rest/v1/" + table).newBuilder()
+                .addQueryParameter("columns", columns)
+                .addQueryParameter("on_conflict", "id")
+                .build();
+        this.idOf = idOf;
+    }
+
+    /**
+     * Grava as linhas, registrando o resultado de cada uma
+     */
+    void upsert(List<T> rows, BulkResult result) {
+        List<Row> chunk = new ArrayList<>();
+        int chars = 2;
+        for (T row : rows) {
+            Row converted = new Row(idOf.apply(row), gson.toJson(row));
+            if (!chunk.isEmpty() && (chunk.size() == MAX_ROWS || chars + converted.json.length() + 1 > MAX_BODY_CHARS)) {
+                send(chunk, result);
+                chunk = new ArrayList<>();
+                chars = 2;
+            }
+            chunk.add(converted);
+            chars += converted.json.length() + 1;
+        }
+        if (!chunk.isEmpty()) {
+            send(chunk, result);
+        }
+    }
+
+    private void send(List<Row> chunk, BulkResult result) {
+        String rejection = attempt(chunk, result);
+        if (rejection != null) {
+            bisect(chunk, rejection, result);
+        }
+    }
+
+    /**
+     * Divide um lote recusado para descobrir quais linhas o servidor recusa. Se as
+     * duas metades forem recusadas com o mesmo erro, ele não é de uma linha
+     * específica e o lote inteiro falha sem novas divisões.
+     */
+    private void bisect(List<Row> chunk, String rejection, BulkResult result) {
+        int middle = chunk.size() / 2;
+        List<Row> first = chunk.subList(0, middle);
+        List<Row> second = chunk.subList(middle, chunk.size());
+        String firstRejection = attempt(first, result);
+        String secondRejection = attempt(second, result);
+        if (firstRejection != null && firstRejection.equals(secondRejection)) {
+            DataLog.e("Lote de {} linhas recusado nas duas metades: {}", chunk.size(), firstRejection);
+            fail(chunk, firstRejection, result);
+            return;
+        }
+        if (firstRejection != null) {
+            bisect(first, firstRejection, result);
+        }
+        if (secondRejection != null) {
+            bisect(second, secondRejection, result);
+        }
+    }
+
+    /**
+     * Envia um lote uma vez, sem dividi-lo
+     * @return A recusa, se ela pode ser de linhas específicas e o lote pode ser
+     * dividido; null se as linhas já foram gravadas ou marcadas como falhas
+     */
+    private String attempt(List<Row> chunk, BulkResult result) {
+        SupabaseTask task = SupabaseTask.current();
+        if (task != null && task.isCancelled()) {
+            fail(chunk, "Cancelado", result);
+            return null;
+        }
+
+        StringBuilder body = new StringBuilder().append('[');
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(chunk.get(i).json);
+        }
+        body.append(']');
+
+        // Repetir é seguro: o upsert pelo id não duplica linhas
+        Request request = RetryInterceptor.idempotent(new Request.Builder())
+                .url(url)
+                .post(RequestBody.create(JSON, body.toString()))
+                .addHeader("Prefer", "resolution=merge-duplicates,missing=default,return=minimal")
+                .build();
+
+        result.countRequest();
+        try (Response response = sender.execute(request)) {
+            if (response.isSuccessful()) {
+                for (Row row : chunk) {
+                    result.saved(row.id);
+                }
+                return null;
+            }
+            String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+            String error = response.code() + ": " + responseBody;
+            if (isRejectedData(response.code()) && !isPostgrestError(responseBody) && chunk.size() > 1) {
+                return error;
+            }
+            DataLog.e("Lote de {} linhas recusado: {}", chunk.size(), error);
+            fail(chunk, error, result);
+        } catch (IOException e) {
+            DataLog.e("Exceção ao gravar lote", e);
+            fail(chunk, String.valueOf(e.getMessage()), result);
+        }
+        return null;
+    }
+
+    private static void fail(List<Row> chunk, String error, BulkResult result) {
+        for (Row row : chunk) {
+            result.failed(row.id, error);
+        }
+    }
+
+    /**
+     * Recusa causada pelo conteúdo das linhas: requisição inválida (400), conflito
+     * com outra linha ou restrição (409) ou valor recusado pelo banco (422). As
+     * demais, como 401/403 (autenticação e RLS), 408 e 429, valem para o lote inteiro.
+     */
+    private static boolean isRejectedData(int code) {
+        return code == 400 || code == 409 || code == 422;
+    }
+
+    /**
+     * Erro do próprio PostgREST ({@code "code": "PGRST..."}), como uma coluna ou
+     * tabela desconhecida: vale para qualquer linha do lote
+     */
+    private static boolean isPostgrestError(String body) {
+        try {
+            JsonElement parsed = JsonParser.parseString(body);
+            if (parsed.isJsonObject()) {
+                JsonElement code = parsed.getAsJsonObject().get("code");
+                return code != null && code.isJsonPrimitive() && code.getAsString().startsWith("PGRST");
+            }
+        } catch (JsonParseException e) {
+            // Corpo que não é JSON: a recusa é tratada pelo código HTTP
+        }
+        return false;
+    }
+}
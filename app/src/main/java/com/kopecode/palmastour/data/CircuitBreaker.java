@@ -0,0 +1,89 @@
+package com.kopecode.palmastour.data;
+
+import android.os.SystemClock;
+
+/**
+ * Disjuntor de um endpoint: depois de várias falhas seguidas, as requisições
+ * falham na hora com {@link CircuitOpenException} em vez de insistir em um
+ * servidor fora do ar. Passado o intervalo de espera, uma única requisição de
+ * teste é liberada; se ela funcionar o circuito fecha, senão volta a abrir.
+ */
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    CircuitBreaker(String endpoint, int failureThreshold, long openDurationMs) {
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    /**
+     * Reserva a passagem de uma requisição
+     * @throws CircuitOpenException Se o circuito estiver aberto ou já houver uma requisição de teste em andamento
+     */
+    synchronized void acquire() throws CircuitOpenException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long remaining = openedAt + openDurationMs - SystemClock.elapsedRealtime();
+        if (state == State.OPEN && remaining <= 0) {
+            // Liberar uma única requisição de teste
+            state = State.HALF_OPEN;
+            return;
+        }
+        throw new CircuitOpenException(endpoint, Math.max(remaining, 0));
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            DataLog.d("Circuito fechado: {}", endpoint);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                DataLog.w("Circuito aberto após {} falhas: {}", consecutiveFailures, endpoint);
+            }
+            state = State.OPEN;
+            openedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * A requisição foi cancelada sem resultado; se era a de teste, outra pode ser liberada
+     */
+    synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = SystemClock.elapsedRealtime() - openDurationMs;
+        }
+    }
+
+    /**
+     * Fecha o circuito e zera as falhas (ex.: a rede voltou e as falhas anteriores
+     * não dizem nada sobre o servidor)
+     */
+    synchronized void reset() {
+        if (state != State.CLOSED) {
+            DataLog.d("Circuito fechado ao restabelecer a rede: {}", endpoint);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,24 @@
+package com.kopecode.palmastour.data;
+
+import java.io.IOException;
+
+/**
+ * Lançada sem acessar a rede quando o {@link CircuitBreaker} de um endpoint está
+ * aberto, porque as últimas requisições a ele falharam seguidamente.
+ * Por ser uma {@link IOException}, é tratada como qualquer falha de rede.
+ */
+public class CircuitOpenException extends IOException {
+    private final long retryAfterMs;
+
+    public CircuitOpenException(String endpoint, long retryAfterMs) {
+        super("Servidor indisponível (" + endpoint + "), nova tentativa em " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Tempo até o circuito permitir uma nova tentativa
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,93 @@
+package com.kopecode.palmastour.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executores compartilhados da camada de dados.
+ *
+ * Todas as operações de rede rodam em pools com número fixo de threads,
+ * em vez de criar uma nova Thread por operação. As leituras das telas usam
+ * {@link #io()}; o trabalho que nenhuma tela espera (envios, sincronização do
+ * tempo real) fica em {@link #background()} e {@link #uploads()}, para que as
+ * leituras não esperem atrás de uploads e das esperas entre novas tentativas.
+ */
+public final class DataExecutors {
+    // Número máximo de operações de rede executando ao mesmo tempo
+    private static final int IO_THREADS = 4;
+    // Tarefas em segundo plano executando ao mesmo tempo
+    private static final int BACKGROUND_THREADS = 2;
+    // Número máximo de arquivos de fotos sendo enviados ao mesmo tempo, somando todos os envios
+    private static final int UPLOAD_THREADS = PhotoUploadEngine.DEFAULT_CONCURRENCY;
+
+    private static final ExecutorService IO = createExecutor("io", IO_THREADS);
+    private static final ExecutorService BACKGROUND = createExecutor("background", BACKGROUND_THREADS);
+    private static final ExecutorService UPLOADS = createExecutor("upload", UPLOAD_THREADS);
+    private static final Handler MAIN_THREAD = new Handler(Looper.getMainLooper());
+
+    private DataExecutors() {
+    }
+
+    /**
+     * Pool limitado usado para as operações de rede e disco
+     */
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    /**
+     * Pool limitado para o trabalho em segundo plano que nenhuma tela espera.
+     * As tarefas daqui podem esperar os envios de {@link #uploads()}, que por isso
+     * ficam em outro pool.
+     */
+    public static ExecutorService background() {
+        return BACKGROUND;
+    }
+
+    /**
+     * Pool limitado compartilhado pelos envios de arquivos de fotos
+     * ({@link PhotoUploadEngine}), separado do pool de I/O
+     */
+    public static ExecutorService uploads() {
+        return UPLOADS;
+    }
+
+    /**
+     * Executa a tarefa na thread principal (UI)
+     */
+    public static void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            MAIN_THREAD.post(runnable);
+        }
+    }
+
+    private static ExecutorService createExecutor(String name, int threads) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PalmasTour-" + name + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory);
+        // Libera as threads ociosas quando o aplicativo não está usando a rede
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
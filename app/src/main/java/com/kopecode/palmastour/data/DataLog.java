@@ -0,0 +1,242 @@
+package com.kopecode.palmastour.data;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.kopecode.palmastour.BuildConfig;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Log e rastreamento da camada de dados, com custo zero quando desligados.
+ *
+ * As mensagens são modelos com {@code {}} no lugar dos valores, montados só se o
+ * nível estiver ligado: {@code DataLog.d("Foto salva: {}", id)} não concatena
+ * nada em produção. Para blocos que só existem para o log, use
+ * {@code if (DataLog.DEBUG)}: como {@link #DEBUG} é constante, o compilador
+ * remove o bloco inteiro nas builds de release.
+ *
+ * Em release só avisos e erros chegam ao logcat, sem stack trace. Em debug tudo
+ * vai para o logcat e também para um buffer circular de {@link #CAPACITY}
+ * eventos em memória, guardados sem formatar, que pode ser despejado com
+ * {@link #dump()}.
+ */
+public final class DataLog {
+    public static final boolean DEBUG = BuildConfig.DEBUG;
+    public static final int CAPACITY = 512;
+
+    private static final String TAG = "PalmasTour";
+    private static final String PLACEHOLDER = "{}";
+
+    // Buffer circular em vetores pré-alocados: gravar um evento não aloca objetos
+    private static final long[] times = new long[DEBUG ? CAPACITY : 0];
+    private static final int[] levels = new int[DEBUG ? CAPACITY : 0];
+    private static final String[] templates = new String[DEBUG ? CAPACITY : 0];
+    private static final Object[][] args = new Object[DEBUG ? CAPACITY : 0][3];
+    private static final Throwable[] errors = new Throwable[DEBUG ? CAPACITY : 0];
+    private static int next;
+    private static long recorded;
+
+    private DataLog() {
+    }
+
+    // Debug: descartado em release
+
+    public static void d(String message) {
+        if (DEBUG) {
+            log(Log.DEBUG, message, null, null, null, null);
+        }
+    }
+
+    public static void d(String template, Object arg) {
+        if (DEBUG) {
+            log(Log.DEBUG, template, arg, null, null, null);
+        }
+    }
+
+    public static void d(String template, Object arg1, Object arg2) {
+        if (DEBUG) {
+            log(Log.DEBUG, template, arg1, arg2, null, null);
+        }
+    }
+
+    public static void d(String template, Object arg1, Object arg2, Object arg3) {
+        if (DEBUG) {
+            log(Log.DEBUG, template, arg1, arg2, arg3, null);
+        }
+    }
+
+    // Avisos e erros: sempre registrados
+
+    public static void w(String message) {
+        log(Log.WARN, message, null, null, null, null);
+    }
+
+    public static void w(String template, Object arg) {
+        log(Log.WARN, template, arg, null, null, null);
+    }
+
+    public static void w(String template, Object arg1, Object arg2) {
+        log(Log.WARN, template, arg1, arg2, null, null);
+    }
+
+    public static void w(String template, Object arg1, Object arg2, Object arg3) {
+        log(Log.WARN, template, arg1, arg2, arg3, null);
+    }
+
+    public static void e(String message) {
+        log(Log.ERROR, message, null, null, null, null);
+    }
+
+    public static void e(String template, Object arg) {
+        log(Log.ERROR, template, arg, null, null, null);
+    }
+
+    public static void e(String template, Object arg1, Object arg2) {
+        log(Log.ERROR, template, arg1, arg2, null, null);
+    }
+
+    public static void e(String template, Object arg1, Object arg2, Object arg3) {
+        log(Log.ERROR, template, arg1, arg2, arg3, null);
+    }
+
+    /**
+     * Erro com exceção: a mensagem dela (ou o nome da classe, se não houver
+     * mensagem) é acrescentada ao texto, e o stack trace só é registrado em debug
+     */
+    public static void e(String message, Throwable error) {
+        String detail = error == null ? null
+                : error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+        log(Log.ERROR, message + ": {}", detail, null, null, error);
+    }
+
+    // Rastreamento
+
+    /**
+     * Início de um trecho medido; passe o resultado para {@link #end(String, long)}
+     * @param section Nome do trecho (constante, para não alocar)
+     */
+    public static long begin(String section) {
+        if (!DEBUG) {
+            return 0;
+        }
+        android.os.Trace.beginSection(section);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Fim de um trecho medido, na mesma thread de {@link #begin(String)}; a duração
+     * aparece no Perfetto/systrace e no buffer de eventos
+     */
+    public static void end(String section, long startNanos) {
+        if (DEBUG) {
+            android.os.Trace.endSection();
+            record(Log.VERBOSE, "{}: {} µs", section, (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000, null, null);
+        }
+    }
+
+    /**
+     * Eventos do buffer, do mais antigo para o mais recente (vazio em release)
+     */
+    public static List<String> dump() {
+        List<String> lines = new ArrayList<>();
+        if (!DEBUG) {
+            return lines;
+        }
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS", Locale.US);
+        synchronized (DataLog.class) {
+            int count = (int) Math.min(recorded, CAPACITY);
+            for (int i = 0; i < count; i++) {
+                int slot = (next - count + i + CAPACITY) % CAPACITY;
+                Object[] values = args[slot];
+                StringBuilder line = new StringBuilder()
+                        .append(time.format(new Date(times[slot])))
+                        .append(' ').append(levelName(levels[slot])).append(' ')
+                        .append(format(templates[slot], values[0], values[1], values[2]));
+                if (errors[slot] != null) {
+                    line.append('\n').append(Log.getStackTraceString(errors[slot]));
+                }
+                lines.add(line.toString());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Escreve o buffer de eventos no logcat
+     */
+    public static void dumpToLogcat() {
+        for (String line : dump()) {
+            Log.d(TAG, line);
+        }
+    }
+
+    private static void log(int level, String template, Object arg1, Object arg2, Object arg3, Throwable error) {
+        if (DEBUG) {
+            record(level, template, arg1, arg2, arg3, error);
+        }
+        String message = format(template, arg1, arg2, arg3);
+        if (level == Log.ERROR) {
+            if (DEBUG && error != null) {
+                Log.e(TAG, message, error);
+            } else {
+                Log.e(TAG, message);
+            }
+        } else if (level == Log.WARN) {
+            Log.w(TAG, message);
+        } else {
+            Log.d(TAG, message);
+        }
+    }
+
+    private static synchronized void record(int level, String template, Object arg1, Object arg2, Object arg3,
+                                            Throwable error) {
+        times[next] = System.currentTimeMillis();
+        levels[next] = level;
+        templates[next] = template;
+        Object[] values = args[next];
+        values[0] = arg1;
+        values[1] = arg2;
+        values[2] = arg3;
+        errors[next] = error;
+        next = (next + 1) % CAPACITY;
+        recorded++;
+    }
+
+    /**
+     * Troca cada {@code {}} do modelo pelo próximo valor
+     */
+    static String format(String template, Object arg1, Object arg2, Object arg3) {
+        int index = template.indexOf(PLACEHOLDER);
+        if (index < 0) {
+            return template;
+        }
+        Object[] values = {arg1, arg2, arg3};
+        StringBuilder builder = new StringBuilder(template.length() + 32);
+        int start = 0;
+        int used = 0;
+        while (index >= 0 && used < values.length) {
+            builder.append(template, start, index).append(values[used++]);
+            start = index + PLACEHOLDER.length();
+            index = template.indexOf(PLACEHOLDER, start);
+        }
+        return builder.append(template, start, template.length()).toString();
+    }
+
+    private static char levelName(int level) {
+        switch (level) {
+            case Log.ERROR:
+                return 'E';
+            case Log.WARN:
+                return 'W';
+            case Log.DEBUG:
+                return 'D';
+            default:
+                return 'T';
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.kopecode.palmastour.data;
+
+/**
+ * Contadores do cache HTTP do {@link SupabaseClient}, para medir quanto da
+ * rede o cache está economizando.
+ */
+public final class HttpCacheStats {
+    private final int requestCount;
+    private final int networkCount;
+    private final int hitCount;
+    private final long sizeBytes;
+
+    HttpCacheStats(int requestCount, int networkCount, int hitCount, long sizeBytes) {
+        this.requestCount = requestCount;
+        this.networkCount = networkCount;
+        this.hitCount = hitCount;
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * Requisições HTTP feitas desde a criação do cache
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Requisições que foram até a rede (incluindo revalidações respondidas com 304)
+     */
+    public int getNetworkCount() {
+        return networkCount;
+    }
+
+    /**
+     * Requisições respondidas pelo cache, direto ou após um 304
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Fração das requisições respondidas pelo cache (0 a 1)
+     */
+    public double getHitRate() {
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(java.util.Locale.ROOT, "%d/%d requisições atendidas pelo cache (%.0f%%), %d pela rede, %d bytes em disco",
+                hitCount, requestCount, getHitRate() * 100, networkCount, sizeBytes);
+    }
+}
@@ -0,0 +1,40 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Datas no JSON como texto ISO-8601 ({@link IsoDates}), em vez do
+ * {@code setDateFormat} do Gson, que usa um {@code SimpleDateFormat} compartilhado
+ * e só entende o deslocamento do servidor depois de falhar no formato configurado.
+ */
+final class IsoDateAdapter extends TypeAdapter<Date> {
+    @Override
+    public void write(JsonWriter out, Date value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(IsoDates.format(value));
+        }
+    }
+
+    @Override
+    public Date read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String text = in.nextString();
+        try {
+            return IsoDates.parse(text);
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException(e.getMessage() + " em " + in.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.kopecode.palmastour.data;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Leitura e escrita de datas ISO-8601, sem estado e segura entre threads.
+ *
+ * Substitui o {@code SimpleDateFormat} com {@code 'Z'} literal, que formatava no
+ * fuso do aparelho marcando o resultado como UTC e não entendia o deslocamento
+ * que o PostgREST devolve ({@code 2024-05-01T12:34:56.789012+00:00}). A leitura
+ * é feita à mão, sem alocar objetos intermediários: aceita {@code T} ou espaço
+ * entre data e hora, segundos e fração opcionais (até nanossegundos, truncada em
+ * milissegundos) e {@code Z}, {@code ±HH}, {@code ±HHMM} ou {@code ±HH:MM}; sem
+ * deslocamento, a hora é tomada como UTC.
+ */
+public final class IsoDates {
+    // Imutável e seguro entre threads, ao contrário do SimpleDateFormat
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT).withZone(ZoneOffset.UTC);
+
+    private IsoDates() {
+    }
+
+    /**
+     * Data em UTC, sempre com milissegundos: {@code 2024-05-01T12:34:56.789Z}
+     */
+    public static String format(Date date) {
+        return FORMAT.format(Instant.ofEpochMilli(date.getTime()));
+    }
+
+    /**
+     * @throws IllegalArgumentException se o texto não for uma data ISO-8601
+     */
+    public static Date parse(String text) {
+        return new Date(parseMillis(text));
+    }
+
+    /**
+     * Instante em milissegundos desde 1970 (UTC)
+     * @throws IllegalArgumentException se o texto não for uma data ISO-8601
+     */
+    public static long parseMillis(String text) {
+        int length = text.length();
+        if (length < 16) {
+            throw invalid(text);
+        }
+        int year = digits(text, 0, 4);
+        expect(text, 4, '-');
+        int month = digits(text, 5, 2);
+        expect(text, 7, '-');
+        int day = digits(text, 8, 2);
+        char separator = text.charAt(10);
+        if (separator != 'T' && separator != 't' && separator != ' ') {
+            throw invalid(text);
+        }
+        int hour = digits(text, 11, 2);
+        expect(text, 13, ':');
+        int minute = digits(text, 14, 2);
+        int pos = 16;
+
+        int second = 0;
+        if (pos < length && text.charAt(pos) == ':') {
+            second = digits(text, pos + 1, 2);
+            pos += 3;
+        }
+
+        int millis = 0;
+        if (pos < length && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+            int start = ++pos;
+            while (pos < length && isDigit(text.charAt(pos))) {
+                if (pos - start < 3) {
+                    millis = millis * 10 + (text.charAt(pos) - '0');
+                }
+                pos++;
+            }
+            int count = pos - start;
+            if (count == 0 || count > 9) {
+                throw invalid(text);
+            }
+            for (int i = count; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        int offsetMinutes = 0;
+        if (pos < length) {
+            char sign = text.charAt(pos);
+            if ((sign == 'Z' || sign == 'z') && pos + 1 == length) {
+                pos++;
+            } else if (sign == '+' || sign == '-') {
+                int offsetHours = digits(text, pos + 1, 2);
+                pos += 3;
+                int offsetMins = 0;
+                if (pos < length) {
+                    if (text.charAt(pos) == ':') {
+                        pos++;
+                    }
+                    offsetMins = digits(text, pos, 2);
+                    pos += 2;
+                }
+                if (offsetHours > 18 || offsetMins > 59) {
+                    throw invalid(text);
+                }
+                offsetMinutes = (offsetHours * 60 + offsetMins) * (sign == '-' ? -1 : 1);
+            }
+            if (pos != length) {
+                throw invalid(text);
+            }
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            throw invalid(text);
+        }
+        long seconds = epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second
+                - offsetMinutes * 60L;
+        return seconds * 1000L + millis;
+    }
+
+    /**
+     * Dias desde 1970-01-01 no calendário gregoriano proléptico
+     */
+    private static long epochDay(int year, int month, int day) {
+        // Conta o ano a partir de março, para que o dia bissexto fique no fim
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(String text, int start, int count) {
+        if (start + count > text.length()) {
+            throw invalid(text);
+        }
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                throw invalid(text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void expect(String text, int index, char expected) {
+        if (text.charAt(index) != expected) {
+            throw invalid(text);
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException invalid(String text) {
+        return new IllegalArgumentException("Data ISO-8601 inválida: " + text);
+    }
+}
@@ -0,0 +1,173 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodificador em streaming para as respostas do PostgREST.
+ *
+ * Lê o JSON diretamente do corpo da resposta, sem materializar uma String
+ * intermediária nem um array do Gson, e entrega cada objeto do modelo à lista
+ * de destino (ou a um {@link Consumer}) assim que ele é lido. Todas as leituras
+ * do {@link SupabaseClient} devem passar por aqui. Os objetos são montados pelos
+ * adaptadores registrados no Gson ({@link LocationTypeAdapter},
+ * {@link PhotoTypeAdapter}, {@link IsoDateAdapter}), sem reflexão.
+ */
+final class JsonStreamDecoder {
+
+    private JsonStreamDecoder() {
+    }
+
+    /**
+     * Lê um array de localizações retornado por {@code select=*,photos(*)},
+     * preenchendo {@link Location#getPhotos()} com as fotos embutidas.
+     * @param in Reader do corpo da resposta
+     * @param gson Instância do Gson configurada no cliente
+     * @return Lista de localizações com suas fotos
+     */
+    static List<Location> readLocations(Reader in, Gson gson) throws IOException {
+        List<Location> locations = new ArrayList<>();
+        readLocations(in, gson, locations::add);
+        return locations;
+    }
+
+    /**
+     * Lê um array de localizações entregando cada uma ao consumidor assim que
+     * ela termina de ser lida, sem manter a lista inteira em memória
+     * @param in Reader do corpo da resposta
+     * @param gson Instância do Gson configurada no cliente
+     * @param consumer Recebe cada localização, com suas fotos
+     */
+    static void readLocations(Reader in, Gson gson, Consumer<Location> consumer) throws IOException {
+        readArray(in, gson, gson.getAdapter(Location.class), consumer);
+    }
+
+    /**
+     * Lê um array de fotos retornado pela tabela {@code photos}
+     * @param in Reader do corpo da resposta
+     * @param gson Instância do Gson configurada no cliente
+     * @return Lista de fotos, na ordem da resposta
+     */
+    static List<Photo> readPhotos(Reader in, Gson gson) throws IOException {
+        List<Photo> photos = new ArrayList<>();
+        readArray(in, gson, gson.getAdapter(Photo.class), photos::add);
+        return photos;
+    }
+
+    /**
+     * Lê o primeiro elemento de um array e descarta o restante, para consultas
+     * por ID que o PostgREST sempre responde com um array
+     * @return O primeiro elemento, ou null se o array estiver vazio
+     */
+    static <T> T readFirst(Reader in, Gson gson, Class<T> type) throws IOException {
+        List<T> first = new ArrayList<>(1);
+        readArray(in, gson, gson.getAdapter(type), item -> {
+            if (first.isEmpty()) {
+                first.add(item);
+            }
+        });
+        return first.isEmpty() ? null : first.get(0);
+    }
+
+    /**
+     * Lê a resposta da função {@code sync_changes}:
+     * {@code {"server_time", "locations": [...], "photos": [...], "deleted": [{"table_name", "row_id"}]}}
+     */
+    static SyncChanges readSyncChanges(Reader in, Gson gson) throws IOException {
+        TypeAdapter<Location> locationAdapter = gson.getAdapter(Location.class);
+        TypeAdapter<Photo> photoAdapter = gson.getAdapter(Photo.class);
+        TypeAdapter<Date> dateAdapter = gson.getAdapter(Date.class);
+
+        SyncChanges changes = new SyncChanges();
+        JsonReader reader = gson.newJsonReader(in);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "server_time":
+                    changes.serverTime = dateAdapter.read(reader);
+                    break;
+                case "locations":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        changes.locations.add(locationAdapter.read(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case "photos":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        changes.photos.add(photoAdapter.read(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case "deleted":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readDeletedRow(reader, changes);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return changes;
+    }
+
+    private static void readDeletedRow(JsonReader reader, SyncChanges changes) throws IOException {
+        String table = null;
+        String rowId = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if ("table_name".equals(field)) {
+                table = reader.nextString();
+            } else if ("row_id".equals(field)) {
+                rowId = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (rowId == null) {
+            return;
+        }
+        if (LocalStore.TABLE_LOCATIONS.equals(table)) {
+            changes.deletedLocationIds.add(rowId);
+        } else if (LocalStore.TABLE_PHOTOS.equals(table)) {
+            changes.deletedPhotoIds.add(rowId);
+        }
+    }
+
+    /**
+     * Lê um array JSON entregando cada elemento, decodificado pelo adaptador, ao consumidor
+     */
+    static <T> void readArray(Reader in, Gson gson, TypeAdapter<T> adapter, Consumer<T> consumer) throws IOException {
+        JsonReader reader = gson.newJsonReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            consumer.accept(adapter.read(reader));
+        }
+        reader.endArray();
+    }
+}
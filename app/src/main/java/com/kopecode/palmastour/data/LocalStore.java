@@ -0,0 +1,724 @@
+package com.kopecode.palmastour.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cópia local (SQLite) das tabelas {@code locations} e {@code photos}.
+ *
+ * As telas leem daqui primeiro, sem depender da rede, e o {@link SupabaseClient}
+ * mantém a cópia atualizada com as respostas do servidor e com as alterações
+ * feitas pelo próprio aplicativo. O mesmo banco guarda a fila de envio do {@link Outbox}.
+ */
+public class LocalStore extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "palmastour.db";
+    private static final int DATABASE_VERSION = 3;
+
+    static final String TABLE_LOCATIONS = "locations";
+    static final String TABLE_PHOTOS = "photos";
+    static final String TABLE_OUTBOX = "outbox";
+
+    // Resumo das fotos de cada localização, calculado como os gatilhos do servidor
+    // fazem, usando o índice de photos por (location_id, created_at, id). Na capa,
+    // uma foto ainda não enviada aparece pelo arquivo local.
+    private static final String PHOTOS_OF_LOCATION = " FROM " + TABLE_PHOTOS
+            + " WHERE " + TABLE_PHOTOS + ".location_id = " + TABLE_LOCATIONS + ".id";
+    private static final String PHOTO_COUNT = "(SELECT COUNT(*)" + PHOTOS_OF_LOCATION + ") AS photo_count";
+    private static final String COVER_PHOTO_URL = "(SELECT COALESCE(thumbnail_url, storage_url, file_path)"
+            + PHOTOS_OF_LOCATION + " AND COALESCE(thumbnail_url, storage_url, file_path) IS NOT NULL"
+            + " ORDER BY created_at ASC, id ASC LIMIT 1) AS cover_photo_url";
+    private static final String LAST_PHOTO_AT = "(SELECT MAX(created_at)" + PHOTOS_OF_LOCATION + ") AS last_photo_at";
+
+    // Registros com alterações do aparelho ainda na fila de envio. As respostas do
+    // servidor não os sobrescrevem nem excluem: a versão local é a mais nova até o
+    // envio, que atualiza o updated_at no servidor e traz o registro de volta na
+    // próxima sincronização.
+    private static final String PENDING_LOCATION_WRITES = pendingIds("location_id",
+            Outbox.OP_SAVE_PHOTO, Outbox.OP_UPDATE_LOCATION, Outbox.OP_RENAME_LOCATION);
+    private static final String PENDING_PHOTO_WRITES = pendingIds("photo_id",
+            Outbox.OP_SAVE_PHOTO, Outbox.OP_UPDATE_PHOTO, Outbox.OP_UPLOAD_ORIGINAL);
+    // Localizações que não podem ser excluídas: as alteradas e também as que têm
+    // fotos pendentes, que seriam apagadas junto em cascata
+    private static final String PENDING_LOCATIONS = pendingIds("location_id",
+            Outbox.OP_SAVE_PHOTO, Outbox.OP_UPDATE_LOCATION, Outbox.OP_RENAME_LOCATION,
+            Outbox.OP_UPDATE_PHOTO, Outbox.OP_UPLOAD_ORIGINAL);
+
+    private static LocalStore instance;
+
+    private LocalStore(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param name Nome do arquivo do banco, ou null para um banco em memória
+     */
+    LocalStore(Context context, String name) {
+        super(context.getApplicationContext(), name, null, DATABASE_VERSION);
+    }
+
+    public static synchronized LocalStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalStore(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Leituras da UI não esperam pelas gravações feitas em segundo plano
+        db.enableWriteAheadLogging();
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LOCATIONS + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "latitude REAL NOT NULL, "
+                + "longitude REAL NOT NULL, "
+                + "name TEXT, "
+                + "created_at INTEGER)");
+        db.execSQL("CREATE TABLE " + TABLE_PHOTOS + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "location_id TEXT NOT NULL REFERENCES " + TABLE_LOCATIONS + "(id) ON DELETE CASCADE, "
+                + "file_path TEXT, "
+                + "storage_url TEXT, "
+                + "thumbnail_url TEXT, "
+                + "description TEXT, "
+                + "created_at INTEGER)");
+        createPageIndexes(db);
+        createOutbox(db);
+    }
+
+    /**
+     * Índices na mesma ordem da paginação por chave, para que cada página seja
+     * lida direto do índice, sem ordenar a tabela inteira
+     */
+    private static void createPageIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_locations_created_at_id ON " + TABLE_LOCATIONS
+                + "(created_at DESC, id DESC)");
+        db.execSQL("DROP INDEX IF EXISTS idx_photos_location_id");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_photos_location_created_at_id ON " + TABLE_PHOTOS
+                + "(location_id, created_at, id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // A fila de envio guarda trabalho do usuário que ainda não chegou ao
+        // servidor, por isso as migrações nunca a recriam
+        if (oldVersion < 2) {
+            createOutbox(db);
+        }
+        if (oldVersion < 3) {
+            createPageIndexes(db);
+        }
+    }
+
+    private static void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "operation TEXT NOT NULL, "
+                + "location_id TEXT, "
+                + "photo_id TEXT, "
+                + "payload TEXT, "
+                + "attempts INTEGER NOT NULL DEFAULT 0, "
+                + "last_error TEXT, "
+                + "created_at INTEGER NOT NULL)");
+    }
+
+    // Leituras
+
+    /**
+     * Localizações salvas, com as fotos de cada uma, das mais recentes para as mais antigas
+     */
+    public List<Location> getLocations() {
+        SQLiteDatabase db = getReadableDatabase();
+        List<Location> locations = new ArrayList<>();
+        Map<String, Location> byId = new HashMap<>();
+        try (Cursor cursor = db.query(TABLE_LOCATIONS, null, null, null, null, null, "created_at DESC, id DESC")) {
+            while (cursor.moveToNext()) {
+                Location location = readLocation(cursor);
+                locations.add(location);
+                byId.put(location.getId(), location);
+            }
+        }
+        // Uma única consulta para as fotos de todas as localizações
+        try (Cursor cursor = db.query(TABLE_PHOTOS, null, null, null, null, null, "created_at ASC")) {
+            while (cursor.moveToNext()) {
+                Photo photo = readPhoto(cursor);
+                Location location = byId.get(photo.getLocationId());
+                if (location != null) {
+                    location.addPhoto(photo);
+                }
+            }
+        }
+        return locations;
+    }
+
+    public Location getLocation(String locationId) {
+        SQLiteDatabase db = getReadableDatabase();
+        Location location;
+        try (Cursor cursor = db.query(TABLE_LOCATIONS, null, "id = ?", new String[]{locationId}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            location = readLocation(cursor);
+        }
+        location.setPhotos(getPhotosByLocation(locationId));
+        return location;
+    }
+
+    public List<Photo> getPhotosByLocation(String locationId) {
+        List<Photo> photos = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PHOTOS, null, "location_id = ?",
+                new String[]{locationId}, null, null, "created_at ASC")) {
+            while (cursor.moveToNext()) {
+                photos.add(readPhoto(cursor));
+            }
+        }
+        return photos;
+    }
+
+    /**
+     * Localizações entre dois cursores, das mais recentes para as mais antigas,
+     * com as fotos de cada uma
+     * @param after Cursor (exclusivo) em que a página começa, ou null para começar do topo
+     * @param last Cursor (inclusivo) em que a página termina, ou null para não limitar
+     * @param limit Número máximo de localizações, ou 0 para não limitar
+     */
+    public List<Location> getLocations(PageCursor after, PageCursor last, int limit) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<String> args = new ArrayList<>();
+        String selection = keyRange(true, after, last, args);
+        List<Location> locations = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_LOCATIONS, null, selection, args.toArray(new String[0]),
+                null, null, "created_at DESC, id DESC", limit > 0 ? String.valueOf(limit) : null)) {
+            while (cursor.moveToNext()) {
+                locations.add(readLocation(cursor));
+            }
+        }
+        attachPhotos(db, locations);
+        return locations;
+    }
+
+    /**
+     * Como {@link #getLocations(PageCursor, PageCursor, int)}, mas sem carregar as
+     * fotos: cada localização traz só o resumo delas (contagem, capa e data da
+     * mais recente), calculado pelo SQLite
+     */
+    public List<Location> getLocationSummaries(PageCursor after, PageCursor last, int limit) {
+        List<String> args = new ArrayList<>();
+        String selection = keyRange(true, after, last, args);
+        return querySummaries(selection, args.toArray(new String[0]), limit);
+    }
+
+    /**
+     * Uma localização com o resumo das fotos, sem carregá-las, ou null se ela não estiver na cópia local
+     */
+    public Location getLocationSummary(String locationId) {
+        List<Location> locations = querySummaries("id = ?", new String[]{locationId}, 1);
+        return locations.isEmpty() ? null : locations.get(0);
+    }
+
+    private List<Location> querySummaries(String selection, String[] args, int limit) {
+        String[] columns = {"id", "latitude", "longitude", "name", "created_at",
+                PHOTO_COUNT, COVER_PHOTO_URL, LAST_PHOTO_AT};
+        List<Location> locations = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_LOCATIONS, columns, selection, args,
+                null, null, "created_at DESC, id DESC", limit > 0 ? String.valueOf(limit) : null)) {
+            while (cursor.moveToNext()) {
+                Location location = readLocation(cursor);
+                location.setPhotoCount(cursor.getInt(cursor.getColumnIndexOrThrow("photo_count")));
+                location.setCoverPhotoUrl(cursor.getString(cursor.getColumnIndexOrThrow("cover_photo_url")));
+                location.setLastPhotoAt(readDate(cursor, "last_photo_at"));
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Fotos de uma localização entre dois cursores, das mais antigas para as mais recentes
+     * @param after Cursor (exclusivo) em que a página começa, ou null para começar da primeira foto
+     * @param last Cursor (inclusivo) em que a página termina, ou null para não limitar
+     * @param limit Número máximo de fotos, ou 0 para não limitar
+     */
+    public List<Photo> getPhotosByLocation(String locationId, PageCursor after, PageCursor last, int limit) {
+        List<String> args = new ArrayList<>();
+        args.add(locationId);
+        String range = keyRange(false, after, last, args);
+        String selection = "location_id = ?" + (range != null ? " AND " + range : "");
+        List<Photo> photos = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PHOTOS, null, selection, args.toArray(new String[0]),
+                null, null, "created_at ASC, id ASC", limit > 0 ? String.valueOf(limit) : null)) {
+            while (cursor.moveToNext()) {
+                photos.add(readPhoto(cursor));
+            }
+        }
+        return photos;
+    }
+
+    public Photo getPhoto(String photoId) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PHOTOS, null, "id = ?",
+                new String[]{photoId}, null, null, null)) {
+            return cursor.moveToFirst() ? readPhoto(cursor) : null;
+        }
+    }
+
+    // Gravações
+
+    /**
+     * Substitui a cópia local pela lista completa recebida do servidor.
+     * Localizações e fotos que não estão mais na lista são removidas, e as que
+     * ainda estão na fila de envio ficam com a versão local.
+     */
+    public void replaceLocations(List<Location> locations) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_PHOTOS, "id NOT IN (" + PENDING_PHOTO_WRITES + ")", null);
+            db.delete(TABLE_LOCATIONS, "id NOT IN (" + PENDING_LOCATIONS + ")", null);
+            for (Location location : locations) {
+                mergeLocation(db, location);
+            }
+            removePendingDeletes(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Aplica as alterações de uma sincronização incremental em uma única transação.
+     * Primeiro as exclusões, depois as inserções e alterações, para que um registro
+     * excluído e recriado no intervalo termine presente. Registros que ainda estão
+     * na fila de envio não são excluídos nem sobrescritos.
+     * @param full Se as alterações são o conjunto completo do servidor; nesse caso
+     *             o que não veio na resposta é removido
+     */
+    void applyChanges(SyncChanges changes, boolean full) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (full) {
+                db.delete(TABLE_PHOTOS, "id NOT IN (" + PENDING_PHOTO_WRITES + ")", null);
+                db.delete(TABLE_LOCATIONS, "id NOT IN (" + PENDING_LOCATIONS + ")", null);
+            } else {
+                deleteIds(db, TABLE_PHOTOS, changes.deletedPhotoIds, PENDING_PHOTO_WRITES);
+                deleteIds(db, TABLE_LOCATIONS, changes.deletedLocationIds, PENDING_LOCATIONS);
+            }
+            for (Location location : changes.locations) {
+                mergeLocation(db, location);
+            }
+            for (Photo photo : changes.photos) {
+                if (exists(db, TABLE_LOCATIONS, photo.getLocationId())) {
+                    mergePhoto(db, toValues(photo));
+                }
+            }
+            removePendingDeletes(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Exclui os IDs em lotes, respeitando o limite de parâmetros do SQLite
+     */
+    private static void deleteIds(SQLiteDatabase db, String table, List<String> ids, String keep) {
+        final int batchSize = 500;
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            List<String> batch = ids.subList(start, Math.min(ids.size(), start + batchSize));
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < batch.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ",?");
+            }
+            db.delete(table, "id IN (" + placeholders + ") AND id NOT IN (" + keep + ")",
+                    batch.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Substitui as localizações de um intervalo de páginas pelas recebidas do servidor.
+     * As que estavam no intervalo e não vieram na resposta foram excluídas no servidor,
+     * exceto as que ainda estão na fila de envio, que também não são sobrescritas.
+     * @param after Cursor (exclusivo) em que o intervalo começa, ou null para o topo
+     * @param last Cursor (inclusivo) em que o intervalo termina, ou null para ir até o fim
+     */
+    public void replaceLocations(PageCursor after, PageCursor last, List<Location> locations) {
+        replaceLocations(after, last, locations, true);
+    }
+
+    /**
+     * @param withPhotos Se as localizações trazem a lista completa de fotos; se não
+     *                   (só a contagem), as fotos da cópia local são mantidas
+     */
+    public void replaceLocations(PageCursor after, PageCursor last, List<Location> locations, boolean withPhotos) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Set<String> received = new HashSet<>();
+            for (Location location : locations) {
+                received.add(location.getId());
+                if (withPhotos) {
+                    // As fotos embutidas são a lista completa de fotos da localização
+                    db.delete(TABLE_PHOTOS, "location_id = ? AND id NOT IN (" + PENDING_PHOTO_WRITES + ")",
+                            new String[]{location.getId()});
+                }
+                mergeLocation(db, location);
+            }
+            // Só as que sumiram do intervalo são excluídas: apagar e reinserir as que
+            // vieram levaria junto, em cascata, as fotos que o resumo não traz
+            List<String> args = new ArrayList<>();
+            String range = keyRange(true, after, last, args);
+            List<String> missing = new ArrayList<>();
+            try (Cursor cursor = db.query(TABLE_LOCATIONS, new String[]{"id"}, range,
+                    args.toArray(new String[0]), null, null, null)) {
+                while (cursor.moveToNext()) {
+                    String id = cursor.getString(0);
+                    if (!received.contains(id)) {
+                        missing.add(id);
+                    }
+                }
+            }
+            deleteIds(db, TABLE_LOCATIONS, missing, PENDING_LOCATIONS);
+            removePendingDeletes(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Substitui as fotos de um intervalo de páginas de uma localização pelas recebidas do servidor
+     * @param after Cursor (exclusivo) em que o intervalo começa, ou null para a primeira foto
+     * @param last Cursor (inclusivo) em que o intervalo termina, ou null para ir até o fim
+     */
+    public void replacePhotos(String locationId, PageCursor after, PageCursor last, List<Photo> photos) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (!exists(db, TABLE_LOCATIONS, locationId)) {
+                db.setTransactionSuccessful();
+                return;
+            }
+            List<String> args = new ArrayList<>();
+            args.add(locationId);
+            String range = keyRange(false, after, last, args);
+            db.delete(TABLE_PHOTOS, "location_id = ?" + (range != null ? " AND " + range : "")
+                    + " AND id NOT IN (" + PENDING_PHOTO_WRITES + ")", args.toArray(new String[0]));
+            for (Photo photo : photos) {
+                mergePhoto(db, toValues(photo));
+            }
+            removePendingDeletes(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Grava (ou atualiza) uma localização e as fotos carregadas nela
+     */
+    public void putLocation(Location location) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            insertLocation(db, location);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Grava uma localização lida do servidor e as fotos carregadas nela, mantendo
+     * a versão local das que ainda estão na fila de envio
+     */
+    public void mergeLocation(Location location) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            mergeLocation(db, location);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Grava localizações lidas do cache HTTP sem excluir nada: a resposta guardada
+     * pode ser mais antiga que a cópia local, então a ausência de um registro nela
+     * não indica que ele foi excluído no servidor
+     */
+    public void mergeLocations(List<Location> locations) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Location location : locations) {
+                mergeLocation(db, location);
+            }
+            removePendingDeletes(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Como {@link #mergeLocations(List)}, para as fotos de uma localização
+     */
+    public void mergePhotos(String locationId, List<Photo> photos) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (exists(db, TABLE_LOCATIONS, locationId)) {
+                for (Photo photo : photos) {
+                    mergePhoto(db, toValues(photo));
+                }
+                removePendingDeletes(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Substitui as fotos de uma localização pela lista recebida do servidor
+     */
+    public void replacePhotos(String locationId, List<Photo> photos) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            // A localização pode ainda não estar na cópia local
+            if (!exists(db, TABLE_LOCATIONS, locationId)) {
+                db.setTransactionSuccessful();
+                return;
+            }
+            db.delete(TABLE_PHOTOS, "location_id = ? AND id NOT IN (" + PENDING_PHOTO_WRITES + ")",
+                    new String[]{locationId});
+            for (Photo photo : photos) {
+                mergePhoto(db, toValues(photo));
+            }
+            removePendingDeletes(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void putPhoto(Photo photo) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (exists(db, TABLE_LOCATIONS, photo.getLocationId())) {
+            db.insertWithOnConflict(TABLE_PHOTOS, null, toValues(photo), SQLiteDatabase.CONFLICT_REPLACE);
+        }
+    }
+
+    /**
+     * Altera só o nome de uma localização
+     * @return false se a localização não está na cópia local
+     */
+    public boolean renameLocation(String locationId, String name) {
+        ContentValues values = new ContentValues();
+        values.put("name", name);
+        return getWritableDatabase().update(TABLE_LOCATIONS, values, "id = ?", new String[]{locationId}) > 0;
+    }
+
+    public void deleteLocation(String locationId) {
+        // As fotos são removidas em cascata
+        getWritableDatabase().delete(TABLE_LOCATIONS, "id = ?", new String[]{locationId});
+    }
+
+    public void deletePhoto(String photoId) {
+        getWritableDatabase().delete(TABLE_PHOTOS, "id = ?", new String[]{photoId});
+    }
+
+    /**
+     * Condição SQL das linhas entre dois cursores na ordem (created_at, id)
+     * @param descending true para a ordem das localizações (mais recentes primeiro)
+     * @param args Recebe os argumentos da condição
+     * @return A condição, ou null se não houver limites
+     */
+    private static String keyRange(boolean descending, PageCursor after, PageCursor last, List<String> args) {
+        List<String> conditions = new ArrayList<>();
+        if (after != null) {
+            String op = descending ? "<" : ">";
+            conditions.add("(created_at " + op + " ? OR (created_at = ? AND id " + op + " ?))");
+            addCursorArgs(args, after);
+        }
+        if (last != null) {
+            String op = descending ? ">" : "<";
+            conditions.add("(created_at " + op + " ? OR (created_at = ? AND id " + op + "= ?))");
+            addCursorArgs(args, last);
+        }
+        return conditions.isEmpty() ? null : String.join(" AND ", conditions);
+    }
+
+    private static void addCursorArgs(List<String> args, PageCursor cursor) {
+        String createdAt = String.valueOf(cursor.getCreatedAt().getTime());
+        args.add(createdAt);
+        args.add(createdAt);
+        args.add(cursor.getId());
+    }
+
+    /**
+     * Carrega as fotos das localizações com uma única consulta
+     */
+    private static void attachPhotos(SQLiteDatabase db, List<Location> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        Map<String, Location> byId = new HashMap<>();
+        StringBuilder placeholders = new StringBuilder();
+        for (Location location : locations) {
+            byId.put(location.getId(), location);
+            placeholders.append(placeholders.length() == 0 ? "?" : ",?");
+        }
+        try (Cursor cursor = db.query(TABLE_PHOTOS, null, "location_id IN (" + placeholders + ")",
+                byId.keySet().toArray(new String[0]), null, null, "created_at ASC, id ASC")) {
+            while (cursor.moveToNext()) {
+                Photo photo = readPhoto(cursor);
+                byId.get(photo.getLocationId()).addPhoto(photo);
+            }
+        }
+    }
+
+    /**
+     * Subconsulta com os IDs da coluna nas entradas da fila de envio com uma das operações
+     */
+    private static String pendingIds(String column, String... operations) {
+        return "SELECT " + column + " FROM " + TABLE_OUTBOX
+                + " WHERE " + column + " IS NOT NULL AND operation IN ('" + String.join("','", operations) + "')";
+    }
+
+    /**
+     * Registros excluídos no aparelho continuam no servidor até a fila de envio ser processada
+     */
+    private static void removePendingDeletes(SQLiteDatabase db) {
+        db.delete(TABLE_LOCATIONS, "id IN (SELECT location_id FROM " + TABLE_OUTBOX
+                + " WHERE operation = '" + Outbox.OP_DELETE_LOCATION + "')", null);
+        db.delete(TABLE_PHOTOS, "id IN (SELECT photo_id FROM " + TABLE_OUTBOX
+                + " WHERE operation = '" + Outbox.OP_DELETE_PHOTO + "')", null);
+    }
+
+    private static void insertLocation(SQLiteDatabase db, Location location) {
+        ContentValues values = toValues(location);
+        // UPDATE em vez de REPLACE: um REPLACE apagaria as fotos em cascata
+        if (db.update(TABLE_LOCATIONS, values, "id = ?", new String[]{location.getId()}) == 0) {
+            db.insert(TABLE_LOCATIONS, null, values);
+        }
+        if (location.getPhotos() != null) {
+            for (Photo photo : location.getPhotos()) {
+                ContentValues photoValues = toValues(photo);
+                photoValues.put("location_id", location.getId());
+                db.insertWithOnConflict(TABLE_PHOTOS, null, photoValues, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+        }
+    }
+
+    /**
+     * Como {@link #insertLocation}, para dados do servidor: localizações e fotos
+     * com alterações na fila de envio ficam como estão
+     */
+    private static void mergeLocation(SQLiteDatabase db, Location location) {
+        ContentValues values = toValues(location);
+        if (db.update(TABLE_LOCATIONS, values, "id = ? AND id NOT IN (" + PENDING_LOCATION_WRITES + ")",
+                new String[]{location.getId()}) == 0) {
+            db.insertWithOnConflict(TABLE_LOCATIONS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        }
+        if (location.getPhotos() != null) {
+            for (Photo photo : location.getPhotos()) {
+                ContentValues photoValues = toValues(photo);
+                photoValues.put("location_id", location.getId());
+                mergePhoto(db, photoValues);
+            }
+        }
+    }
+
+    /**
+     * Grava uma foto do servidor, exceto se ela tiver alterações na fila de envio
+     */
+    private static void mergePhoto(SQLiteDatabase db, ContentValues values) {
+        if (db.update(TABLE_PHOTOS, values, "id = ? AND id NOT IN (" + PENDING_PHOTO_WRITES + ")",
+                new String[]{values.getAsString("id")}) == 0) {
+            db.insertWithOnConflict(TABLE_PHOTOS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        }
+    }
+
+    private static ContentValues toValues(Location location) {
+        ContentValues values = new ContentValues();
+        values.put("id", location.getId());
+        values.put("latitude", location.getLatitude());
+        values.put("longitude", location.getLongitude());
+        values.put("name", location.getName());
+        values.put("created_at", toMillis(location.getCreatedAt()));
+        return values;
+    }
+
+    private static ContentValues toValues(Photo photo) {
+        ContentValues values = new ContentValues();
+        values.put("id", photo.getId());
+        values.put("location_id", photo.getLocationId());
+        values.put("file_path", photo.getFilePath());
+        values.put("storage_url", photo.getStorageUrl());
+        values.put("thumbnail_url", photo.getThumbnailUrl());
+        values.put("description", photo.getDescription());
+        values.put("created_at", toMillis(photo.getCreatedAt()));
+        return values;
+    }
+
+    private static Location readLocation(Cursor cursor) {
+        Location location = Location.blank();
+        location.setId(cursor.getString(cursor.getColumnIndexOrThrow("id")));
+        location.setLatitude(cursor.getDouble(cursor.getColumnIndexOrThrow("latitude")));
+        location.setLongitude(cursor.getDouble(cursor.getColumnIndexOrThrow("longitude")));
+        location.setName(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+        location.setCreatedAt(readDate(cursor, "created_at"));
+        return location;
+    }
+
+    private static Photo readPhoto(Cursor cursor) {
+        Photo photo = Photo.blank();
+        photo.setId(cursor.getString(cursor.getColumnIndexOrThrow("id")));
+        photo.setLocationId(cursor.getString(cursor.getColumnIndexOrThrow("location_id")));
+        photo.setFilePath(cursor.getString(cursor.getColumnIndexOrThrow("file_path")));
+        photo.setStorageUrl(cursor.getString(cursor.getColumnIndexOrThrow("storage_url")));
+        photo.setThumbnailUrl(cursor.getString(cursor.getColumnIndexOrThrow("thumbnail_url")));
+        photo.setDescription(cursor.getString(cursor.getColumnIndexOrThrow("description")));
+        photo.setCreatedAt(readDate(cursor, "created_at"));
+        return photo;
+    }
+
+    private static boolean exists(SQLiteDatabase db, String table, String id) {
+        if (id == null) {
+            return false;
+        }
+        try (Cursor cursor = db.query(table, new String[]{"id"}, "id = ?", new String[]{id}, null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private static Long toMillis(Date date) {
+        return date != null ? date.getTime() : null;
+    }
+
+    private static Date readDate(Cursor cursor, String column) {
+        int index = cursor.getColumnIndexOrThrow(column);
+        return cursor.isNull(index) ? null : new Date(cursor.getLong(index));
+    }
+}
@@ -0,0 +1,43 @@
+package com.kopecode.palmastour.data;
+
+/**
+ * Colunas pedidas ao PostgREST nas leituras de localizações, conforme o que a
+ * tela usa.
+ *
+ * Na galeria só aparecem nome, data, coordenadas e o resumo das fotos: com
+ * {@link #SUMMARY} o resumo vem das colunas que os gatilhos do banco mantêm em
+ * {@code locations} ({@code photo_count}, {@code cover_photo_url},
+ * {@code last_photo_at}), e cada localização ocupa poucas dezenas de bytes, em
+ * vez de trazer todas as fotos completas só para saber quantas são.
+ */
+public enum LocationProjection {
+    /**
+     * Todas as colunas, com as fotos completas embutidas
+     */
+    FULL("*,photos(*)"),
+
+    /**
+     * Só o que a galeria exibe, sem juntar a tabela de fotos
+     */
+    SUMMARY("id,name,latitude,longitude,created_at,photo_count,cover_photo_url,last_photo_at");
+
+    private final String select;
+
+    LocationProjection(String select) {
+        this.select = select;
+    }
+
+    /**
+     * Valor do parâmetro {@code select} da consulta
+     */
+    String select() {
+        return select;
+    }
+
+    /**
+     * Se as localizações lidas trazem a lista completa de fotos
+     */
+    boolean embedsPhotos() {
+        return this == FULL;
+    }
+}
@@ -0,0 +1,136 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Lê e escreve {@link Location} campo a campo, sem reflexão.
+ *
+ * Na leitura, as fotos embutidas pelo PostgREST ({@code select=*,photos(*)})
+ * preenchem {@link Location#getPhotos()}, e o resumo mantido pelo banco
+ * ({@code photo_count}, {@code cover_photo_url}, {@code last_photo_at}) preenche
+ * os campos correspondentes. Na escrita nenhum dos dois é enviado: as fotos, como
+ * no {@code @Expose(serialize = false)} do modelo, e o resumo porque só os
+ * gatilhos do banco o alteram. Campos nulos ou desconhecidos no JSON são
+ * ignorados e mantêm o valor do construtor.
+ */
+final class LocationTypeAdapter extends TypeAdapter<Location> {
+    // Colunas escritas por write(), na mesma ordem
+    static final String COLUMNS = "id,latitude,longitude,name,created_at";
+
+    private final TypeAdapter<Photo> photoAdapter;
+    private final TypeAdapter<Date> dateAdapter;
+
+    LocationTypeAdapter(TypeAdapter<Photo> photoAdapter, TypeAdapter<Date> dateAdapter) {
+        this.photoAdapter = photoAdapter;
+        this.dateAdapter = dateAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Location location) throws IOException {
+        if (location == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(location.getId());
+        out.name("latitude").value(location.getLatitude());
+        out.name("longitude").value(location.getLongitude());
+        out.name("name").value(location.getName());
+        out.name("created_at");
+        dateAdapter.write(out, location.getCreatedAt());
+        out.endObject();
+    }
+
+    @Override
+    public Location read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Location location = Location.blank();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    location.setId(in.nextString());
+                    break;
+                case "latitude":
+                    location.setLatitude(in.nextDouble());
+                    break;
+                case "longitude":
+                    location.setLongitude(in.nextDouble());
+                    break;
+                case "name":
+                    location.setName(in.nextString());
+                    break;
+                case "created_at":
+                    location.setCreatedAt(dateAdapter.read(in));
+                    break;
+                case "photos":
+                    // Fotos embutidas pelo PostgREST (resource embedding)
+                    List<Photo> photos = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        photos.add(photoAdapter.read(in));
+                    }
+                    in.endArray();
+                    location.setPhotos(photos);
+                    break;
+                case "photo_count":
+                    location.setPhotoCount(readCount(in));
+                    break;
+                case "cover_photo_url":
+                    location.setCoverPhotoUrl(in.nextString());
+                    break;
+                case "last_photo_at":
+                    location.setLastPhotoAt(dateAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return location;
+    }
+
+    /**
+     * Contagem como número (a coluna {@code photo_count}) ou no formato do PostgREST
+     * para {@code photos(count)}, uma lista com um objeto {@code {"count": n}}
+     */
+    private static int readCount(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NUMBER) {
+            return in.nextInt();
+        }
+        int count = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("count".equals(in.nextName()) && in.peek() == JsonToken.NUMBER) {
+                    count += in.nextInt();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        in.endArray();
+        return count;
+    }
+}
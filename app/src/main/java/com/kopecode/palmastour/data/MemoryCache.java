@@ -0,0 +1,108 @@
+package com.kopecode.palmastour.data;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache em memória com número máximo de entradas e validade. Quando cheio,
+ * descarta a entrada usada há mais tempo (LRU); entradas vencidas são
+ * descartadas ao serem lidas.
+ */
+class MemoryCache<K, V> {
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntries Número máximo de entradas
+     * @param ttlMs Tempo de validade de cada entrada, a partir da gravação
+     */
+    MemoryCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        // accessOrder = true: a iteração começa pela entrada usada há mais tempo
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > MemoryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return O valor, ou null se não estiver no cache ou tiver vencido
+     */
+    synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt <= SystemClock.elapsedRealtime()) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, SystemClock.elapsedRealtime() + ttlMs));
+    }
+
+    synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove as entradas cujo valor satisfaz a condição
+     * @return As chaves removidas
+     */
+    synchronized List<K> removeIf(Predicate<V> condition) {
+        List<K> removed = new ArrayList<>();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (condition.test(entry.getValue().value)) {
+                removed.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+}
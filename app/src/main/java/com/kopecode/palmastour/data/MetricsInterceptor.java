@@ -0,0 +1,78 @@
+package com.kopecode.palmastour.data;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Registra em {@link NetworkMetrics} a latência, o status e os bytes de cada
+ * requisição. O corpo da resposta é envolvido para contar os bytes lidos e
+ * saber quando ele é fechado.
+ *
+ * Deve ser registrado como interceptor de aplicação, para medir também as
+ * respostas servidas pelo cache HTTP.
+ */
+class MetricsInterceptor implements Interceptor {
+    private final NetworkMetrics metrics;
+
+    MetricsInterceptor(NetworkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = NetworkMetrics.endpointOf(request.url());
+        long bytesSent = request.body() != null ? request.body().contentLength() : 0;
+        long start = SystemClock.elapsedRealtime();
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            metrics.recordFailure(endpoint, SystemClock.elapsedRealtime() - start, bytesSent);
+            throw e;
+        }
+        metrics.recordResponse(endpoint, SystemClock.elapsedRealtime() - start, response.code(), bytesSent);
+
+        ResponseBody body = response.body();
+        if (body == null || response.code() == 101) {
+            // 101: o WebSocket usa a conexão diretamente e nunca fecha o corpo
+            return response;
+        }
+        long responseId = metrics.responseOpened(endpoint, request.method(), request.url());
+        Source counting = new ForwardingSource(body.source()) {
+            private boolean closed;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    metrics.recordBytesReceived(endpoint, read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    metrics.responseClosed(responseId);
+                }
+                super.close();
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(counting)))
+                .build();
+    }
+}
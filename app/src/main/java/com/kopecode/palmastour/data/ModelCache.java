@@ -0,0 +1,194 @@
+package com.kopecode.palmastour.data;
+
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Cache em memória das localizações e fotos lidas do servidor, na frente da
+ * cópia local e da rede, e coalescência das leituras iguais em andamento.
+ *
+ * Os objetos são copiados na entrada e na saída, para que alterações feitas
+ * pela interface não mudem o que está no cache. Toda escrita invalida só as
+ * entradas afetadas e descarta o resultado das leituras que já estavam em
+ * andamento, que pode ser anterior a ela.
+ */
+class ModelCache {
+    private final MemoryCache<String, Location> locations;
+    private final MemoryCache<String, Photo> photos;
+    private final SingleFlight inFlight = new SingleFlight();
+    // Muda a cada invalidação; uma leitura só é guardada se nada mudou desde que começou
+    private long generation;
+
+    /**
+     * @param maxLocations Número máximo de localizações (cada uma com as suas fotos)
+     * @param maxPhotos Número máximo de fotos avulsas
+     * @param ttlMs Validade das entradas
+     */
+    ModelCache(int maxLocations, int maxPhotos, long ttlMs) {
+        this.locations = new MemoryCache<>(maxLocations, ttlMs);
+        this.photos = new MemoryCache<>(maxPhotos, ttlMs);
+    }
+
+    /**
+     * Executa a leitura, ou espera a leitura igual que já está em andamento
+     * @param key URL da leitura
+     */
+    <T> T load(String key, SingleFlight.Loader<T> loader) throws IOException {
+        return inFlight.execute(key, loader);
+    }
+
+    /**
+     * Marca a ser tirada antes de uma leitura e passada para {@link #putLocations} ou {@link #putPhotos}
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    // Leituras
+
+    Location getLocation(String locationId) {
+        Location location = locations.get(locationId);
+        return location != null ? new Location(location) : null;
+    }
+
+    Photo getPhoto(String photoId) {
+        Photo photo = photos.get(photoId);
+        return photo != null ? new Photo(photo) : null;
+    }
+
+    /**
+     * Guarda localizações lidas do servidor, com as suas fotos
+     * @param since {@link #generation()} de quando a leitura começou
+     */
+    synchronized void putLocations(List<Location> list, long since) {
+        if (since != generation) {
+            return;
+        }
+        for (Location location : list) {
+            Location copy = new Location(location);
+            locations.put(copy.getId(), copy);
+            for (Photo photo : copy.getPhotos()) {
+                photos.put(photo.getId(), new Photo(photo));
+            }
+        }
+    }
+
+    /**
+     * Guarda fotos lidas do servidor
+     * @param since {@link #generation()} de quando a leitura começou
+     */
+    synchronized void putPhotos(List<Photo> list, long since) {
+        if (since != generation) {
+            return;
+        }
+        for (Photo photo : list) {
+            photos.put(photo.getId(), new Photo(photo));
+        }
+    }
+
+    // Invalidação
+
+    /**
+     * Só o nome mudou: as fotos guardadas com a localização continuam válidas
+     */
+    synchronized void renameLocation(String locationId, String name) {
+        invalidated();
+        Location location = locations.get(locationId);
+        if (location != null) {
+            location.setName(name);
+        }
+    }
+
+    /**
+     * A localização mudou, mas as suas fotos não
+     */
+    synchronized void invalidateLocation(String locationId) {
+        invalidated();
+        locations.remove(locationId);
+    }
+
+    /**
+     * A localização foi excluída, com as suas fotos
+     */
+    synchronized void removeLocation(String locationId) {
+        invalidated();
+        locations.remove(locationId);
+        photos.removeIf(photo -> locationId.equals(photo.getLocationId()));
+    }
+
+    /**
+     * A foto mudou ou foi excluída; a lista de fotos da localização dela também
+     * @param locationId Localização da foto, ou null se não for conhecida
+     */
+    synchronized void invalidatePhoto(String photoId, String locationId) {
+        invalidated();
+        Photo photo = photos.get(photoId);
+        photos.remove(photoId);
+        if (locationId == null && photo != null) {
+            locationId = photo.getLocationId();
+        }
+        if (locationId != null) {
+            locations.remove(locationId);
+        } else {
+            locations.removeIf(location -> containsPhoto(location, photoId));
+        }
+    }
+
+    /**
+     * Invalida o que uma sincronização ou um evento de tempo real alterou
+     * @param full true se a cópia local foi substituída por inteiro
+     */
+    synchronized void invalidate(SyncChanges changes, boolean full) {
+        if (full) {
+            clear();
+            return;
+        }
+        for (Location location : changes.locations) {
+            invalidateLocation(location.getId());
+        }
+        for (Photo photo : changes.photos) {
+            invalidatePhoto(photo.getId(), photo.getLocationId());
+        }
+        for (String locationId : changes.deletedLocationIds) {
+            removeLocation(locationId);
+        }
+        for (String photoId : changes.deletedPhotoIds) {
+            invalidatePhoto(photoId, null);
+        }
+    }
+
+    synchronized void clear() {
+        invalidated();
+        locations.clear();
+        photos.clear();
+    }
+
+    /**
+     * Acertos e falhas do cache e leituras aproveitadas, para os logs
+     */
+    String describe() {
+        return "localizações " + locations.size() + " (" + locations.getHitCount() + "/" + locations.getMissCount()
+                + "), fotos " + photos.size() + " (" + photos.getHitCount() + "/" + photos.getMissCount()
+                + "), leituras aproveitadas " + inFlight.getSharedCount();
+    }
+
+    private void invalidated() {
+        generation++;
+        inFlight.forgetAll();
+    }
+
+    private static boolean containsPhoto(Location location, String photoId) {
+        if (location.getPhotos() == null) {
+            return false;
+        }
+        for (Photo photo : location.getPhotos()) {
+            if (photoId.equals(photo.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,330 @@
+package com.kopecode.palmastour.data;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+
+/**
+ * Métricas de rede do {@link SupabaseClient}, consultáveis em tempo de execução.
+ *
+ * Para cada endpoint lógico (localizações, fotos, storage, rpc) registra a
+ * distribuição de latência, os bytes enviados e recebidos e os códigos de status.
+ * Também acompanha o pool de conexões e as respostas que ainda não foram
+ * fechadas: uma resposta esquecida aberta prende a conexão e esvazia o pool.
+ */
+public final class NetworkMetrics {
+    public static final String ENDPOINT_LOCATIONS = "locations";
+    public static final String ENDPOINT_PHOTOS = "photos";
+    public static final String ENDPOINT_RPC = "rpc";
+    public static final String ENDPOINT_STORAGE = "storage";
+    public static final String ENDPOINT_OTHER = "other";
+
+    // Limites superiores (ms) das faixas do histograma de latência; a última faixa não tem limite
+    private static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final ConnectionPool connectionPool;
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final Map<Long, OpenResponse> openResponses = new ConcurrentHashMap<>();
+    private final AtomicLong nextResponseId = new AtomicLong();
+
+    NetworkMetrics(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Endpoint lógico de uma URL do Supabase
+     */
+    static String endpointOf(HttpUrl url) {
+        String path = url.encodedPath();
+        if (path.startsWith("/storage/")) {
+            return ENDPOINT_STORAGE;
+        }
+        if (path.startsWith("/rest/v1/rpc/")) {
+            return ENDPOINT_RPC;
+        }
+        if (path.startsWith("/rest/v1/locations")) {
+            return ENDPOINT_LOCATIONS;
+        }
+        if (path.startsWith("/rest/v1/photos")) {
+            return ENDPOINT_PHOTOS;
+        }
+        return ENDPOINT_OTHER;
+    }
+
+    void recordResponse(String endpoint, long latencyMs, int statusCode, long bytesSent) {
+        stats(endpoint).recordResponse(latencyMs, statusCode, bytesSent);
+    }
+
+    void recordFailure(String endpoint, long latencyMs, long bytesSent) {
+        stats(endpoint).recordFailure(latencyMs, bytesSent);
+    }
+
+    void recordBytesReceived(String endpoint, long bytes) {
+        stats(endpoint).recordBytesReceived(bytes);
+    }
+
+    /**
+     * Registra uma resposta cujo corpo ainda não foi fechado
+     * @return Identificador a ser passado para {@link #responseClosed(long)}
+     */
+    long responseOpened(String endpoint, String method, HttpUrl url) {
+        long id = nextResponseId.incrementAndGet();
+        // A query pode conter dados do usuário, então só o caminho é guardado
+        openResponses.put(id, new OpenResponse(endpoint, method + " " + url.encodedPath(), SystemClock.elapsedRealtime()));
+        return id;
+    }
+
+    void responseClosed(long id) {
+        openResponses.remove(id);
+    }
+
+    private EndpointStats stats(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, name -> new EndpointStats());
+    }
+
+    /**
+     * Métricas de um endpoint, ou null se ele ainda não foi chamado
+     */
+    public EndpointSnapshot getEndpoint(String endpoint) {
+        EndpointStats stats = endpoints.get(endpoint);
+        return stats != null ? stats.snapshot(endpoint) : null;
+    }
+
+    /**
+     * Métricas de todos os endpoints já chamados, em ordem alfabética
+     */
+    public List<EndpointSnapshot> getEndpoints() {
+        List<EndpointSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(endpoints).entrySet()) {
+            snapshots.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Conexões abertas no pool, em uso ou ociosas
+     */
+    public int getConnectionCount() {
+        return connectionPool.connectionCount();
+    }
+
+    public int getIdleConnectionCount() {
+        return connectionPool.idleConnectionCount();
+    }
+
+    /**
+     * Respostas recebidas cujo corpo ainda não foi fechado
+     */
+    public int getOpenResponseCount() {
+        return openResponses.size();
+    }
+
+    /**
+     * Respostas abertas há mais tempo que o limite, provavelmente esquecidas sem
+     * {@code close()}. Cada item descreve o endpoint, o método, o caminho e a idade.
+     */
+    public List<String> getUnclosedResponses(long olderThanMs) {
+        long now = SystemClock.elapsedRealtime();
+        List<String> unclosed = new ArrayList<>();
+        for (OpenResponse response : openResponses.values()) {
+            long age = now - response.openedAt;
+            if (age >= olderThanMs) {
+                unclosed.add(response.endpoint + ": " + response.request + " aberta há " + age + " ms");
+            }
+        }
+        Collections.sort(unclosed);
+        return unclosed;
+    }
+
+    /**
+     * Reinicia os contadores dos endpoints. As respostas abertas continuam acompanhadas.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "conexões: %d (%d ociosas), respostas abertas: %d",
+                getConnectionCount(), getIdleConnectionCount(), getOpenResponseCount()));
+        for (EndpointSnapshot endpoint : getEndpoints()) {
+            summary.append('\n').append(endpoint);
+        }
+        return summary.toString();
+    }
+
+    private static final class OpenResponse {
+        final String endpoint;
+        final String request;
+        final long openedAt;
+
+        OpenResponse(String endpoint, String request, long openedAt) {
+            this.endpoint = endpoint;
+            this.request = request;
+            this.openedAt = openedAt;
+        }
+    }
+
+    private static final class EndpointStats {
+        private final long[] latencyCounts = new long[LATENCY_BUCKETS_MS.length + 1];
+        private final Map<Integer, Long> statusCounts = new TreeMap<>();
+        private long requestCount;
+        private long failureCount;
+        private long totalLatencyMs;
+        private long maxLatencyMs;
+        private long bytesSent;
+        private long bytesReceived;
+
+        synchronized void recordResponse(long latencyMs, int statusCode, long sent) {
+            record(latencyMs, sent);
+            statusCounts.merge(statusCode, 1L, Long::sum);
+        }
+
+        synchronized void recordFailure(long latencyMs, long sent) {
+            record(latencyMs, sent);
+            failureCount++;
+        }
+
+        private void record(long latencyMs, long sent) {
+            requestCount++;
+            totalLatencyMs += latencyMs;
+            maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+            if (sent > 0) {
+                bytesSent += sent;
+            }
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MS.length && latencyMs > LATENCY_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            latencyCounts[bucket]++;
+        }
+
+        synchronized void recordBytesReceived(long bytes) {
+            bytesReceived += bytes;
+        }
+
+        synchronized EndpointSnapshot snapshot(String endpoint) {
+            return new EndpointSnapshot(endpoint, requestCount, failureCount, totalLatencyMs, maxLatencyMs,
+                    bytesSent, bytesReceived, latencyCounts.clone(), new TreeMap<>(statusCounts));
+        }
+    }
+
+    /**
+     * Cópia imutável das métricas de um endpoint
+     */
+    public static final class EndpointSnapshot {
+        private final String endpoint;
+        private final long requestCount;
+        private final long failureCount;
+        private final long totalLatencyMs;
+        private final long maxLatencyMs;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long[] latencyCounts;
+        private final Map<Integer, Long> statusCounts;
+
+        EndpointSnapshot(String endpoint, long requestCount, long failureCount, long totalLatencyMs,
+                         long maxLatencyMs, long bytesSent, long bytesReceived, long[] latencyCounts,
+                         Map<Integer, Long> statusCounts) {
+            this.endpoint = endpoint;
+            this.requestCount = requestCount;
+            this.failureCount = failureCount;
+            this.totalLatencyMs = totalLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.latencyCounts = latencyCounts;
+            this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * Requisições concluídas, com resposta ou com falha de rede
+         */
+        public long getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * Requisições que terminaram sem resposta (timeout, conexão recusada, cancelamento)
+         */
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * Quantidade de respostas por código de status HTTP
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return statusCounts;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Bytes de corpo lidos pelo aplicativo, incluindo os que vieram do cache HTTP
+         */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getAverageLatencyMs() {
+            return requestCount == 0 ? 0 : totalLatencyMs / requestCount;
+        }
+
+        public long getMaxLatencyMs() {
+            return maxLatencyMs;
+        }
+
+        /**
+         * Estimativa de um percentil da latência a partir do histograma
+         * @param percentile Percentil entre 0 e 100
+         * @return Limite superior da faixa que contém o percentil, ou a latência máxima na última faixa
+         */
+        public long getLatencyPercentileMs(double percentile) {
+            if (requestCount == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(requestCount * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                seen += latencyCounts[i];
+                if (seen >= target) {
+                    return Math.min(LATENCY_BUCKETS_MS[i], maxLatencyMs);
+                }
+            }
+            return maxLatencyMs;
+        }
+
+        /**
+         * Vazão média de download em bytes por segundo, considerando o tempo até a resposta
+         */
+        public double getThroughputBytesPerSecond() {
+            return totalLatencyMs == 0 ? 0 : bytesReceived * 1000.0 / totalLatencyMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s: %d requisições (%d falhas), status %s, latência média %d ms, p50 %d ms, p95 %d ms, máx %d ms, %d bytes enviados, %d recebidos",
+                    endpoint, requestCount, failureCount, statusCounts, getAverageLatencyMs(),
+                    getLatencyPercentileMs(50), getLatencyPercentileMs(95), maxLatencyMs, bytesSent, bytesReceived);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.kopecode.palmastour.data;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Acompanha a rede padrão do aparelho por um {@link ConnectivityManager.NetworkCallback}
+ * e publica o estado do link: se há conexão, se ela é tarifada e a banda estimada.
+ *
+ * Substitui a consulta síncrona a {@code getActiveNetworkInfo()} (obsoleta): o
+ * estado é mantido pelo callback e ler {@link #getState()} não faz chamadas ao sistema.
+ */
+public final class NetworkMonitor {
+    /**
+     * Recebe as mudanças do link. É chamado na thread do {@link ConnectivityManager},
+     * não na thread principal.
+     */
+    public interface Listener {
+        void onLinkChanged(LinkState state);
+    }
+
+    /**
+     * Estado do link em um momento
+     */
+    public static final class LinkState {
+        static final LinkState DISCONNECTED = new LinkState(false, false, true, 0, 0);
+
+        private final boolean connected;
+        private final boolean validated;
+        private final boolean metered;
+        private final int downstreamKbps;
+        private final int upstreamKbps;
+
+        LinkState(boolean connected, boolean validated, boolean metered, int downstreamKbps, int upstreamKbps) {
+            this.connected = connected;
+            this.validated = validated;
+            this.metered = metered;
+            this.downstreamKbps = downstreamKbps;
+            this.upstreamKbps = upstreamKbps;
+        }
+
+        /**
+         * Há uma rede com acesso à internet
+         */
+        public boolean isConnected() {
+            return connected;
+        }
+
+        /**
+         * O sistema confirmou que a rede chega à internet (não é um portal cativo, por exemplo)
+         */
+        public boolean isValidated() {
+            return validated;
+        }
+
+        /**
+         * A rede é tarifada (dados móveis, ponto de acesso); falso também quando a
+         * operadora libera o uso temporariamente
+         */
+        public boolean isMetered() {
+            return metered;
+        }
+
+        /**
+         * Banda de download estimada pelo sistema, em kbps
+         */
+        public int getDownstreamKbps() {
+            return downstreamKbps;
+        }
+
+        /**
+         * Banda de upload estimada pelo sistema, em kbps
+         */
+        public int getUpstreamKbps() {
+            return upstreamKbps;
+        }
+
+        /**
+         * Mudou algo que interessa a quem agenda envios (conexão ou tarifação)
+         */
+        boolean differsFrom(LinkState other) {
+            return connected != other.connected || validated != other.validated || metered != other.metered;
+        }
+
+        @Override
+        public String toString() {
+            if (!connected) {
+                return "sem conexão";
+            }
+            return (metered ? "tarifada" : "não tarifada") + (validated ? "" : ", não validada")
+                    + ", " + downstreamKbps + "/" + upstreamKbps + " kbps";
+        }
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile LinkState state;
+
+    NetworkMonitor(Context context) {
+        ConnectivityManager cm = context.getSystemService(ConnectivityManager.class);
+        this.state = stateOf(cm.getNetworkCapabilities(cm.getActiveNetwork()));
+        cm.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            // Na rede padrão, onCapabilitiesChanged sempre vem logo depois de onAvailable
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                update(stateOf(capabilities));
+            }
+
+            @Override
+            public void onLost(Network network) {
+                update(LinkState.DISCONNECTED);
+            }
+        });
+    }
+
+    public LinkState getState() {
+        return state;
+    }
+
+    public boolean isConnected() {
+        return state.isConnected();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void update(LinkState newState) {
+        LinkState previous = state;
+        state = newState;
+        if (!newState.differsFrom(previous)) {
+            // Só a banda estimada mudou
+            return;
+        }
+        DataLog.d("Rede: {}", newState);
+        for (Listener listener : listeners) {
+            listener.onLinkChanged(newState);
+        }
+    }
+
+    private static LinkState stateOf(NetworkCapabilities capabilities) {
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return LinkState.DISCONNECTED;
+        }
+        boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)
+                && !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_TEMPORARILY_NOT_METERED);
+        return new LinkState(true,
+                capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED),
+                metered,
+                capabilities.getLinkDownstreamBandwidthKbps(),
+                capabilities.getLinkUpstreamBandwidthKbps());
+    }
+}
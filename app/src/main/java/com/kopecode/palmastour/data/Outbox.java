@@ -0,0 +1,569 @@
+package com.kopecode.palmastour.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fila de envio persistente das alterações feitas no aplicativo.
+ *
+ * Cada alteração é aplicada na cópia local e registrada na tabela {@code outbox}
+ * na mesma transação, então ela é concluída na hora para o usuário e não se perde
+ * se o aplicativo for fechado. O {@link OutboxWorker} envia a fila quando houver
+ * rede. Todas as operações são idempotentes (os IDs são UUIDs gerados no
+ * aparelho), então uma entrada pode ser repetida até o servidor confirmar.
+ *
+ * Em rede tarifada, as fotos são salvas só com a miniatura e o envio do original
+ * vira uma entrada {@link #OP_UPLOAD_ORIGINAL}, enviada mais tarde por
+ * {@link #drainDeferred()} (ver {@link TransferScheduler}).
+ */
+public class Outbox {
+    static final String OP_SAVE_PHOTO = "SAVE_PHOTO";
+    static final String OP_UPDATE_LOCATION = "UPDATE_LOCATION";
+    static final String OP_RENAME_LOCATION = "RENAME_LOCATION";
+    static final String OP_UPDATE_PHOTO = "UPDATE_PHOTO";
+    static final String OP_DELETE_PHOTO = "DELETE_PHOTO";
+    static final String OP_DELETE_LOCATION = "DELETE_LOCATION";
+    static final String OP_UPLOAD_ORIGINAL = "UPLOAD_ORIGINAL";
+
+    private static final String TABLE = LocalStore.TABLE_OUTBOX;
+
+    private final SupabaseClient client;
+    private final Context context;
+    private final LocalStore localStore;
+    private final Gson gson;
+    // As duas execuções dos originais (rede não tarifada e carregando) podem
+    // começar juntas; sem isso, cada uma enviaria os mesmos arquivos
+    private final Object deferredLock = new Object();
+
+    /**
+     * Entrada da fila
+     */
+    private static class Entry {
+        long id;
+        String operation;
+        String locationId;
+        String photoId;
+        String payload;
+
+        /**
+         * As entradas de uma mesma localização são enviadas em ordem: se uma
+         * falhar, as seguintes esperam a próxima tentativa
+         */
+        String orderingKey() {
+            return locationId != null ? locationId : photoId;
+        }
+    }
+
+    Outbox(SupabaseClient client, Context context, LocalStore localStore, Gson gson) {
+        this.client = client;
+        this.context = context;
+        this.localStore = localStore;
+        this.gson = gson;
+    }
+
+    // Enfileiramento (chamado fora da thread principal)
+
+    /**
+     * Grava a localização e as fotos na cópia local e enfileira o envio de cada foto
+     * @param location Localização capturada
+     * @param photos Fotos com o caminho do arquivo local definido
+     */
+    public void enqueueSaveWork(Location location, List<Photo> photos) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            localStore.putLocation(location);
+            for (Photo photo : photos) {
+                photo.setLocationId(location.getId());
+                localStore.putPhoto(photo);
+
+                JsonObject payload = new JsonObject();
+                payload.add("location", gson.toJsonTree(location));
+                payload.add("photo", gson.toJsonTree(photo));
+                insert(db, OP_SAVE_PHOTO, location.getId(), photo.getId(), gson.toJson(payload));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        OutboxWorker.schedule(context);
+    }
+
+    public void enqueueUpdateLocation(Location location) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            localStore.putLocation(location);
+            // Só a última versão precisa ser enviada
+            db.delete(TABLE, "operation = ? AND location_id = ?",
+                    new String[]{OP_UPDATE_LOCATION, location.getId()});
+            insert(db, OP_UPDATE_LOCATION, location.getId(), null, gson.toJson(location));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        client.getModelCache().invalidateLocation(location.getId());
+        OutboxWorker.schedule(context);
+    }
+
+    /**
+     * Altera o nome na cópia local e enfileira o envio só do nome
+     * @return false (sem enfileirar nada) se a localização não está na cópia local
+     */
+    public boolean enqueueRenameLocation(String locationId, String name) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (!localStore.renameLocation(locationId, name)) {
+                return false;
+            }
+            // Só o último nome precisa ser enviado
+            db.delete(TABLE, "operation = ? AND location_id = ?",
+                    new String[]{OP_RENAME_LOCATION, locationId});
+            JsonObject payload = new JsonObject();
+            payload.addProperty("name", name);
+            insert(db, OP_RENAME_LOCATION, locationId, null, gson.toJson(payload));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        client.getModelCache().renameLocation(locationId, name);
+        OutboxWorker.schedule(context);
+        return true;
+    }
+
+    public void enqueueUpdatePhoto(Photo photo) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            localStore.putPhoto(photo);
+            // Uma foto que ainda não foi enviada segue com os dados novos
+            ContentValues values = new ContentValues();
+            values.put("payload", savePayloadWith(db, photo));
+            int pendingSaves = db.update(TABLE, values, "operation = ? AND photo_id = ?",
+                    new String[]{OP_SAVE_PHOTO, photo.getId()});
+            if (pendingSaves == 0) {
+                db.delete(TABLE, "operation = ? AND photo_id = ?", new String[]{OP_UPDATE_PHOTO, photo.getId()});
+                insert(db, OP_UPDATE_PHOTO, photo.getLocationId(), photo.getId(), gson.toJson(photo));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        client.getModelCache().invalidatePhoto(photo.getId(), photo.getLocationId());
+        OutboxWorker.schedule(context);
+    }
+
+    public void enqueueDeletePhoto(String photoId) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        String locationId;
+        db.beginTransaction();
+        try {
+            // As URLs do storage ficam na entrada para excluir os arquivos depois
+            Photo photo = localStore.getPhoto(photoId);
+            locationId = photo != null ? photo.getLocationId() : null;
+            localStore.deletePhoto(photoId);
+            db.delete(TABLE, "photo_id = ? AND operation IN (?, ?, ?)",
+                    new String[]{photoId, OP_SAVE_PHOTO, OP_UPDATE_PHOTO, OP_UPLOAD_ORIGINAL});
+            insert(db, OP_DELETE_PHOTO, locationId, photoId, photo != null ? gson.toJson(photo) : null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        client.getModelCache().invalidatePhoto(photoId, locationId);
+        OutboxWorker.schedule(context);
+    }
+
+    public void enqueueDeleteLocation(String locationId) {
+        enqueueDeleteLocations(Collections.singletonList(locationId));
+    }
+
+    /**
+     * Exclui as localizações da cópia local e enfileira a exclusão no servidor.
+     * Exclusões de localizações seguidas na fila são enviadas juntas
+     * ({@link SupabaseClient#deleteLocations(List)}).
+     */
+    public void enqueueDeleteLocations(List<String> locationIds) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String locationId : locationIds) {
+                localStore.deleteLocation(locationId);
+                // O que ainda não foi enviado desta localização não precisa mais ser
+                db.delete(TABLE, "location_id = ?", new String[]{locationId});
+                insert(db, OP_DELETE_LOCATION, locationId, null, null);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (String locationId : locationIds) {
+            client.getModelCache().removeLocation(locationId);
+        }
+        OutboxWorker.schedule(context);
+    }
+
+    /**
+     * Número de alterações que ainda não chegaram ao servidor
+     */
+    public long getPendingCount() {
+        return DatabaseUtils.queryNumEntries(localStore.getReadableDatabase(), TABLE);
+    }
+
+    // Envio
+
+    /**
+     * Envia as entradas urgentes da fila (tudo menos os originais adiados).
+     * Entradas enfileiradas durante o envio também são processadas antes de retornar.
+     * @return true se a fila foi esvaziada; false se alguma entrada precisa ser repetida
+     */
+    boolean drain() {
+        Set<Long> attempted = new HashSet<>();
+        Set<String> blocked = new HashSet<>();
+        boolean complete = true;
+        while (true) {
+            List<Entry> entries = new ArrayList<>();
+            for (Entry entry : loadEntries()) {
+                if (!attempted.contains(entry.id)
+                        && TransferScheduler.urgencyOf(entry.operation) == TransferScheduler.Urgency.IMMEDIATE) {
+                    entries.add(entry);
+                }
+            }
+            if (entries.isEmpty()) {
+                return complete;
+            }
+            if (!drainPass(entries, attempted, blocked)) {
+                complete = false;
+            }
+            SupabaseTask task = SupabaseTask.current();
+            if (task != null && task.isCancelled()) {
+                return false;
+            }
+        }
+    }
+
+    private boolean drainPass(List<Entry> entries, Set<Long> attempted, Set<String> blocked) {
+        boolean complete = true;
+        int i = 0;
+        while (i < entries.size()) {
+            SupabaseTask task = SupabaseTask.current();
+            if (task != null && task.isCancelled()) {
+                return false;
+            }
+
+            Entry entry = entries.get(i);
+            if (OP_SAVE_PHOTO.equals(entry.operation)) {
+                // Fotos salvas em sequência são enviadas em paralelo
+                List<Entry> batch = new ArrayList<>();
+                while (i < entries.size() && OP_SAVE_PHOTO.equals(entries.get(i).operation)) {
+                    Entry save = entries.get(i++);
+                    attempted.add(save.id);
+                    if (blocked.contains(save.orderingKey())) {
+                        complete = false;
+                    } else {
+                        batch.add(save);
+                    }
+                }
+                if (!sendPhotos(batch, blocked)) {
+                    complete = false;
+                }
+                continue;
+            }
+
+            if (OP_DELETE_LOCATION.equals(entry.operation)) {
+                // Localizações excluídas em sequência vão em uma única chamada
+                List<Entry> batch = new ArrayList<>();
+                while (i < entries.size() && OP_DELETE_LOCATION.equals(entries.get(i).operation)) {
+                    Entry delete = entries.get(i++);
+                    attempted.add(delete.id);
+                    if (blocked.contains(delete.orderingKey())) {
+                        complete = false;
+                    } else {
+                        batch.add(delete);
+                    }
+                }
+                if (!deleteLocations(batch, blocked)) {
+                    complete = false;
+                }
+                continue;
+            }
+
+            i++;
+            attempted.add(entry.id);
+            if (blocked.contains(entry.orderingKey())) {
+                complete = false;
+                continue;
+            }
+            if (send(entry)) {
+                remove(entry);
+            } else {
+                markFailed(entry, "Falha ao enviar " + entry.operation);
+                blocked.add(entry.orderingKey());
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    private boolean send(Entry entry) {
+        switch (entry.operation) {
+            case OP_UPDATE_LOCATION:
+                return client.updateLocation(gson.fromJson(entry.payload, Location.class));
+            case OP_RENAME_LOCATION:
+                JsonObject rename = gson.fromJson(entry.payload, JsonObject.class);
+                return client.updateLocationName(entry.locationId, rename.get("name").getAsString());
+            case OP_UPDATE_PHOTO:
+                return client.updatePhoto(gson.fromJson(entry.payload, Photo.class));
+            case OP_DELETE_PHOTO:
+                if (entry.payload != null) {
+                    return client.deletePhoto(gson.fromJson(entry.payload, Photo.class));
+                }
+                return client.deletePhoto(entry.photoId);
+            default:
+                DataLog.e("Operação desconhecida na fila de envio: {}", entry.operation);
+                remove(entry);
+                return true;
+        }
+    }
+
+    private boolean deleteLocations(List<Entry> batch, Set<String> blocked) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        List<String> locationIds = new ArrayList<>();
+        for (Entry entry : batch) {
+            locationIds.add(entry.locationId);
+        }
+        // A função do servidor exclui tudo em uma transação: o lote inteiro vai ou falha junto
+        if (client.deleteLocations(locationIds)) {
+            for (Entry entry : batch) {
+                remove(entry);
+            }
+            return true;
+        }
+        for (Entry entry : batch) {
+            markFailed(entry, "Falha ao enviar " + entry.operation);
+            blocked.add(entry.orderingKey());
+        }
+        return false;
+    }
+
+    private boolean sendPhotos(List<Entry> batch, Set<String> blocked) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        List<Photo> photos = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        Map<String, Location> locations = new HashMap<>();
+        Map<String, Entry> entriesByPhoto = new HashMap<>();
+        for (Entry entry : batch) {
+            JsonObject payload = gson.fromJson(entry.payload, JsonObject.class);
+            Location location = gson.fromJson(payload.get("location"), Location.class);
+            Photo photo = gson.fromJson(payload.get("photo"), Photo.class);
+
+            File file = photo.getFilePath() != null ? new File(photo.getFilePath()) : null;
+            if (file == null || !file.exists()) {
+                // Não há como recuperar o arquivo: a entrada é descartada
+                DataLog.e("Arquivo da foto não existe mais, removendo da fila: {}", photo.getFilePath());
+                remove(entry);
+                continue;
+            }
+            photos.add(photo);
+            files.add(file);
+            locations.put(photo.getId(), location);
+            entriesByPhoto.put(photo.getId(), entry);
+        }
+        if (photos.isEmpty()) {
+            return true;
+        }
+
+        // Em rede tarifada e fora do carregador, só a miniatura e os metadados saem agora
+        TransferScheduler scheduler = client.getTransferScheduler();
+        boolean deferOriginals = !scheduler.canSend(TransferScheduler.Urgency.DEFERRED);
+        File uploadDir = new File(context.getCacheDir(), "upload");
+        PhotoUploadEngine engine = new PhotoUploadEngine(client, PhotoUploadEngine.DEFAULT_CONCURRENCY,
+                new PhotoEncoder(uploadDir), PhotoEncoder.thumbnails(new File(uploadDir, "thumbs")),
+                deferOriginals ? PhotoUploadEngine.Mode.DEFER_ORIGINAL : PhotoUploadEngine.Mode.ALL);
+        // save_work é idempotente: repetir uma foto já salva não a duplica
+        List<PhotoUploadEngine.UploadResult> results = engine.uploadAll(photos, files,
+                photo -> client.saveWork(locations.get(photo.getId()), Collections.singletonList(photo)) != null);
+
+        boolean complete = true;
+        long bytesSaved = 0;
+        int deferred = 0;
+        for (PhotoUploadEngine.UploadResult result : results) {
+            Entry entry = entriesByPhoto.get(result.getPhoto().getId());
+            bytesSaved += result.getBytesSaved();
+            if (result.isSuccessful() && deferOriginals) {
+                replaceWithOriginalUpload(entry, result.getPhoto());
+                deferred++;
+            } else if (result.isSuccessful()) {
+                remove(entry);
+            } else {
+                markFailed(entry, result.getError());
+                blocked.add(entry.orderingKey());
+                complete = false;
+            }
+        }
+        DataLog.d("Fila de envio: {} fotos processadas, {} bytes economizados pela recompressão, {} originais adiados", results.size(), bytesSaved, deferred);
+        if (deferred > 0) {
+            scheduler.schedule(TransferScheduler.Urgency.DEFERRED);
+        }
+        return complete;
+    }
+
+    /**
+     * Troca a entrada de uma foto já salva (com a miniatura) pelo envio do original
+     */
+    private void replaceWithOriginalUpload(Entry entry, Photo photo) {
+        SQLiteDatabase db = localStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            insert(db, OP_UPLOAD_ORIGINAL, photo.getLocationId(), photo.getId(), gson.toJson(photo));
+            remove(entry);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Envia os arquivos originais adiados, em grupos, enquanto a rede não for
+     * tarifada ou o aparelho estiver carregando. Uma execução por vez: a
+     * seguinte espera e envia só o que sobrou.
+     * @return true se não sobrou nenhum original para enviar
+     */
+    boolean drainDeferred() {
+        synchronized (deferredLock) {
+            return drainDeferredLocked();
+        }
+    }
+
+    private boolean drainDeferredLocked() {
+        TransferScheduler scheduler = client.getTransferScheduler();
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : loadEntries()) {
+            if (TransferScheduler.urgencyOf(entry.operation) == TransferScheduler.Urgency.DEFERRED) {
+                entries.add(entry);
+            }
+        }
+
+        File uploadDir = new File(context.getCacheDir(), "upload");
+        PhotoUploadEngine engine = new PhotoUploadEngine(client, PhotoUploadEngine.DEFAULT_CONCURRENCY,
+                new PhotoEncoder(uploadDir), null, PhotoUploadEngine.Mode.ORIGINAL_ONLY);
+        boolean complete = true;
+        for (int start = 0; start < entries.size(); start += PhotoUploadEngine.DEFAULT_CONCURRENCY) {
+            SupabaseTask task = SupabaseTask.current();
+            if (task != null && task.isCancelled()) {
+                return false;
+            }
+            if (!scheduler.canSend(TransferScheduler.Urgency.DEFERRED)) {
+                DataLog.d("Envio de originais pausado: rede tarifada e fora do carregador");
+                return false;
+            }
+
+            List<Photo> photos = new ArrayList<>();
+            List<File> files = new ArrayList<>();
+            Map<String, Entry> entriesByPhoto = new HashMap<>();
+            for (Entry entry : entries.subList(start, Math.min(start + PhotoUploadEngine.DEFAULT_CONCURRENCY, entries.size()))) {
+                Photo photo = gson.fromJson(entry.payload, Photo.class);
+                File file = photo.getFilePath() != null ? new File(photo.getFilePath()) : null;
+                if (file == null || !file.exists()) {
+                    // A foto continua disponível pela miniatura
+                    DataLog.e("Arquivo original não existe mais, removendo da fila: {}", photo.getFilePath());
+                    remove(entry);
+                    continue;
+                }
+                photos.add(photo);
+                files.add(file);
+                entriesByPhoto.put(photo.getId(), entry);
+            }
+
+            for (PhotoUploadEngine.UploadResult result : engine.uploadAll(photos, files,
+                    photo -> client.updatePhotoStorageUrl(photo.getId(), photo.getStorageUrl()))) {
+                Entry entry = entriesByPhoto.get(result.getPhoto().getId());
+                if (result.isSuccessful()) {
+                    remove(entry);
+                } else {
+                    markFailed(entry, result.getError());
+                    complete = false;
+                }
+            }
+        }
+        return complete;
+    }
+
+    // Acesso à tabela
+
+    private void insert(SQLiteDatabase db, String operation, String locationId, String photoId, String payload) {
+        ContentValues values = new ContentValues();
+        values.put("operation", operation);
+        values.put("location_id", locationId);
+        values.put("photo_id", photoId);
+        values.put("payload", payload);
+        values.put("created_at", System.currentTimeMillis());
+        db.insertOrThrow(TABLE, null, values);
+    }
+
+    private List<Entry> loadEntries() {
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = localStore.getReadableDatabase().query(TABLE,
+                new String[]{"id", "operation", "location_id", "photo_id", "payload"},
+                null, null, null, null, "id ASC")) {
+            while (cursor.moveToNext()) {
+                Entry entry = new Entry();
+                entry.id = cursor.getLong(0);
+                entry.operation = cursor.getString(1);
+                entry.locationId = cursor.getString(2);
+                entry.photoId = cursor.getString(3);
+                entry.payload = cursor.getString(4);
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private void remove(Entry entry) {
+        localStore.getWritableDatabase().delete(TABLE, "id = ?", new String[]{String.valueOf(entry.id)});
+    }
+
+    private void markFailed(Entry entry, String error) {
+        localStore.getWritableDatabase().execSQL(
+                "UPDATE " + TABLE + " SET attempts = attempts + 1, last_error = ? WHERE id = ?",
+                new Object[]{error, entry.id});
+        DataLog.e("Entrada da fila de envio falhou ({}): {}", entry.operation, error);
+    }
+
+    /**
+     * Payload de uma foto ainda não enviada, com os dados atualizados da foto
+     */
+    private String savePayloadWith(SQLiteDatabase db, Photo photo) {
+        try (Cursor cursor = db.query(TABLE, new String[]{"payload"}, "operation = ? AND photo_id = ?",
+                new String[]{OP_SAVE_PHOTO, photo.getId()}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            JsonObject payload = gson.fromJson(cursor.getString(0), JsonObject.class);
+            payload.add("photo", gson.toJsonTree(photo));
+            return gson.toJson(payload);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.kopecode.palmastour.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envia a fila do {@link Outbox} em segundo plano, assim que houver rede.
+ *
+ * O WorkManager guarda o agendamento, então o envio continua mesmo que o
+ * aplicativo seja fechado ou o aparelho reiniciado. Entradas que falharem são
+ * repetidas com intervalo crescente.
+ *
+ * Os arquivos originais ({@link TransferScheduler.Urgency#DEFERRED}) são enviados
+ * por execuções separadas, que esperam uma rede não tarifada ou o aparelho carregando.
+ * Se as duas começarem juntas, {@link Outbox#drainDeferred()} as executa uma de cada vez.
+ */
+public class OutboxWorker extends Worker {
+    private static final String UNIQUE_WORK_NAME = "palmastour-outbox";
+    // O WorkManager não combina restrições com "ou": uma execução para cada condição
+    private static final String UNMETERED_WORK_NAME = "palmastour-originals-unmetered";
+    private static final String CHARGING_WORK_NAME = "palmastour-originals-charging";
+    private static final String KEY_DEFERRED = "deferred";
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+    // Respostas abertas há mais tempo que isso provavelmente foram esquecidas sem close()
+    private static final long UNCLOSED_RESPONSE_WARNING_MS = 60_000;
+
+    private volatile SupabaseTask task;
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Agenda o envio da fila. Se já houver um envio em andamento, o novo é
+     * encadeado depois dele, para não perder entradas enfileiradas no fim da execução.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Agenda o envio dos arquivos originais para quando houver uma rede não
+     * tarifada ou o aparelho estiver carregando, o que acontecer primeiro
+     */
+    public static void scheduleDeferred(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueueUniqueWork(UNMETERED_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE,
+                deferredRequest(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.UNMETERED)
+                        .build()));
+        workManager.enqueueUniqueWork(CHARGING_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE,
+                deferredRequest(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .setRequiresCharging(true)
+                        .build()));
+    }
+
+    private static OneTimeWorkRequest deferredRequest(Constraints constraints) {
+        return new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(constraints)
+                .setInputData(new Data.Builder().putBoolean(KEY_DEFERRED, true).build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Outbox outbox = SupabaseClient.getInstance(getApplicationContext()).getOutbox();
+        boolean deferred = getInputData().getBoolean(KEY_DEFERRED, false);
+
+        // As requisições do envio são canceladas se o sistema interromper o trabalho
+        task = new SupabaseTask();
+        task.attachToCurrentThread();
+        try {
+            boolean complete = deferred ? outbox.drainDeferred() : outbox.drain();
+            DataLog.d("Fila de envio processada{}, pendentes: {}", (deferred ? " (originais)" : ""), outbox.getPendingCount());
+            logNetworkMetrics();
+            return complete ? Result.success() : Result.retry();
+        } catch (Exception e) {
+            DataLog.e("Erro ao processar a fila de envio", e);
+            return Result.retry();
+        } finally {
+            task.detachFromCurrentThread();
+        }
+    }
+
+    private void logNetworkMetrics() {
+        SupabaseClient client = SupabaseClient.getInstance(getApplicationContext());
+        NetworkMetrics metrics = client.getNetworkMetrics();
+        DataLog.d("Métricas de rede: {}", metrics);
+        DataLog.d("Cache em memória: {}", client.getModelCache().describe());
+        for (String response : metrics.getUnclosedResponses(UNCLOSED_RESPONSE_WARNING_MS)) {
+            DataLog.w("Resposta não fechada: {}", response);
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        SupabaseTask current = task;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
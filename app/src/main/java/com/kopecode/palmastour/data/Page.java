@@ -0,0 +1,31 @@
+package com.kopecode.palmastour.data;
+
+import java.util.List;
+
+/**
+ * Uma página de resultados e o cursor para buscar a seguinte
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final PageCursor nextCursor;
+
+    Page(List<T> items, PageCursor nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Cursor da próxima página, ou null se esta é a última
+     */
+    public PageCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
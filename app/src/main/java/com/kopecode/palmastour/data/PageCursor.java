@@ -0,0 +1,40 @@
+package com.kopecode.palmastour.data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Posição de uma página na paginação por chave ({@code created_at}, {@code id}).
+ *
+ * Em vez de pular N linhas (OFFSET), a próxima página começa logo depois da
+ * última linha recebida, então o custo de cada página não cresce com a tabela.
+ */
+public final class PageCursor implements Serializable {
+    private final Date createdAt;
+    private final String id;
+
+    public PageCursor(Date createdAt, String id) {
+        if (createdAt == null || id == null) {
+            throw new IllegalArgumentException("createdAt e id são obrigatórios no cursor");
+        }
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * {@code created_at} no formato aceito pelos filtros do PostgREST (UTC). O
+     * servidor grava {@code created_at} em milissegundos (gatilho
+     * {@code truncate_created_at}), então o valor é igual ao da linha.
+     */
+    String createdAtIso() {
+        return IsoDates.format(createdAt);
+    }
+}
@@ -0,0 +1,307 @@
+package com.kopecode.palmastour.data;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reduz e recomprime as fotos da câmera antes do upload.
+ *
+ * A imagem é decodificada com amostragem (sem carregar o bitmap em resolução
+ * total), redimensionada para a dimensão máxima configurada e codificada de novo
+ * em JPEG ou WebP. A rotação indicada no EXIF é aplicada aos pixels e as demais
+ * tags relevantes (data, GPS, câmera) são copiadas para o novo arquivo.
+ */
+public class PhotoEncoder {
+    public static final int DEFAULT_MAX_DIMENSION = 1920;
+    public static final int DEFAULT_QUALITY = 85;
+    // Miniaturas para a grade de fotos (células de 200dp em telas de alta densidade)
+    public static final int THUMBNAIL_MAX_DIMENSION = 480;
+    public static final int THUMBNAIL_QUALITY = 75;
+
+    public enum Format {
+        JPEG(".jpg"),
+        WEBP(".webp");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    // Tags EXIF mantidas no arquivo recomprimido
+    private static final String[] PRESERVED_TAGS = {
+            ExifInterface.TAG_DATETIME,
+            ExifInterface.TAG_DATETIME_ORIGINAL,
+            ExifInterface.TAG_DATETIME_DIGITIZED,
+            ExifInterface.TAG_OFFSET_TIME,
+            ExifInterface.TAG_OFFSET_TIME_ORIGINAL,
+            ExifInterface.TAG_GPS_LATITUDE,
+            ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE,
+            ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE,
+            ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_TIMESTAMP,
+            ExifInterface.TAG_GPS_DATESTAMP,
+            ExifInterface.TAG_MAKE,
+            ExifInterface.TAG_MODEL
+    };
+
+    /**
+     * Resultado da codificação de uma foto
+     */
+    public static class Result {
+        private final File file;
+        private final long originalBytes;
+        private final long encodedBytes;
+        private final int width;
+        private final int height;
+
+        Result(File file, long originalBytes, long encodedBytes, int width, int height) {
+            this.file = file;
+            this.originalBytes = originalBytes;
+            this.encodedBytes = encodedBytes;
+            this.width = width;
+            this.height = height;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        public long getEncodedBytes() {
+            return encodedBytes;
+        }
+
+        public long getBytesSaved() {
+            return originalBytes - encodedBytes;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    private final File outputDir;
+    private final int maxDimension;
+    private final int quality;
+    private final Format format;
+
+    public PhotoEncoder(File outputDir) {
+        this(outputDir, DEFAULT_MAX_DIMENSION, DEFAULT_QUALITY, Format.JPEG);
+    }
+
+    /**
+     * Encoder de miniaturas em WebP, para a grade de fotos
+     */
+    public static PhotoEncoder thumbnails(File outputDir) {
+        return new PhotoEncoder(outputDir, THUMBNAIL_MAX_DIMENSION, THUMBNAIL_QUALITY, Format.WEBP);
+    }
+
+    public PhotoEncoder(File outputDir, int maxDimension, int quality, Format format) {
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("maxDimension deve ser positivo");
+        }
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality deve estar entre 0 e 100");
+        }
+        this.outputDir = outputDir;
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+        this.format = format;
+    }
+
+    /**
+     * Codifica a foto em um novo arquivo no diretório de saída.
+     * Se o resultado não for menor que o original, o próprio original é retornado.
+     * @param source Arquivo original da câmera
+     * @return Arquivo codificado e a economia de bytes
+     */
+    public Result encode(File source) throws IOException {
+        long originalBytes = source.length();
+        File destination = new File(outputDir, baseName(source.getName()) + format.getExtension());
+
+        // Reaproveita uma codificação anterior (ex.: upload interrompido), mantendo
+        // o mesmo arquivo para que o upload retomável possa continuar. O destino só
+        // existe depois do rename, mas um arquivo que não decodifica é refeito.
+        if (destination.exists() && destination.length() > 0
+                && destination.lastModified() >= source.lastModified()) {
+            BitmapFactory.Options encodedBounds = new BitmapFactory.Options();
+            encodedBounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(destination.getAbsolutePath(), encodedBounds);
+            if (encodedBounds.outWidth > 0 && encodedBounds.outHeight > 0) {
+                return new Result(destination, originalBytes, destination.length(),
+                        encodedBounds.outWidth, encodedBounds.outHeight);
+            }
+            DataLog.w("Codificação anterior de {} ilegível, refazendo", source.getName());
+            destination.delete();
+        }
+
+        // Lê apenas as dimensões, sem decodificar os pixels
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Não foi possível ler a imagem: " + source.getName());
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight);
+        Bitmap sampled = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (sampled == null) {
+            throw new IOException("Não foi possível decodificar a imagem: " + source.getName());
+        }
+
+        ExifInterface sourceExif = new ExifInterface(source.getAbsolutePath());
+        int orientation = sourceExif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+
+        Bitmap output = transform(sampled, orientation);
+        if (output != sampled) {
+            sampled.recycle();
+        }
+
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            output.recycle();
+            throw new IOException("Não foi possível criar o diretório " + outputDir.getAbsolutePath());
+        }
+        // Codifica em um arquivo temporário e só publica o destino com o EXIF já
+        // gravado, para que um processo morto no meio nunca deixe um destino truncado
+        File temp = new File(outputDir, destination.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            Bitmap.CompressFormat compressFormat = format == Format.WEBP
+                    ? Bitmap.CompressFormat.WEBP_LOSSY
+                    : Bitmap.CompressFormat.JPEG;
+            if (!output.compress(compressFormat, quality, out)) {
+                throw new IOException("Falha ao codificar a imagem: " + source.getName());
+            }
+        } catch (IOException e) {
+            output.recycle();
+            temp.delete();
+            throw e;
+        }
+        int width = output.getWidth();
+        int height = output.getHeight();
+        output.recycle();
+
+        copyExif(sourceExif, temp);
+
+        long encodedBytes = temp.length();
+        if (encodedBytes >= originalBytes) {
+            // A foto já era pequena: envia o original
+            temp.delete();
+            destination.delete();
+            return new Result(source, originalBytes, originalBytes, bounds.outWidth, bounds.outHeight);
+        }
+        if (!temp.renameTo(destination)) {
+            temp.delete();
+            throw new IOException("Não foi possível gravar " + destination.getAbsolutePath());
+        }
+
+        if (DataLog.DEBUG) {
+            DataLog.d("Foto {} recomprimida: {} bytes ({})", source.getName(),
+                    originalBytes + " -> " + encodedBytes, width + "x" + height);
+        }
+        return new Result(destination, originalBytes, encodedBytes, width, height);
+    }
+
+    /**
+     * Maior potência de 2 que mantém o lado maior da imagem acima da dimensão máxima
+     */
+    private int sampleSizeFor(int width, int height) {
+        int longSide = Math.max(width, height);
+        int sampleSize = 1;
+        while (longSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Aplica o redimensionamento final e a orientação do EXIF em uma única cópia
+     */
+    private Bitmap transform(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longSide > maxDimension) {
+            float scale = (float) maxDimension / longSide;
+            matrix.postScale(scale, scale);
+        }
+
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+            default:
+                break;
+        }
+
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    private void copyExif(ExifInterface sourceExif, File destination) {
+        try {
+            ExifInterface destinationExif = new ExifInterface(destination.getAbsolutePath());
+            for (String tag : PRESERVED_TAGS) {
+                String value = sourceExif.getAttribute(tag);
+                if (value != null) {
+                    destinationExif.setAttribute(tag, value);
+                }
+            }
+            // Os pixels já estão na orientação correta
+            destinationExif.setAttribute(ExifInterface.TAG_ORIENTATION,
+                    String.valueOf(ExifInterface.ORIENTATION_NORMAL));
+            destinationExif.saveAttributes();
+        } catch (IOException | UnsupportedOperationException e) {
+            DataLog.e("Não foi possível copiar o EXIF para {}: {}", destination.getName(), e.getMessage());
+        }
+    }
+
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
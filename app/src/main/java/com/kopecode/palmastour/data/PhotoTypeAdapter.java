@@ -0,0 +1,91 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Lê e escreve {@link Photo} campo a campo, sem reflexão. Os nomes seguem as
+ * colunas da tabela {@code photos}, os mesmos dos {@code @SerializedName} do modelo.
+ *
+ * Campos nulos ou desconhecidos no JSON são ignorados e mantêm o valor do
+ * construtor; campos nulos não são escritos.
+ */
+final class PhotoTypeAdapter extends TypeAdapter<Photo> {
+    // Colunas escritas por write(), na mesma ordem
+    static final String COLUMNS = "id,location_id,file_path,storage_url,thumbnail_url,created_at,description";
+
+    private final TypeAdapter<Date> dateAdapter;
+
+    PhotoTypeAdapter(TypeAdapter<Date> dateAdapter) {
+        this.dateAdapter = dateAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Photo photo) throws IOException {
+        if (photo == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(photo.getId());
+        out.name("location_id").value(photo.getLocationId());
+        out.name("file_path").value(photo.getFilePath());
+        out.name("storage_url").value(photo.getStorageUrl());
+        out.name("thumbnail_url").value(photo.getThumbnailUrl());
+        out.name("created_at");
+        dateAdapter.write(out, photo.getCreatedAt());
+        out.name("description").value(photo.getDescription());
+        out.endObject();
+    }
+
+    @Override
+    public Photo read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Photo photo = Photo.blank();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    photo.setId(in.nextString());
+                    break;
+                case "location_id":
+                    photo.setLocationId(in.nextString());
+                    break;
+                case "file_path":
+                    photo.setFilePath(in.nextString());
+                    break;
+                case "storage_url":
+                    photo.setStorageUrl(in.nextString());
+                    break;
+                case "thumbnail_url":
+                    photo.setThumbnailUrl(in.nextString());
+                    break;
+                case "created_at":
+                    photo.setCreatedAt(dateAdapter.read(in));
+                    break;
+                case "description":
+                    photo.setDescription(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return photo;
+    }
+}
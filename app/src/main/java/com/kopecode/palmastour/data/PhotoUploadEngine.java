@@ -0,0 +1,350 @@
+package com.kopecode.palmastour.data;
+
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envia várias fotos em paralelo.
+ *
+ * Até {@code maxConcurrentUploads} uploads rodam ao mesmo tempo no pool
+ * {@link DataExecutors#uploads()}, compartilhando o pool de conexões do OkHttp
+ * (multiplexadas em HTTP/2 quando o servidor suporta). Assim que o upload de uma
+ * foto termina, os seus metadados são gravados na mesma thread, enquanto os demais
+ * uploads continuam em andamento.
+ *
+ * Os arquivos gerados para o envio (original recomprimido e miniatura) ficam no
+ * cache enquanto o envio deles não terminar, para que a próxima tentativa
+ * reaproveite a codificação e retome o upload do mesmo arquivo. Eles são apagados
+ * assim que são enviados, ou quando nenhuma tentativa futura vai usá-los (a
+ * miniatura opcional do modo {@link Mode#ALL}).
+ */
+public class PhotoUploadEngine {
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Quais arquivos enviar antes de gravar os metadados
+     */
+    public enum Mode {
+        /** O original e a miniatura */
+        ALL,
+        /** Só a miniatura; o original fica para depois e a foto é gravada sem {@code storage_url} */
+        DEFER_ORIGINAL,
+        /** Só o original, de uma foto cujos metadados e miniatura já foram enviados */
+        ORIGINAL_ONLY
+    }
+
+    /**
+     * Grava os metadados de uma foto cujo arquivo já foi enviado
+     */
+    public interface MetadataWriter {
+        boolean write(Photo photo);
+    }
+
+    /**
+     * Resultado do envio de um arquivo
+     */
+    public static class UploadResult {
+        private final Photo photo;
+        private final File file;
+        private boolean uploaded;
+        private boolean saved;
+        private String error;
+        private long elapsedMillis;
+        private long originalBytes;
+        private long uploadedBytes;
+
+        UploadResult(Photo photo, File file) {
+            this.photo = photo;
+            this.file = file;
+        }
+
+        public Photo getPhoto() {
+            return photo;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Os arquivos que o {@link Mode} exige foram enviados
+         */
+        public boolean isUploaded() {
+            return uploaded;
+        }
+
+        public boolean isSaved() {
+            return saved;
+        }
+
+        public boolean isSuccessful() {
+            return uploaded && saved;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        public long getUploadedBytes() {
+            return uploadedBytes;
+        }
+
+        /**
+         * Bytes economizados pela recompressão antes do upload
+         */
+        public long getBytesSaved() {
+            return originalBytes - uploadedBytes;
+        }
+    }
+
+    private final SupabaseClient client;
+    private final int maxConcurrentUploads;
+    private final PhotoEncoder encoder;
+    private final PhotoEncoder thumbnailEncoder;
+    private final Mode mode;
+
+    public PhotoUploadEngine(SupabaseClient client) {
+        this(client, DEFAULT_CONCURRENCY, null, null);
+    }
+
+    public PhotoUploadEngine(SupabaseClient client, int maxConcurrentUploads,
+                             PhotoEncoder encoder, PhotoEncoder thumbnailEncoder) {
+        this(client, maxConcurrentUploads, encoder, thumbnailEncoder, Mode.ALL);
+    }
+
+    /**
+     * @param client Cliente usado nos uploads
+     * @param maxConcurrentUploads Número máximo de uploads simultâneos
+     * @param encoder Recompressão aplicada antes do upload, ou null para enviar o arquivo original
+     * @param thumbnailEncoder Gera a miniatura enviada junto com cada foto, ou null para não gerar
+     * @param mode Quais arquivos enviar
+     */
+    public PhotoUploadEngine(SupabaseClient client, int maxConcurrentUploads,
+                             PhotoEncoder encoder, PhotoEncoder thumbnailEncoder, Mode mode) {
+        if (maxConcurrentUploads < 1) {
+            throw new IllegalArgumentException("maxConcurrentUploads deve ser pelo menos 1");
+        }
+        this.client = client;
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.encoder = encoder;
+        this.thumbnailEncoder = thumbnailEncoder;
+        this.mode = mode;
+    }
+
+    /**
+     * Envia os arquivos das fotos e grava os metadados de cada uma assim que o upload termina.
+     * Bloqueia até que todos os envios terminem.
+     * @param photos Fotos a serem salvas (com locationId definido)
+     * @param files Arquivos locais, na mesma ordem das fotos
+     * @param writer Como gravar os metadados de cada foto enviada
+     * @return Resultado por arquivo, na mesma ordem das fotos
+     */
+    public List<UploadResult> uploadAll(List<Photo> photos, List<File> files, MetadataWriter writer) {
+        if (photos.size() != files.size()) {
+            throw new IllegalArgumentException("photos e files devem ter o mesmo tamanho");
+        }
+
+        List<UploadResult> results = new ArrayList<>();
+        if (photos.isEmpty()) {
+            return results;
+        }
+
+        for (int i = 0; i < photos.size(); i++) {
+            results.add(new UploadResult(photos.get(i), files.get(i)));
+        }
+
+        // As chamadas feitas pelas threads de upload pertencem à mesma tarefa assíncrona
+        final SupabaseTask parentTask = SupabaseTask.current();
+        int workerCount = Math.min(maxConcurrentUploads, photos.size());
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(workerCount);
+        List<AtomicBoolean> started = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Cada worker envia as fotos seguintes da lista até acabarem
+        for (int i = 0; i < workerCount; i++) {
+            AtomicBoolean workerStarted = new AtomicBoolean();
+            started.add(workerStarted);
+            futures.add(DataExecutors.uploads().submit(() -> {
+                if (!workerStarted.compareAndSet(false, true)) {
+                    // Cancelado antes de começar; a contagem já foi feita
+                    return;
+                }
+                if (parentTask != null) {
+                    parentTask.attachToCurrentThread();
+                }
+                try {
+                    int index;
+                    while (!stopped.get() && (index = next.getAndIncrement()) < results.size()) {
+                        upload(results.get(index), writer);
+                    }
+                } finally {
+                    if (parentTask != null) {
+                        parentTask.detachFromCurrentThread();
+                    }
+                    finished.countDown();
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    DataLog.e("Erro inesperado no envio de foto", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            // A tarefa foi cancelada: interrompe os envios em andamento e espera os
+            // workers terminarem, para que nenhum resultado mude depois de devolvido
+            stopped.set(true);
+            for (int i = 0; i < workerCount; i++) {
+                if (started.get(i).compareAndSet(false, true)) {
+                    finished.countDown();
+                } else {
+                    futures.get(i).cancel(true);
+                }
+            }
+            awaitUninterruptibly(finished);
+            for (UploadResult result : results) {
+                if (!result.isSuccessful() && result.error == null) {
+                    result.error = "Cancelado";
+                }
+            }
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+                // O cancelamento já foi tratado; só falta esperar os workers
+            }
+        }
+    }
+
+    private void upload(UploadResult result, MetadataWriter writer) {
+        long start = System.currentTimeMillis();
+        try {
+            SupabaseTask task = SupabaseTask.current();
+            if (task != null && task.isCancelled()) {
+                result.error = "Cancelado";
+                return;
+            }
+
+            if (mode == Mode.DEFER_ORIGINAL) {
+                // Sem o original, a miniatura é o que a grade exibe: ela é obrigatória
+                result.uploaded = uploadThumbnail(result, result.file);
+                if (!result.uploaded) {
+                    result.error = "Falha no upload da miniatura";
+                    return;
+                }
+            } else {
+                File fileToUpload = encode(result);
+                // Se o upload falhar (ou lançar exceção), o arquivo codificado fica no
+                // cache para que a próxima tentativa retome o mesmo upload
+                result.uploaded = client.uploadPhotoFile(result.photo, fileToUpload);
+                if (!result.uploaded) {
+                    result.error = "Falha no upload do arquivo";
+                    return;
+                }
+                if (mode == Mode.ALL) {
+                    // A miniatura é gerada a partir do arquivo já reduzido, que decodifica mais rápido
+                    uploadThumbnail(result, fileToUpload);
+                }
+                deleteGenerated(fileToUpload, result.file);
+            }
+
+            result.saved = writer.write(result.photo);
+            if (!result.saved) {
+                result.error = "Falha ao salvar os metadados";
+            }
+        } catch (Exception e) {
+            result.error = e.getMessage();
+        } finally {
+            result.elapsedMillis = System.currentTimeMillis() - start;
+            if (DataLog.DEBUG) {
+                DataLog.d("Envio de {}: {} em {}", result.file.getName(),
+                        result.isSuccessful() ? "sucesso" : "falha (" + result.error + ")",
+                        result.elapsedMillis + " ms, " + result.uploadedBytes + " de " + result.originalBytes + " bytes enviados");
+            }
+        }
+    }
+
+    /**
+     * Gera e envia a miniatura da foto. No modo {@link Mode#ALL} uma falha aqui
+     * não invalida a foto: sem miniatura, a grade carrega o original.
+     * @return true se a miniatura foi enviada
+     */
+    private boolean uploadThumbnail(UploadResult result, File source) {
+        if (thumbnailEncoder == null) {
+            return false;
+        }
+        try {
+            PhotoEncoder.Result thumbnail = thumbnailEncoder.encode(source);
+            boolean uploaded = client.uploadThumbnailFile(result.photo, thumbnail.getFile());
+            // No modo DEFER_ORIGINAL a foto é tentada de novo e reaproveita a miniatura;
+            // no modo ALL nenhuma tentativa futura envia a miniatura
+            if (uploaded || mode == Mode.ALL) {
+                deleteGenerated(thumbnail.getFile(), source);
+            }
+            return uploaded;
+        } catch (IOException e) {
+            DataLog.e("Falha ao gerar miniatura de {}: {}", result.file.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Apaga um arquivo gerado para o envio, nunca o arquivo de origem
+     */
+    private static void deleteGenerated(File generated, File source) {
+        if (!generated.equals(source)) {
+            generated.delete();
+        }
+    }
+
+    /**
+     * Recomprime o arquivo, se houver um encoder configurado
+     * @return Arquivo que deve ser enviado
+     */
+    private File encode(UploadResult result) {
+        result.originalBytes = result.file.length();
+        result.uploadedBytes = result.originalBytes;
+        if (encoder == null) {
+            return result.file;
+        }
+        try {
+            PhotoEncoder.Result encoded = encoder.encode(result.file);
+            result.uploadedBytes = encoded.getEncodedBytes();
+            return encoded.getFile();
+        } catch (IOException e) {
+            // Se não for possível recomprimir, envia o original
+            DataLog.e("Falha ao recomprimir {}: {}", result.file.getName(), e.getMessage());
+            return result.file;
+        }
+    }
+}
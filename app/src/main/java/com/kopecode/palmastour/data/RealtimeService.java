@@ -0,0 +1,490 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Atualizações em tempo real das tabelas {@code locations} e {@code photos}
+ * pelo Supabase Realtime (eventos {@code postgres_changes}).
+ *
+ * Fala o protocolo Phoenix diretamente sobre um WebSocket do OkHttp: entra no
+ * canal, envia heartbeats e reconecta com espera exponencial se a conexão cair.
+ * Cada evento é aplicado na cópia local e repassado aos {@link Listener}s. Como
+ * eventos podem ser perdidos enquanto a conexão está fechada, toda entrada no
+ * canal é seguida de uma sincronização incremental ({@link SupabaseClient#sync()})
+ * que preenche o intervalo, e só então o serviço é considerado ao vivo.
+ *
+ * A conexão fica aberta enquanto houver algum listener registrado.
+ */
+public class RealtimeService {
+    /**
+     * Recebe as alterações na thread principal, depois de aplicadas na cópia local
+     */
+    public interface Listener {
+        default void onLocationChanged(Location location) {
+        }
+
+        default void onLocationDeleted(String locationId) {
+        }
+
+        default void onPhotoChanged(Photo photo) {
+        }
+
+        /**
+         * @param locationId Localização da foto, ou null se ela não estava na cópia local
+         */
+        default void onPhotoDeleted(String photoId, String locationId) {
+        }
+
+        /**
+         * A cópia local foi sincronizada depois de uma (re)conexão e pode ter
+         * mudado de várias formas; as telas devem recarregá-la
+         */
+        default void onResync() {
+        }
+    }
+
+    private static final String TOPIC = "realtime:palmastour";
+    // O servidor encerra a conexão sem heartbeat por 60 s
+    private static final long HEARTBEAT_INTERVAL_MS = 25_000;
+    private static final long RECONNECT_BASE_DELAY_MS = 1_000;
+    private static final long RECONNECT_MAX_DELAY_MS = 30_000;
+    // Espera antes de fechar a conexão sem listeners, para não reconectar a cada troca de tela
+    private static final long STOP_DELAY_MS = 5_000;
+
+    private final SupabaseClient client;
+    private final LocalStore localStore;
+    private final Gson gson;
+    private final HttpUrl socketUrl;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Eventos, heartbeats e reconexões rodam em sequência nesta thread; a
+    // sincronização roda no pool de I/O, para não atrasar os heartbeats
+    private final ScheduledExecutorService executor;
+    // Eventos recebidos enquanto alguma sincronização roda, aplicados depois dela
+    private final List<JsonObject> heldChanges = new ArrayList<>();
+
+    private WebSocket socket;
+    private boolean running;
+    private int reconnectAttempt;
+    private int nextRef;
+    private String joinRef;
+    private String pendingHeartbeatRef;
+    private ScheduledFuture<?> heartbeat;
+    private ScheduledFuture<?> scheduled;
+    private int joinCount;
+    private int runningSyncs;
+    private volatile boolean live;
+
+    RealtimeService(SupabaseClient client, LocalStore localStore, Gson gson, String supabaseUrl, String supabaseKey) {
+        this.client = client;
+        this.localStore = localStore;
+        this.gson = gson;
+        this.socketUrl = HttpUrl.get(supabaseUrl + "/realtime/v1/websocket").newBuilder()
+                .addQueryParameter("apikey", supabaseKey)
+                .addQueryParameter("vsn", "1.0.0")
+                .build();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "PalmasTour-realtime");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.executor = scheduler;
+    }
+
+    /**
+     * Registra um listener e abre a conexão, se ainda não estiver aberta.
+     * Deve ser chamado na thread principal.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        executor.execute(this::start);
+    }
+
+    /**
+     * Remove o listener; sem listeners, a conexão é fechada pouco depois
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        executor.execute(() -> {
+            if (listeners.isEmpty() && running) {
+                cancelScheduled();
+                scheduled = executor.schedule(this::stopIfUnused, STOP_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Se a conexão está aberta e a cópia local foi sincronizada desde a última
+     * entrada no canal, ou seja, se ela está em dia sem precisar consultar o servidor
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * A rede voltou: reconectar agora em vez de esperar o fim da espera exponencial
+     */
+    void onLinkChanged(NetworkMonitor.LinkState state) {
+        if (!state.isConnected()) {
+            return;
+        }
+        executor.execute(() -> {
+            if (running && socket == null && reconnectAttempt > 0) {
+                DataLog.d("Rede disponível, reconectando o tempo real");
+                cancelScheduled();
+                connect();
+            }
+        });
+    }
+
+    private void start() {
+        if (running) {
+            if (socket == null && reconnectAttempt > 0) {
+                // Uma tela voltou a ser usada: tentar de novo agora em vez de esperar a espera acabar
+                cancelScheduled();
+                connect();
+            } else if (socket != null) {
+                // Cancelar um fechamento agendado
+                cancelScheduled();
+            }
+            return;
+        }
+        running = true;
+        reconnectAttempt = 0;
+        connect();
+    }
+
+    private void stopIfUnused() {
+        if (!listeners.isEmpty() || !running) {
+            return;
+        }
+        running = false;
+        live = false;
+        cancelHeartbeat();
+        cancelScheduled();
+        if (socket != null) {
+            socket.close(1000, null);
+            socket = null;
+        }
+        DataLog.d("Tempo real desconectado");
+    }
+
+    private void connect() {
+        joinRef = null;
+        pendingHeartbeatRef = null;
+        Request request = new Request.Builder().url(socketUrl).build();
+        socket = client.newWebSocket(request, new SocketListener());
+    }
+
+    private void onOpen(WebSocket webSocket) {
+        JsonObject config = new JsonObject();
+        JsonArray changes = new JsonArray();
+        changes.add(tableFilter(LocalStore.TABLE_LOCATIONS));
+        changes.add(tableFilter(LocalStore.TABLE_PHOTOS));
+        config.add("postgres_changes", changes);
+        JsonObject payload = new JsonObject();
+        payload.add("config", config);
+
+        joinRef = send(webSocket, TOPIC, "phx_join", payload);
+        cancelHeartbeat();
+        heartbeat = executor.scheduleWithFixedDelay(this::sendHeartbeat,
+                HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static JsonObject tableFilter(String table) {
+        JsonObject filter = new JsonObject();
+        filter.addProperty("event", "*");
+        filter.addProperty("schema", "public");
+        filter.addProperty("table", table);
+        return filter;
+    }
+
+    private void sendHeartbeat() {
+        if (socket == null) {
+            return;
+        }
+        if (pendingHeartbeatRef != null) {
+            // O heartbeat anterior não foi respondido: a conexão está morta, mesmo sem erro do socket
+            DataLog.w("Tempo real sem resposta ao heartbeat, reconectando");
+            WebSocket dead = socket;
+            onDisconnected(dead);
+            dead.cancel();
+            return;
+        }
+        pendingHeartbeatRef = send(socket, "phoenix", "heartbeat", new JsonObject());
+    }
+
+    private String send(WebSocket webSocket, String topic, String event, JsonObject payload) {
+        String ref = String.valueOf(++nextRef);
+        JsonObject message = new JsonObject();
+        message.addProperty("topic", topic);
+        message.addProperty("event", event);
+        message.add("payload", payload);
+        message.addProperty("ref", ref);
+        webSocket.send(message.toString());
+        return ref;
+    }
+
+    private void onMessage(String text) {
+        JsonObject message;
+        try {
+            message = JsonParser.parseString(text).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            DataLog.e("Mensagem de tempo real inválida", e);
+            return;
+        }
+        String event = string(message, "event");
+        String ref = string(message, "ref");
+        JsonObject payload = message.has("payload") && message.get("payload").isJsonObject()
+                ? message.getAsJsonObject("payload") : new JsonObject();
+
+        if ("phx_reply".equals(event)) {
+            if (ref != null && ref.equals(pendingHeartbeatRef)) {
+                pendingHeartbeatRef = null;
+            } else if (ref != null && ref.equals(joinRef)) {
+                onJoinReply(payload);
+            }
+        } else if ("postgres_changes".equals(event)) {
+            JsonElement data = payload.get("data");
+            if (data != null && data.isJsonObject()) {
+                if (runningSyncs > 0) {
+                    heldChanges.add(data.getAsJsonObject());
+                } else {
+                    applyChange(data.getAsJsonObject());
+                }
+            }
+        } else if (TOPIC.equals(string(message, "topic")) && ("phx_error".equals(event) || "phx_close".equals(event))) {
+            DataLog.w("Canal de tempo real encerrado pelo servidor: {}", event);
+            WebSocket current = socket;
+            onDisconnected(current);
+            if (current != null) {
+                current.close(1000, null);
+            }
+        }
+    }
+
+    private void onJoinReply(JsonObject payload) {
+        if (!"ok".equals(string(payload, "status"))) {
+            DataLog.e("Erro ao entrar no canal de tempo real: {}", payload);
+            WebSocket current = socket;
+            onDisconnected(current);
+            if (current != null) {
+                current.close(1000, null);
+            }
+            return;
+        }
+        reconnectAttempt = 0;
+        DataLog.d("Tempo real conectado, sincronizando o intervalo desconectado");
+
+        // Preencher os eventos perdidos enquanto a conexão estava fechada. A
+        // sincronização roda fora desta thread; os eventos que chegarem durante ela
+        // são guardados e aplicados depois, então nenhum é sobrescrito por dados mais antigos.
+        int join = ++joinCount;
+        WebSocket joined = socket;
+        runningSyncs++;
+        DataExecutors.background().execute(() -> {
+            SyncResult result = null;
+            try {
+                result = client.sync();
+            } catch (IOException e) {
+                DataLog.e("Erro ao sincronizar após conectar o tempo real", e);
+            } finally {
+                // Mesmo se a sincronização falhar, os eventos guardados precisam ser aplicados
+                SyncResult finished = result;
+                executor.execute(() -> onSyncFinished(join, joined, finished));
+            }
+        });
+    }
+
+    /**
+     * @param result Resultado da sincronização, ou null se ela falhou
+     */
+    private void onSyncFinished(int join, WebSocket joined, SyncResult result) {
+        runningSyncs--;
+        // Só a sincronização da entrada mais recente decide: ao vivo se deu certo e
+        // a mesma conexão ainda está aberta
+        if (join == joinCount) {
+            live = result != null && joined != null && socket == joined;
+        }
+        if (result != null && result.hasChanges()) {
+            notifyListeners(Listener::onResync);
+        }
+        if (runningSyncs == 0) {
+            for (JsonObject data : heldChanges) {
+                applyChange(data);
+            }
+            heldChanges.clear();
+        }
+    }
+
+    private void applyChange(JsonObject data) {
+        String type = string(data, "type");
+        String table = string(data, "table");
+        if (type == null || table == null) {
+            return;
+        }
+        boolean deleted = "DELETE".equals(type);
+        JsonElement element = data.get(deleted ? "old_record" : "record");
+        if (element == null || !element.isJsonObject()) {
+            return;
+        }
+        JsonObject record = element.getAsJsonObject();
+
+        SyncChanges changes = new SyncChanges();
+        try {
+            if (LocalStore.TABLE_LOCATIONS.equals(table)) {
+                if (deleted) {
+                    String locationId = string(record, "id");
+                    changes.deletedLocationIds.add(locationId);
+                    client.applyChanges(changes, false);
+                    notifyListeners(listener -> listener.onLocationDeleted(locationId));
+                } else {
+                    Location location = gson.fromJson(record, Location.class);
+                    changes.locations.add(location);
+                    client.applyChanges(changes, false);
+                    notifyListeners(listener -> listener.onLocationChanged(location));
+                }
+            } else if (LocalStore.TABLE_PHOTOS.equals(table)) {
+                if (deleted) {
+                    String photoId = string(record, "id");
+                    // Em exclusões o servidor pode enviar só a chave primária
+                    String locationId = string(record, "location_id");
+                    if (locationId == null) {
+                        Photo local = localStore.getPhoto(photoId);
+                        locationId = local != null ? local.getLocationId() : null;
+                    }
+                    changes.deletedPhotoIds.add(photoId);
+                    client.applyChanges(changes, false);
+                    String finalLocationId = locationId;
+                    notifyListeners(listener -> listener.onPhotoDeleted(photoId, finalLocationId));
+                } else {
+                    Photo photo = gson.fromJson(record, Photo.class);
+                    changes.photos.add(photo);
+                    client.applyChanges(changes, false);
+                    notifyListeners(listener -> listener.onPhotoChanged(photo));
+                }
+            }
+        } catch (JsonParseException | android.database.SQLException e) {
+            DataLog.e("Erro ao aplicar evento de tempo real", e);
+        }
+    }
+
+    private interface Notification {
+        void deliver(Listener listener);
+    }
+
+    private void notifyListeners(Notification notification) {
+        DataExecutors.runOnMainThread(() -> {
+            for (Listener listener : listeners) {
+                notification.deliver(listener);
+            }
+        });
+    }
+
+    /**
+     * A conexão caiu: agenda uma nova tentativa com espera exponencial e jitter
+     */
+    private void onDisconnected(WebSocket webSocket) {
+        if (webSocket == null || webSocket != socket) {
+            return;
+        }
+        socket = null;
+        live = false;
+        cancelHeartbeat();
+        if (!running) {
+            return;
+        }
+        long ceiling = Math.min(RECONNECT_MAX_DELAY_MS, RECONNECT_BASE_DELAY_MS << Math.min(reconnectAttempt, 10));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        reconnectAttempt++;
+        DataLog.d("Tempo real desconectado, nova tentativa em {} ms", delay);
+        cancelScheduled();
+        scheduled = executor.schedule(() -> {
+            if (running && socket == null) {
+                connect();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+        pendingHeartbeatRef = null;
+    }
+
+    private void cancelScheduled() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    private static String string(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    /**
+     * Repassa os callbacks do OkHttp para o executor, descartando os de conexões antigas
+     */
+    private class SocketListener extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            executor.execute(() -> {
+                if (webSocket == socket) {
+                    RealtimeService.this.onOpen(webSocket);
+                }
+            });
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            executor.execute(() -> {
+                if (webSocket == socket) {
+                    RealtimeService.this.onMessage(text);
+                }
+            });
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            executor.execute(() -> onDisconnected(webSocket));
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            DataLog.e("Falha na conexão de tempo real: {}", t.getMessage());
+            executor.execute(() -> onDisconnected(webSocket));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.kopecode.palmastour.data;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Política de cache HTTP das leituras da API REST (PostgREST).
+ *
+ * O PostgREST não informa por quanto tempo uma resposta pode ser reutilizada,
+ * então as leituras recebem um prazo curto de validade: reabrir uma tela dentro
+ * desse prazo não acessa a rede. Se o servidor enviar ETag ou Last-Modified, o
+ * OkHttp revalida a resposta com If-None-Match / If-Modified-Since depois do prazo.
+ * As funções RPC ({@code /rest/v1/rpc/}) ficam de fora: a sincronização, por
+ * exemplo, devolve o horário do servidor e não pode ser reaproveitada.
+ * Qualquer escrita bem-sucedida na API descarta as leituras em cache, para que a
+ * próxima consulta veja a alteração.
+ *
+ * Deve ser registrado como network interceptor.
+ */
+class RestCacheInterceptor implements Interceptor {
+    // Prazo de validade das leituras sem Cache-Control do servidor
+    static final int REST_MAX_AGE_SECONDS = 30;
+
+    private final Cache cache;
+    private final String restPrefix;
+    private final String rpcPrefix;
+
+    RestCacheInterceptor(Cache cache, String supabaseUrl) {
+        this.cache = cache;
+        this.restPrefix = supabaseUrl + "/rest/v1/";
+        this.rpcPrefix = restPrefix + "rpc/";
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        String url = request.url().toString();
+        if (!url.startsWith(restPrefix)) {
+            return response;
+        }
+
+        if ("GET".equals(request.method())) {
+            if (response.isSuccessful() && response.header("Cache-Control") == null
+                    && !url.startsWith(rpcPrefix)) {
+                return response.newBuilder()
+                        .header("Cache-Control", "private, max-age=" + REST_MAX_AGE_SECONDS)
+                        .removeHeader("Pragma")
+                        .build();
+            }
+        } else if (response.isSuccessful()) {
+            invalidate();
+        }
+        return response;
+    }
+
+    /**
+     * Descarta todas as leituras da API REST guardadas em cache
+     */
+    void invalidate() {
+        try {
+            Iterator<String> urls = cache.urls();
+            while (urls.hasNext()) {
+                if (urls.next().startsWith(restPrefix)) {
+                    urls.remove();
+                }
+            }
+        } catch (IOException e) {
+            DataLog.e("Erro ao invalidar o cache HTTP", e);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.kopecode.palmastour.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * Upload retomável (protocolo TUS) para o Supabase Storage.
+ *
+ * O arquivo é enviado em blocos e o endereço do upload e o último offset
+ * confirmado ficam salvos em disco. Se a conexão cair, a próxima tentativa
+ * continua do ponto em que parou em vez de reenviar o arquivo inteiro.
+ */
+class ResumableUploader {
+    // O Supabase exige blocos de exatamente 6 MB (exceto o último)
+    static final int CHUNK_SIZE = 6 * 1024 * 1024;
+
+    // Quantas vezes um upload é retomado na mesma chamada antes de desistir
+    private static final int MAX_RESUME_ATTEMPTS = 3;
+    // Resposta de bloco que exige consultar o offset no servidor antes de continuar
+    private static final long OFFSET_UNKNOWN = -2;
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String PREFS_NAME = "palmastour_resumable_uploads";
+    private static final MediaType OFFSET_OCTET_STREAM = MediaType.parse("application/offset+octet-stream");
+
+    private final SupabaseClient supabaseClient;
+    private final String supabaseUrl;
+    private final SharedPreferences state;
+
+    ResumableUploader(SupabaseClient supabaseClient, Context context, String supabaseUrl) {
+        this.supabaseClient = supabaseClient;
+        this.supabaseUrl = supabaseUrl;
+        this.state = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Envia o arquivo, retomando um upload anterior interrompido se existir
+     * @param file Arquivo local
+     * @param bucket Bucket de destino
+     * @param path Caminho do objeto dentro do bucket
+     * @return true se o arquivo foi enviado por completo
+     */
+    boolean upload(File file, String bucket, String path) throws IOException {
+        final long length = file.length();
+        final String key = stateKey(file, bucket, path);
+
+        // Tenta retomar um upload salvo
+        String uploadUrl = state.getString(key + ".url", null);
+        long offset = -1;
+        if (uploadUrl != null) {
+            offset = fetchOffset(uploadUrl);
+            if (offset < 0) {
+                DataLog.d("Upload retomável expirado, recomeçando: {}", path);
+                clearState(key);
+                uploadUrl = null;
+            } else {
+                DataLog.d("Retomando upload de {} a partir do byte {}", path, offset);
+            }
+        }
+
+        if (uploadUrl == null) {
+            uploadUrl = createUpload(length, bucket, path, file.getName());
+            if (uploadUrl == null) {
+                return false;
+            }
+            offset = 0;
+            saveState(key, uploadUrl, offset);
+        }
+
+        int failures = 0;
+        while (offset < length) {
+            long chunkLength = Math.min(CHUNK_SIZE, length - offset);
+            long newOffset;
+            try {
+                newOffset = sendChunk(uploadUrl, file, offset, chunkLength);
+            } catch (IOException e) {
+                if (failures >= MAX_RESUME_ATTEMPTS) {
+                    throw e;
+                }
+                DataLog.e("Bloco interrompido ({}), retomando upload de {}", e.getMessage(), path);
+                newOffset = OFFSET_UNKNOWN;
+            }
+            if (newOffset == OFFSET_UNKNOWN) {
+                // Conexão interrompida ou offset divergente: consulta o servidor e
+                // continua do último byte recebido
+                if (++failures > MAX_RESUME_ATTEMPTS) {
+                    return false;
+                }
+                newOffset = fetchOffset(uploadUrl);
+            }
+            if (newOffset < 0) {
+                // O estado fica salvo para a próxima tentativa
+                return false;
+            }
+            offset = newOffset;
+            saveState(key, uploadUrl, offset);
+        }
+
+        clearState(key);
+        DataLog.d("Upload retomável concluído: {} ({} bytes)", path, length);
+        return true;
+    }
+
+    private String createUpload(long length, String bucket, String path, String fileName) throws IOException {
+        String metadata = "bucketName " + base64(bucket)
+                + ",objectName " + base64(path)
+                + ",contentType " + base64(contentTypeFor(fileName))
+                + ",cacheControl " + base64(SupabaseClient.STORAGE_CACHE_CONTROL_SECONDS);
+
+        Request request = newRequest(supabaseUrl + "/storage/v1/upload/resumable")
+                .post(RequestBody.create(null, new byte[0]))
+                .addHeader("Upload-Length", String.valueOf(length))
+                .addHeader("Upload-Metadata", metadata)
+                .addHeader("x-upsert", "true")
+                .build();
+
+        try (Response response = supabaseClient.execute(request)) {
+            String location = response.header("Location");
+            if (response.code() != 201 || location == null) {
+                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                DataLog.e("Erro ao criar upload retomável: {}, Corpo: {}", response.code(), responseBody);
+                return null;
+            }
+            // O endereço pode ser relativo à URL da requisição
+            HttpUrl resolved = response.request().url().resolve(location);
+            return resolved != null ? resolved.toString() : location;
+        }
+    }
+
+    /**
+     * @return Offset confirmado pelo servidor, ou -1 se o upload não existe mais
+     */
+    private long fetchOffset(String uploadUrl) throws IOException {
+        Request request = newRequest(uploadUrl).head().build();
+        try (Response response = supabaseClient.execute(request)) {
+            String offset = response.header("Upload-Offset");
+            if (!response.isSuccessful() || offset == null) {
+                return -1;
+            }
+            return Long.parseLong(offset);
+        }
+    }
+
+    /**
+     * O PATCH não passa pelas novas tentativas do {@link RetryInterceptor}: reenviar o
+     * mesmo bloco depois que o servidor gravou parte dele gera um 409. Quem decide é
+     * {@link #upload}, consultando o offset antes de continuar.
+     * @return Novo offset confirmado pelo servidor, {@link #OFFSET_UNKNOWN} se for
+     * preciso consultá-lo, ou -1 em caso de falha
+     */
+    private long sendChunk(String uploadUrl, File file, long offset, long chunkLength) throws IOException {
+        Request request = RetryInterceptor.nonRetryable(newRequest(uploadUrl))
+                .patch(new FileChunkBody(file, offset, chunkLength))
+                .addHeader("Upload-Offset", String.valueOf(offset))
+                .build();
+
+        try (Response response = supabaseClient.execute(request)) {
+            String newOffset = response.header("Upload-Offset");
+            if (response.code() == 409 || response.code() >= 500) {
+                // Offset divergente ou falha no meio do bloco: o servidor pode ter gravado parte dele
+                DataLog.e("Bloco do upload recusado ({}), consultando offset", response.code());
+                return OFFSET_UNKNOWN;
+            }
+            if (!response.isSuccessful() || newOffset == null) {
+                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                DataLog.e("Erro ao enviar bloco do upload: {}, Corpo: {}", response.code(), responseBody);
+                return -1;
+            }
+            long confirmed = Long.parseLong(newOffset);
+            if (confirmed <= offset || confirmed > offset + chunkLength) {
+                DataLog.e("Offset {} inesperado após o bloco em {}, consultando offset", confirmed, offset);
+                return OFFSET_UNKNOWN;
+            }
+            return confirmed;
+        }
+    }
+
+    private Request.Builder newRequest(String url) {
+        return new Request.Builder()
+                .url(url)
+                .addHeader("Tus-Resumable", TUS_VERSION);
+    }
+
+    private static String stateKey(File file, String bucket, String path) {
+        // Um arquivo modificado não pode continuar um upload antigo
+        return bucket + "/" + path + "@" + file.length() + ":" + file.lastModified();
+    }
+
+    private void saveState(String key, String uploadUrl, long offset) {
+        state.edit()
+                .putString(key + ".url", uploadUrl)
+                .putLong(key + ".offset", offset)
+                .apply();
+    }
+
+    private void clearState(String key) {
+        state.edit()
+                .remove(key + ".url")
+                .remove(key + ".offset")
+                .apply();
+    }
+
+    private static String base64(String value) {
+        return Base64.encodeToString(value.getBytes(StandardCharsets.UTF_8), Base64.NO_WRAP);
+    }
+
+    private static String contentTypeFor(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (name.endsWith(".webp")) {
+            return "image/webp";
+        } else if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Corpo da requisição com um trecho do arquivo, lido diretamente do disco
+     */
+    private static class FileChunkBody extends RequestBody {
+        private final File file;
+        private final long offset;
+        private final long length;
+
+        FileChunkBody(File file, long offset, long length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OFFSET_OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+                input.seek(offset);
+                byte[] buffer = new byte[8192];
+                long remaining = length;
+                while (remaining > 0) {
+                    int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        throw new EOFException("Fim inesperado do arquivo " + file.getName());
+                    }
+                    sink.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.kopecode.palmastour.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Repete as requisições ao Supabase que falharem por motivos transitórios e
+ * protege cada endpoint com um {@link CircuitBreaker}.
+ *
+ * São repetidas falhas de conexão e as respostas 408, 429, 500, 502, 503 e 504,
+ * com espera exponencial e jitter ("full jitter"), para que vários aparelhos
+ * não voltem a chamar o servidor ao mesmo tempo. Um {@code Retry-After} na
+ * resposta define a espera; se ele for maior que {@link #maxDelayMs}, a resposta
+ * é devolvida sem nova tentativa.
+ *
+ * Só são repetidas requisições idempotentes: GET, HEAD, PUT, PATCH, DELETE e os
+ * POSTs marcados com {@link #idempotent(Request.Builder)}. Requisições marcadas com
+ * {@link #nonRetryable(Request.Builder)} (ex.: blocos do upload TUS, que dependem
+ * do offset no servidor) nunca são repetidas aqui.
+ *
+ * Falhas de conexão sem rede no aparelho não contam para o disjuntor: elas não
+ * dizem nada sobre o servidor. Quando a rede volta, todos os circuitos são fechados.
+ */
+class RetryInterceptor implements Interceptor, NetworkMonitor.Listener {
+    /**
+     * Marca de um POST que pode ser repetido com segurança
+     */
+    private static final class Idempotent {
+        static final Idempotent INSTANCE = new Idempotent();
+    }
+
+    /**
+     * Marca de uma requisição que não pode ser repetida às cegas
+     */
+    private static final class NonRetryable {
+        static final NonRetryable INSTANCE = new NonRetryable();
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final NetworkMonitor networkMonitor;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private volatile boolean linkUp;
+
+    /**
+     * @param maxAttempts Número máximo de tentativas, incluindo a primeira
+     * @param baseDelayMs Espera máxima antes da segunda tentativa; dobra a cada tentativa
+     * @param maxDelayMs Limite da espera entre tentativas
+     * @param failureThreshold Falhas seguidas que abrem o circuito de um endpoint
+     * @param openDurationMs Tempo que o circuito fica aberto antes da requisição de teste
+     * @param networkMonitor Estado da rede do aparelho
+     */
+    RetryInterceptor(int maxAttempts, long baseDelayMs, long maxDelayMs, int failureThreshold, long openDurationMs,
+                     NetworkMonitor networkMonitor) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.networkMonitor = networkMonitor;
+        this.linkUp = networkMonitor.isConnected();
+    }
+
+    /**
+     * Marca um POST como idempotente (ex.: upsert ou RPC que ignora registros repetidos)
+     */
+    static Request.Builder idempotent(Request.Builder builder) {
+        return builder.tag(Idempotent.class, Idempotent.INSTANCE);
+    }
+
+    /**
+     * Marca uma requisição cuja repetição deve ser decidida por quem a envia
+     * (ex.: PATCH do TUS, que precisa consultar o offset antes de reenviar)
+     */
+    static Request.Builder nonRetryable(Request.Builder builder) {
+        return builder.tag(NonRetryable.class, NonRetryable.INSTANCE);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = NetworkMetrics.endpointOf(request.url());
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint,
+                name -> new CircuitBreaker(name, failureThreshold, openDurationMs));
+        boolean retryable = isIdempotent(request)
+                && (request.body() == null || !request.body().isOneShot());
+
+        for (int attempt = 1; ; attempt++) {
+            breaker.acquire();
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    breaker.onAbandoned();
+                    throw e;
+                }
+                if (networkMonitor.isConnected()) {
+                    breaker.onFailure();
+                } else {
+                    // Sem rede: a falha não é do servidor
+                    breaker.onAbandoned();
+                }
+                if (!retryable || attempt >= maxAttempts) {
+                    throw e;
+                }
+                DataLog.w("Falha em {} (tentativa {}): {}", request.method() + " " + endpoint, attempt, e.getMessage());
+                sleep(backoffDelay(attempt));
+                continue;
+            }
+
+            if (!isRetryableStatus(response.code())) {
+                breaker.onSuccess();
+                return response;
+            }
+            breaker.onFailure();
+
+            long delay = retryAfterDelay(response);
+            if (delay < 0) {
+                delay = backoffDelay(attempt);
+            }
+            if (!retryable || attempt >= maxAttempts || delay > maxDelayMs) {
+                return response;
+            }
+            DataLog.w("Resposta {} em {}, nova tentativa em {} ms", response.code(),
+                    request.method() + " " + endpoint + " (tentativa " + attempt + ")", delay);
+            response.close();
+            sleep(delay);
+        }
+    }
+
+    @Override
+    public void onLinkChanged(NetworkMonitor.LinkState state) {
+        boolean wasUp = linkUp;
+        linkUp = state.isConnected();
+        // Só quando a rede volta; mudar de tarifada para não tarifada não diz nada do servidor
+        if (linkUp && !wasUp) {
+            for (CircuitBreaker breaker : breakers.values()) {
+                breaker.reset();
+            }
+        }
+    }
+
+    private static boolean isIdempotent(Request request) {
+        if (request.tag(NonRetryable.class) != null) {
+            return false;
+        }
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "PATCH":
+            case "DELETE":
+                return true;
+            default:
+                return request.tag(Idempotent.class) != null;
+        }
+    }
+
+    private static boolean isRetryableStatus(int code) {
+        return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * Espera aleatória entre 0 e base * 2^(tentativa - 1), limitada a {@link #maxDelayMs}
+     */
+    private long backoffDelay(int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Espera pedida pelo servidor no {@code Retry-After}, em segundos ou como data HTTP
+     * @return A espera em ms, ou -1 se o cabeçalho não existir ou for inválido
+     */
+    private static long retryAfterDelay(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+        }
+    }
+
+    private static void sleep(long delayMs) throws InterruptedIOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Nova tentativa interrompida");
+        }
+    }
+}
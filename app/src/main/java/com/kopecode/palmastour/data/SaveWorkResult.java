@@ -0,0 +1,29 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado da função {@code save_work}: IDs da localização e das fotos
+ * persistidas na mesma transação.
+ */
+public class SaveWorkResult {
+    @SerializedName("location_id")
+    @Expose
+    private String locationId;
+
+    @SerializedName("photo_ids")
+    @Expose
+    private List<String> photoIds;
+
+    public String getLocationId() {
+        return locationId;
+    }
+
+    public List<String> getPhotoIds() {
+        return photoIds != null ? photoIds : new ArrayList<>();
+    }
+}
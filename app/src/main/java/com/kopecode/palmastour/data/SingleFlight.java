@@ -0,0 +1,101 @@
+package com.kopecode.palmastour.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Junta leituras iguais feitas ao mesmo tempo: enquanto uma leitura de uma chave
+ * está em andamento, quem pedir a mesma chave espera por ela em vez de fazer
+ * outra requisição, e todos recebem o mesmo resultado (ou a mesma falha).
+ *
+ * Se a leitura em andamento for cancelada pela tarefa que a iniciou, quem estava
+ * esperando faz a sua própria leitura.
+ */
+class SingleFlight {
+    interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    /**
+     * A leitura foi abandonada pela tarefa que a iniciou
+     */
+    private static final class Abandoned extends Exception {
+        Abandoned() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Map<String, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * Executa a leitura, ou espera a que já está em andamento para a mesma chave
+     * @param key Identifica a leitura (normalmente a URL)
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Loader<T> loader) throws IOException {
+        while (true) {
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, loader);
+            }
+            sharedCount.incrementAndGet();
+            try {
+                return (T) existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Leitura cancelada");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Abandoned) {
+                    continue;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private <T> T lead(String key, CompletableFuture<Object> flight, Loader<T> loader) throws IOException {
+        T value;
+        try {
+            value = loader.load();
+        } catch (Throwable t) {
+            // Sair do mapa antes de avisar, para que uma nova tentativa não encontre esta leitura
+            flights.remove(key, flight);
+            SupabaseTask task = SupabaseTask.current();
+            boolean abandoned = (task != null && task.isCancelled()) || t instanceof InterruptedIOException;
+            flight.completeExceptionally(abandoned ? new Abandoned() : t);
+            throw t;
+        }
+        flights.remove(key, flight);
+        flight.complete(value);
+        return value;
+    }
+
+    /**
+     * Faz com que as próximas leituras não aproveitem as que já estão em andamento,
+     * cujo resultado pode ser anterior a uma escrita
+     */
+    void forgetAll() {
+        flights.clear();
+    }
+
+    /**
+     * Número de leituras que aproveitaram uma já em andamento
+     */
+    long getSharedCount() {
+        return sharedCount.get();
+    }
+}
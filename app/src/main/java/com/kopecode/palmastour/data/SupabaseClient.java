@@ -1,49 +1,139 @@
 package com.kopecode.palmastour.data;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.net.Uri;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.kopecode.palmastour.R;
 import com.kopecode.palmastour.model.Location;
 import com.kopecode.palmastour.model.Photo;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
 
 public class SupabaseClient {
+    // Bucket das fotos e das miniaturas (<locationId>/ e <locationId>/thumbs/)
+    private static final String PHOTOS_BUCKET = "photos";
+    // Máximo de caminhos por chamada de remoção em lote do storage
+    private static final int STORAGE_REMOVE_BATCH_SIZE = 1000;
+    // Acima deste tamanho os arquivos são enviados pelo upload retomável (TUS). É
+    // independente do tamanho do bloco: o último bloco pode ser menor que 6 MB, e
+    // uma foto recomprimida de poucos MB também continua de onde parou se a conexão cair
+    private static final long RESUMABLE_UPLOAD_THRESHOLD = 1024 * 1024;
+    // Tamanho das páginas da galeria e da grade de fotos (2 colunas)
+    public static final int LOCATIONS_PAGE_SIZE = 20;
+    public static final int PHOTOS_PAGE_SIZE = 24;
+    // Novas tentativas em falhas transitórias: até 3 tentativas, com espera
+    // aleatória que dobra a partir de 500 ms e nunca passa de 10 s
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MS = 500;
+    private static final long RETRY_MAX_DELAY_MS = 10_000;
+    // 5 falhas seguidas em um endpoint abrem o circuito por 30 s
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_DURATION_MS = 30_000;
+    // Sincronização incremental: o ponto de partida recua 30 s para não perder
+    // transações que terminaram depois da sincronização anterior, e depois de
+    // 25 dias sem sincronizar (os tombstones duram 30 no servidor) tudo é baixado de novo
+    private static final String SYNC_PREFS_NAME = "palmastour_sync";
+    private static final String KEY_HIGH_WATER_MARK = "high_water_mark";
+    private static final long SYNC_OVERLAP_MS = 30_000;
+    private static final long TOMBSTONE_RETENTION_MS = 25L * 24 * 60 * 60 * 1000;
+    // Cache em memória: até 200 localizações e 500 fotos, válidas por 60 s
+    private static final int MEMORY_CACHE_LOCATIONS = 200;
+    private static final int MEMORY_CACHE_PHOTOS = 500;
+    private static final long MEMORY_CACHE_TTL_MS = 60_000;
+    // Tamanho máximo do cache HTTP em disco
+    private static final long HTTP_CACHE_SIZE = 10L * 1024 * 1024;
+    // Validade (Cache-Control) dos arquivos enviados ao storage: cada foto tem um
+    // caminho único e não muda depois de enviada
+    static final String STORAGE_CACHE_CONTROL_SECONDS = "31536000";
+
     private static SupabaseClient instance;
     private final String supabaseUrl;
     private final String supabaseKey;
     private final OkHttpClient client;
+    private final Cache httpCache;
+    private final NetworkMetrics networkMetrics;
     private final Gson gson;
     private final Context context;
+    private final ResumableUploader resumableUploader;
+    private final LocalStore localStore;
+    private final Outbox outbox;
+    private final SharedPreferences syncState;
+    private final RealtimeService realtime;
+    private final ModelCache modelCache;
+    private final NetworkMonitor networkMonitor;
+    private final TransferScheduler transferScheduler;
 
     private SupabaseClient(Context context) {
         this.context = context.getApplicationContext(); // Usar o contexto da aplicação para evitar memory leaks
         this.supabaseUrl = context.getString(R.string.supabase_url);
         this.supabaseKey = context.getString(R.string.supabase_key);
+        this.networkMonitor = new NetworkMonitor(this.context);
+        this.transferScheduler = new TransferScheduler(this.context, networkMonitor);
+        this.httpCache = new Cache(new File(this.context.getCacheDir(), "http"), HTTP_CACHE_SIZE);
+        ConnectionPool connectionPool = new ConnectionPool();
+        this.networkMetrics = new NetworkMetrics(connectionPool);
+        RetryInterceptor retryInterceptor = new RetryInterceptor(MAX_ATTEMPTS, RETRY_BASE_DELAY_MS,
+                RETRY_MAX_DELAY_MS, CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_DURATION_MS, networkMonitor);
+        networkMonitor.addListener(retryInterceptor);
         this.client = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .cache(httpCache)
+                .addInterceptor(new AuthInterceptor(supabaseUrl, supabaseKey))
+                .addInterceptor(retryInterceptor)
+                .addInterceptor(new MetricsInterceptor(networkMetrics))
+                .addNetworkInterceptor(new RestCacheInterceptor(httpCache, supabaseUrl))
                 .connectTimeout(30, TimeUnit.SECONDS)
                 .readTimeout(30, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
                 .build();
+        // Adaptadores escritos à mão para os modelos: sem reflexão e com datas ISO-8601
+        IsoDateAdapter dateAdapter = new IsoDateAdapter();
+        PhotoTypeAdapter photoAdapter = new PhotoTypeAdapter(dateAdapter);
         this.gson = new GsonBuilder()
-                .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+                .registerTypeAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Photo.class, photoAdapter)
+                .registerTypeAdapter(Location.class, new LocationTypeAdapter(photoAdapter, dateAdapter))
                 .excludeFieldsWithoutExposeAnnotation()
                 .create();
+        this.resumableUploader = new ResumableUploader(this, this.context, supabaseUrl);
+        this.localStore = LocalStore.getInstance(this.context);
+        this.outbox = new Outbox(this, this.context, localStore, gson);
+        this.syncState = this.context.getSharedPreferences(SYNC_PREFS_NAME, Context.MODE_PRIVATE);
+        this.modelCache = new ModelCache(MEMORY_CACHE_LOCATIONS, MEMORY_CACHE_PHOTOS, MEMORY_CACHE_TTL_MS);
+        this.realtime = new RealtimeService(this, localStore, gson, supabaseUrl, supabaseKey);
+        networkMonitor.addListener(realtime::onLinkChanged);
     }
 
     public static synchronized SupabaseClient getInstance(Context context) {
@@ -53,139 +143,691 @@ public class SupabaseClient {
         return instance;
     }
 
+    /**
+     * Callback das operações assíncronas, sempre chamado na thread principal
+     */
+    public interface Callback<T> {
+        void onSuccess(T result);
+        void onError(Exception e);
+    }
+
+    /**
+     * Executa uma operação bloqueante no pool compartilhado de I/O e entrega o
+     * resultado na thread principal. As requisições feitas pela operação são
+     * associadas à tarefa retornada e canceladas junto com ela.
+     * @param operation Operação a ser executada em segundo plano
+     * @param callback Callback chamado com o resultado, a menos que a tarefa seja cancelada
+     * @return Tarefa que pode ser cancelada
+     */
+    public <T> SupabaseTask submit(Callable<T> operation, Callback<T> callback) {
+        return submit(DataExecutors.io(), operation, callback);
+    }
+
+    /**
+     * Como {@link #submit(Callable, Callback)}, no pool indicado (ex.:
+     * {@link DataExecutors#background()} para envios que nenhuma tela espera)
+     */
+    <T> SupabaseTask submit(ExecutorService executor, Callable<T> operation, Callback<T> callback) {
+        SupabaseTask task = new SupabaseTask();
+        task.setFuture(executor.submit(() -> {
+            if (task.isCancelled()) {
+                return;
+            }
+            T result = null;
+            Exception error = null;
+            task.attachToCurrentThread();
+            try {
+                result = operation.call();
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                task.detachFromCurrentThread();
+            }
+            
+            final T finalResult = result;
+            final Exception finalError = error;
+            DataExecutors.runOnMainThread(() -> {
+                if (task.isCancelled() || callback == null) {
+                    return;
+                }
+                if (finalError != null) {
+                    callback.onError(finalError);
+                } else {
+                    callback.onSuccess(finalResult);
+                }
+            });
+        }));
+        return task;
+    }
+
+    /**
+     * Sincroniza a cópia local a partir da última sincronização ({@link #sync()})
+     */
+    public SupabaseTask syncAsync(Callback<SyncResult> callback) {
+        return submit(this::sync, callback);
+    }
+
+    public SupabaseTask getLocationsAsync(Callback<List<Location>> callback) {
+        return submit(this::getLocations, callback);
+    }
+
+    /**
+     * Lê uma página de localizações da cópia local, sem acessar a rede
+     * @param after Cursor da página anterior, ou null para a primeira página
+     */
+    public SupabaseTask getCachedLocationsPageAsync(PageCursor after, Callback<Page<Location>> callback) {
+        return getCachedLocationsPageAsync(after, LocationProjection.FULL, callback);
+    }
+
+    /**
+     * Lê uma página de localizações da cópia local, sem acessar a rede
+     * @param after Cursor da página anterior, ou null para a primeira página
+     * @param projection {@link LocationProjection#SUMMARY} para trazer só a contagem das fotos
+     */
+    public SupabaseTask getCachedLocationsPageAsync(PageCursor after, LocationProjection projection,
+                                                    Callback<Page<Location>> callback) {
+        return submit(() -> {
+            List<Location> locations = projection.embedsPhotos()
+                    ? localStore.getLocations(after, null, LOCATIONS_PAGE_SIZE)
+                    : localStore.getLocationSummaries(after, null, LOCATIONS_PAGE_SIZE);
+            return new Page<>(locations, nextLocationCursor(locations, LOCATIONS_PAGE_SIZE));
+        }, callback);
+    }
+
+    /**
+     * Busca uma página de localizações no servidor e atualiza a cópia local.
+     * Falhas de rede chegam em {@link Callback#onError(Exception)}.
+     * @param after Cursor da página anterior, ou null para a primeira página
+     */
+    public SupabaseTask getLocationsPageAsync(PageCursor after, Callback<Page<Location>> callback) {
+        return getLocationsPageAsync(after, LocationProjection.FULL, callback);
+    }
+
+    /**
+     * Como {@link #getLocationsPageAsync(PageCursor, Callback)}, pedindo só as colunas da projeção
+     */
+    public SupabaseTask getLocationsPageAsync(PageCursor after, LocationProjection projection,
+                                              Callback<Page<Location>> callback) {
+        return submit(() -> getLocationsPage(after, LOCATIONS_PAGE_SIZE, projection), callback);
+    }
+
+    /**
+     * Lê uma localização da cópia local com o resumo das fotos, sem carregá-las e
+     * sem acessar a rede; o resultado é null se ela não estiver na cópia local
+     */
+    public SupabaseTask getCachedLocationSummaryAsync(String locationId, Callback<Location> callback) {
+        return submit(() -> localStore.getLocationSummary(locationId), callback);
+    }
+
+    public SupabaseTask getLocationAsync(String locationId, Callback<Location> callback) {
+        return submit(() -> getLocation(locationId), callback);
+    }
+
+    // As alterações feitas pela UI são gravadas na cópia local e na fila de envio
+    // (Outbox) e chegam ao servidor em segundo plano, mesmo sem conexão
+
+    public SupabaseTask updateLocationAsync(Location location, Callback<Boolean> callback) {
+        return submit(() -> {
+            outbox.enqueueUpdateLocation(location);
+            return true;
+        }, callback);
+    }
+
+    public SupabaseTask deleteLocationAsync(String locationId, Callback<Boolean> callback) {
+        return submit(() -> {
+            outbox.enqueueDeleteLocation(locationId);
+            return true;
+        }, callback);
+    }
+
+    /**
+     * Exclui várias localizações de uma vez (seleção múltipla da galeria)
+     */
+    public SupabaseTask deleteLocationsAsync(List<String> locationIds, Callback<Boolean> callback) {
+        return submit(() -> {
+            outbox.enqueueDeleteLocations(locationIds);
+            return true;
+        }, callback);
+    }
+
+    /**
+     * Grava a localização e as fotos no aparelho e as coloca na fila de envio
+     * @param location Localização capturada
+     * @param photos Fotos com o caminho do arquivo local definido
+     * @param callback Recebe o número de fotos colocadas na fila
+     */
+    public SupabaseTask queueWorkAsync(Location location, List<Photo> photos, Callback<Integer> callback) {
+        return submit(() -> {
+            outbox.enqueueSaveWork(location, photos);
+            return photos.size();
+        }, callback);
+    }
+
+    public SupabaseTask saveWorkAsync(Location location, List<Photo> photos, Callback<SaveWorkResult> callback) {
+        // Envia as fotos: fica fora do pool das leituras
+        return submit(DataExecutors.background(), () -> saveWork(location, photos), callback);
+    }
+
+    public SupabaseTask getPhotosByLocationAsync(String locationId, Callback<List<Photo>> callback) {
+        return submit(() -> getPhotosByLocation(locationId), callback);
+    }
+
+    /**
+     * Lê uma página de fotos da localização na cópia local, sem acessar a rede
+     * @param after Cursor da página anterior, ou null para a primeira página
+     */
+    public SupabaseTask getCachedPhotosPageAsync(String locationId, PageCursor after, Callback<Page<Photo>> callback) {
+        return submit(() -> {
+            List<Photo> photos = localStore.getPhotosByLocation(locationId, after, null, PHOTOS_PAGE_SIZE);
+            return new Page<>(photos, nextPhotoCursor(photos, PHOTOS_PAGE_SIZE));
+        }, callback);
+    }
+
+    /**
+     * Busca uma página de fotos da localização no servidor e atualiza a cópia local.
+     * Falhas de rede chegam em {@link Callback#onError(Exception)}.
+     * @param after Cursor da página anterior, ou null para a primeira página
+     */
+    public SupabaseTask getPhotosPageAsync(String locationId, PageCursor after, Callback<Page<Photo>> callback) {
+        return submit(() -> getPhotosPage(locationId, after, PHOTOS_PAGE_SIZE), callback);
+    }
+
+    public SupabaseTask updatePhotoAsync(Photo photo, Callback<Boolean> callback) {
+        return submit(() -> {
+            outbox.enqueueUpdatePhoto(photo);
+            return true;
+        }, callback);
+    }
+
+    public SupabaseTask deletePhotoAsync(String photoId, Callback<Boolean> callback) {
+        return submit(() -> {
+            outbox.enqueueDeletePhoto(photoId);
+            return true;
+        }, callback);
+    }
+
+    public LocalStore getLocalStore() {
+        return localStore;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * Contadores de acerto do cache HTTP
+     */
+    public HttpCacheStats getHttpCacheStats() {
+        long size;
+        try {
+            size = httpCache.size();
+        } catch (IOException e) {
+            size = -1;
+        }
+        return new HttpCacheStats(httpCache.requestCount(), httpCache.networkCount(), httpCache.hitCount(), size);
+    }
+
+    /**
+     * Aplica uma alteração na cópia local. Uma falha local não invalida a
+     * operação já concluída no servidor: a cópia é corrigida na próxima atualização.
+     */
+    private void mirror(Runnable change) {
+        try {
+            change.run();
+        } catch (android.database.SQLException e) {
+            DataLog.e("Erro ao atualizar a cópia local", e);
+        }
+    }
+
+    /**
+     * A resposta veio do cache HTTP sem consultar o servidor. Ela pode ser mais antiga
+     * que a cópia local e não serve para decidir exclusões.
+     */
+    private static boolean isFromCache(Response response) {
+        return response.networkResponse() == null;
+    }
+
+    /**
+     * Origem da resposta, para acompanhar o efeito do cache HTTP
+     */
+    private static String describeSource(Response response) {
+        if (isFromCache(response)) {
+            return "lidas do cache";
+        }
+        if (response.cacheResponse() != null) {
+            return "revalidadas (304)";
+        }
+        return "baixadas da rede";
+    }
+
+    /**
+     * Atualizações em tempo real das localizações e fotos
+     */
+    public RealtimeService getRealtime() {
+        return realtime;
+    }
+
+    /**
+     * Estado da rede (conexão, tarifação e banda), atualizado por callback
+     */
+    public NetworkMonitor getNetworkMonitor() {
+        return networkMonitor;
+    }
+
+    TransferScheduler getTransferScheduler() {
+        return transferScheduler;
+    }
+
+    /**
+     * Cache em memória das localizações e fotos
+     */
+    ModelCache getModelCache() {
+        return modelCache;
+    }
+
+    /**
+     * Aplica na cópia local e no cache em memória alterações recebidas do servidor
+     * @param full true para substituir a cópia local por inteiro
+     */
+    void applyChanges(SyncChanges changes, boolean full) {
+        try {
+            localStore.applyChanges(changes, full);
+        } finally {
+            modelCache.invalidate(changes, full);
+        }
+    }
+
+    /**
+     * Abre um WebSocket com o cliente HTTP compartilhado (interceptores e pool de conexões)
+     */
+    WebSocket newWebSocket(Request request, WebSocketListener listener) {
+        return client.newWebSocket(request, listener);
+    }
+
+    /**
+     * Métricas de latência, bytes e status por endpoint, do pool de conexões e
+     * das respostas ainda não fechadas
+     */
+    public NetworkMetrics getNetworkMetrics() {
+        return networkMetrics;
+    }
+
+    /**
+     * Executa a requisição, associando a chamada à tarefa assíncrona atual (se houver)
+     * para que ela possa ser cancelada
+     */
+    Response execute(Request request) throws IOException {
+        Call call = client.newCall(request);
+        SupabaseTask task = SupabaseTask.current();
+        // Nome do endpoint é uma constante, então o trecho não aloca
+        String section = NetworkMetrics.endpointOf(request.url());
+        long start = DataLog.begin(section);
+        if (task != null) {
+            task.track(call);
+        }
+        try {
+            return call.execute();
+        } finally {
+            if (task != null) {
+                task.untrack(call);
+            }
+            DataLog.end(section, start);
+        }
+    }
+
     // Métodos para Locations
     public boolean saveLocation(Location location) {
         try {
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
                 return false;
             }
             
             // Verificar se a URL do Supabase é válida
             if (supabaseUrl == null || supabaseUrl.isEmpty()) {
-                android.util.Log.e("PalmasTour", "URL do Supabase é nula ou vazia");
+                DataLog.e("URL do Supabase é nula ou vazia");
                 return false;
             }
             
             // Verificar se a chave do Supabase é válida
             if (supabaseKey == null || supabaseKey.isEmpty()) {
-                android.util.Log.e("PalmasTour", "Chave do Supabase é nula ou vazia");
+                DataLog.e("Chave do Supabase é nula ou vazia");
                 return false;
             }
             
             // Verificar se o ID é um UUID válido
             try {
                 UUID uuid = UUID.fromString(location.getId());
-                android.util.Log.d("PalmasTour", "ID da localização é um UUID válido: " + uuid);
+                DataLog.d("ID da localização é um UUID válido: {}", uuid);
             } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "ID da localização não é um UUID válido: " + location.getId());
+                DataLog.e("ID da localização não é um UUID válido: {}", location.getId());
                 // Gerar um novo UUID válido
-                String newId = UUID.randomUUID().toString();
-                android.util.Log.d("PalmasTour", "Substituindo ID por um UUID válido: " + newId);
+                String newId = Uuids.newId();
+                DataLog.d("Substituindo ID por um UUID válido: {}", newId);
                 location.setId(newId);
             }
             
             String json = gson.toJson(location);
-            android.util.Log.d("PalmasTour", "JSON para envio: " + json);
-            android.util.Log.d("PalmasTour", "Supabase URL: " + supabaseUrl);
-            android.util.Log.d("PalmasTour", "Supabase Key (truncado): " + (supabaseKey.length() > 10 ? supabaseKey.substring(0, 10) + "..." : supabaseKey));
+            DataLog.d("JSON para envio: {}", json);
+            DataLog.d("Supabase URL: {}", supabaseUrl);
             
             RequestBody body = RequestBody.create(MediaType.parse("application/json"), json);
 
             String requestUrl = supabaseUrl + "/rest/v1/locations";
-            android.util.Log.d("PalmasTour", "URL completa da requisição: " + requestUrl);
+            DataLog.d("URL completa da requisição: {}", requestUrl);
             
             Request request = new Request.Builder()
                     .url(requestUrl)
                     .post(body)
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .addHeader("Content-Type", "application/json")
                     .addHeader("Prefer", "return=minimal")
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição para: " + request.url());
-            android.util.Log.d("PalmasTour", "Headers da requisição: " + request.headers());
+            DataLog.d("Enviando requisição para: {}", request.url());
             
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Localização salva com sucesso: " + response.code());
-                return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao salvar localização: " + response.code() + ", Corpo: " + responseBody);
-                return false;
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    DataLog.d("Localização salva com sucesso: {}", response.code());
+                    modelCache.invalidateLocation(location.getId());
+                    return true;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao salvar localização: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao salvar localização: " + e.getMessage());
-            android.util.Log.e("PalmasTour", "Stack trace: " + android.util.Log.getStackTraceString(e));
+            DataLog.e("Exceção ao salvar localização", e);
             return false;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao salvar localização: " + e.getMessage());
-            android.util.Log.e("PalmasTour", "Stack trace: " + android.util.Log.getStackTraceString(e));
+            DataLog.e("Exceção inesperada ao salvar localização", e);
             return false;
         }
     }
 
+    /**
+     * Grava várias localizações (sem as fotos) em poucas requisições, inserindo as
+     * novas e substituindo as existentes pelo id. Para importações e restaurações.
+     * @return Resultado de cada localização
+     */
+    public BulkResult saveLocations(List<Location> locations) {
+        BulkResult result = new BulkResult();
+        if (!networkMonitor.isConnected()) {
+            DataLog.e("Sem conexão com a internet");
+            for (Location location : locations) {
+                result.failed(location.getId(), "Sem conexão com a internet");
+            }
+            return result;
+        }
+
+        // Substituir IDs inválidos, como em saveLocation
+        for (Location location : locations) {
+            try {
+                UUID.fromString(location.getId());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                String newId = Uuids.newId();
+                DataLog.d("Substituindo ID da localização por um UUID válido: {}", newId);
+                location.setId(newId);
+            }
+        }
+
+        new BulkUpsert<Location>(this::execute, gson, supabaseUrl, "locations", LocationTypeAdapter.COLUMNS, Location::getId)
+                .upsert(locations, result);
+        for (String locationId : result.getSavedIds()) {
+            modelCache.invalidateLocation(locationId);
+        }
+        DataLog.d("Localizações em lote: {}", result);
+        return result;
+    }
+
     public List<Location> getLocations() {
         try {
+            return refreshLocations();
+        } catch (IOException e) {
+            DataLog.e("Erro ao buscar localizações", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Busca todas as localizações no servidor e substitui a cópia local por elas
+     * @return A cópia local atualizada, que inclui o que ainda está na fila de envio
+     * @throws IOException Se o servidor não puder ser consultado
+     */
+    public List<Location> refreshLocations() throws IOException {
+        // Uma única requisição: o PostgREST embute as fotos de cada localização
+        String url = supabaseUrl + "/rest/v1/locations?select=" + LocationProjection.FULL.select();
+        return new ArrayList<>(modelCache.load(url, () -> {
+            long generation = modelCache.generation();
             Request request = new Request.Builder()
-                    .url(supabaseUrl + "/rest/v1/locations?select=*")
+                    .url(url)
                     .get()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .build();
 
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful() && response.body() != null) {
-                String json = response.body().string();
-                Location[] locations = gson.fromJson(json, Location[].class);
-                List<Location> locationList = new ArrayList<>();
-                for (Location location : locations) {
-                    // Carregar as fotos para cada localização
-                    List<Photo> photos = getPhotosByLocation(location.getId());
-                    location.setPhotos(photos);
-                    locationList.add(location);
+            try (Response response = execute(request)) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("Erro ao buscar localizações: " + response.code());
+                }
+                List<Location> locations = JsonStreamDecoder.readLocations(response.body().charStream(), gson);
+                DataLog.d("Localizações {}; cache HTTP: {}", describeSource(response), getHttpCacheStats());
+                modelCache.putLocations(locations, generation);
+                try {
+                    if (isFromCache(response)) {
+                        localStore.mergeLocations(locations);
+                    } else {
+                        localStore.replaceLocations(locations);
+                    }
+                    return localStore.getLocations();
+                } catch (android.database.SQLException e) {
+                    DataLog.e("Erro ao atualizar a cópia local", e);
+                    return locations;
                 }
-                return locationList;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return new ArrayList<>();
+        }));
     }
 
-    public Location getLocation(String locationId) {
-        try {
+    /**
+     * Busca uma página de localizações, das mais recentes para as mais antigas,
+     * usando paginação por chave em (created_at, id), e atualiza a cópia local
+     * @param after Cursor da página anterior, ou null para a primeira página
+     * @param limit Tamanho da página
+     * @return A página, incluindo as localizações da cópia local que ainda estão na fila de envio
+     * @throws IOException Se o servidor não puder ser consultado
+     */
+    public Page<Location> getLocationsPage(PageCursor after, int limit) throws IOException {
+        return getLocationsPage(after, limit, LocationProjection.FULL);
+    }
+
+    /**
+     * Como {@link #getLocationsPage(PageCursor, int)}, pedindo só as colunas da projeção.
+     * Com {@link LocationProjection#SUMMARY} as fotos vêm resumidas pelo servidor, as
+     * da cópia local são mantidas e o cache em memória não é alimentado, já que ele
+     * guarda cada localização com a lista completa de fotos.
+     */
+    public Page<Location> getLocationsPage(PageCursor after, int limit, LocationProjection projection)
+            throws IOException {
+        HttpUrl.Builder url = HttpUrl.get(supabaseUrl + "/rest/v1/locations").newBuilder()
+                .addQueryParameter("select", projection.select())
+                .addQueryParameter("order", "created_at.desc,id.desc")
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (projection.embedsPhotos()) {
+            url.addQueryParameter("photos.order", "created_at.asc,id.asc");
+        }
+        if (after != null) {
+            String createdAt = after.createdAtIso();
+            url.addQueryParameter("or", "(created_at.lt." + createdAt
+                    + ",and(created_at.eq." + createdAt + ",id.lt." + after.getId() + "))");
+        }
+
+        HttpUrl pageUrl = url.build();
+        Page<Location> page = modelCache.load(pageUrl.toString(), () -> {
+            long generation = modelCache.generation();
             Request request = new Request.Builder()
-                    .url(supabaseUrl + "/rest/v1/locations?id=eq." + locationId)
+                    .url(pageUrl)
                     .get()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .build();
 
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful() && response.body() != null) {
-                String json = response.body().string();
-                Location[] locations = gson.fromJson(json, Location[].class);
-                if (locations.length > 0) {
-                    Location location = locations[0];
-                    // Carregar as fotos para esta localização
-                    location.setPhotos(getPhotosByLocation(locationId));
-                    return location;
+            try (Response response = execute(request)) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("Erro ao buscar localizações: " + response.code());
+                }
+                List<Location> locations = JsonStreamDecoder.readLocations(response.body().charStream(), gson);
+                PageCursor next = nextLocationCursor(locations, limit);
+                if (projection.embedsPhotos()) {
+                    modelCache.putLocations(locations, generation);
                 }
+                try {
+                    if (isFromCache(response)) {
+                        localStore.mergeLocations(locations);
+                    } else {
+                        localStore.replaceLocations(after, next, locations, projection.embedsPhotos());
+                    }
+                    if (projection.embedsPhotos()) {
+                        return new Page<>(localStore.getLocations(after, next, 0), next);
+                    }
+                    return new Page<>(withServerSummaries(localStore.getLocationSummaries(after, next, 0), locations), next);
+                } catch (android.database.SQLException e) {
+                    DataLog.e("Erro ao atualizar a cópia local", e);
+                    return new Page<>(locations, next);
+                }
+            }
+        });
+        // Quem aproveitou a mesma leitura recebe a sua própria lista
+        return new Page<>(new ArrayList<>(page.getItems()), page.getNextCursor());
+    }
+
+    /**
+     * Junta o resumo das fotos da cópia local com o do servidor. O local inclui as
+     * fotos que ainda estão na fila de envio, e o do servidor as que ainda não
+     * chegaram à cópia local; fica a maior contagem, a data mais recente e, se a
+     * cópia local não tiver capa, a do servidor.
+     */
+    private static List<Location> withServerSummaries(List<Location> local, List<Location> server) {
+        Map<String, Location> byId = new HashMap<>();
+        for (Location location : server) {
+            byId.put(location.getId(), location);
+        }
+        for (Location location : local) {
+            Location remote = byId.get(location.getId());
+            if (remote == null || !remote.hasPhotoSummary()) {
+                continue;
+            }
+            if (remote.getPhotoCount() > location.getPhotoCount()) {
+                location.setPhotoCount(remote.getPhotoCount());
+            }
+            if (location.getCoverPhotoUrl() == null) {
+                location.setCoverPhotoUrl(remote.getCoverPhotoUrl());
+            }
+            if (remote.getLastPhotoAt() != null
+                    && (location.getLastPhotoAt() == null || remote.getLastPhotoAt().after(location.getLastPhotoAt()))) {
+                location.setLastPhotoAt(remote.getLastPhotoAt());
             }
+        }
+        return local;
+    }
+
+    /**
+     * Cursor da página seguinte, ou null se a página não veio completa
+     */
+    private static PageCursor nextLocationCursor(List<Location> locations, int limit) {
+        if (locations.size() < limit) {
+            return null;
+        }
+        Location last = locations.get(locations.size() - 1);
+        return last.getCreatedAt() != null ? new PageCursor(last.getCreatedAt(), last.getId()) : null;
+    }
+
+    /**
+     * Sincroniza a cópia local a partir do último ponto salvo e salva o novo ponto.
+     * Na primeira vez (ou depois de muito tempo sem sincronizar) baixa tudo.
+     * @throws IOException Se o servidor não puder ser consultado
+     */
+    public synchronized SyncResult sync() throws IOException {
+        long mark = syncState.getLong(KEY_HIGH_WATER_MARK, -1);
+        SyncResult result = syncSince(mark >= 0 ? Instant.ofEpochMilli(mark) : null);
+        syncState.edit().putLong(KEY_HIGH_WATER_MARK, result.getHighWaterMark().toEpochMilli()).apply();
+        return result;
+    }
+
+    /**
+     * Busca em uma única requisição as localizações e fotos alteradas e os registros
+     * excluídos desde {@code since} e aplica tudo na cópia local
+     * @param since Ponto de partida (o {@link SyncResult#getHighWaterMark()} anterior),
+     *              ou null para baixar tudo e substituir a cópia local
+     * @return O resultado, com o ponto de partida da próxima sincronização
+     * @throws IOException Se o servidor não puder ser consultado ou a cópia local não puder ser atualizada
+     */
+    public SyncResult syncSince(Instant since) throws IOException {
+        boolean full = since == null
+                || since.toEpochMilli() < System.currentTimeMillis() - TOMBSTONE_RETENTION_MS;
+        HttpUrl.Builder url = HttpUrl.get(supabaseUrl + "/rest/v1/rpc/sync_changes").newBuilder();
+        if (!full) {
+            url.addQueryParameter("p_since", since.minusMillis(SYNC_OVERLAP_MS).toString());
+        }
+
+        // O ponto salvo e as exclusões de uma sincronização completa só podem vir do servidor
+        Request request = new Request.Builder()
+                .url(url.build())
+                .cacheControl(CacheControl.FORCE_NETWORK)
+                .get()
+                .build();
+
+        try (Response response = execute(request)) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Erro ao sincronizar: " + response.code());
+            }
+            SyncChanges changes = JsonStreamDecoder.readSyncChanges(response.body().charStream(), gson);
+            if (changes.serverTime == null) {
+                throw new IOException("Resposta de sincronização sem server_time");
+            }
+            try {
+                applyChanges(changes, full);
+            } catch (android.database.SQLException e) {
+                throw new IOException("Erro ao atualizar a cópia local", e);
+            }
+            SyncResult result = new SyncResult(changes.serverTime.toInstant(), full, changes.locations.size(),
+                    changes.photos.size(), changes.deletedLocationIds.size() + changes.deletedPhotoIds.size());
+            DataLog.d("Sincronização {}, {}", describeSource(response), result);
+            return result;
+        }
+    }
+
+    /**
+     * Busca uma localização com as suas fotos, do cache em memória se ela foi
+     * lida há pouco; leituras simultâneas da mesma localização usam uma só requisição
+     * @return A localização, ou null se ela não existir ou não puder ser buscada
+     */
+    public Location getLocation(String locationId) {
+        Location cached = modelCache.getLocation(locationId);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            String url = supabaseUrl + "/rest/v1/locations?id=eq." + locationId + "&select=" + LocationProjection.FULL.select();
+            Location location = modelCache.load(url, () -> {
+                long generation = modelCache.generation();
+                Request request = new Request.Builder()
+                        .url(url)
+                        .get()
+                        .build();
+
+                try (Response response = execute(request)) {
+                    if (response.isSuccessful() && response.body() != null) {
+                        List<Location> locations = JsonStreamDecoder.readLocations(response.body().charStream(), gson);
+                        if (!locations.isEmpty()) {
+                            modelCache.putLocations(locations, generation);
+                            mirror(() -> localStore.mergeLocation(locations.get(0)));
+                            return locations.get(0);
+                        }
+                    }
+                }
+                return null;
+            });
+            // Cada chamador recebe a sua própria cópia
+            return location != null ? new Location(location) : null;
         } catch (IOException e) {
-            e.printStackTrace();
+            DataLog.e("Erro ao buscar localização", e);
         }
         return null;
     }
@@ -193,131 +835,246 @@ public class SupabaseClient {
     public boolean updateLocation(Location location) {
         try {
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
                 return false;
             }
             
             // Verificar se o ID é um UUID válido
             try {
                 UUID uuid = UUID.fromString(location.getId());
-                android.util.Log.d("PalmasTour", "ID da localização é um UUID válido: " + uuid);
+                DataLog.d("ID da localização é um UUID válido: {}", uuid);
             } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "ID da localização não é um UUID válido: " + location.getId());
+                DataLog.e("ID da localização não é um UUID válido: {}", location.getId());
                 return false;
             }
             
             String json = gson.toJson(location);
-            android.util.Log.d("PalmasTour", "JSON para atualização: " + json);
+            DataLog.d("JSON para atualização: {}", json);
             
             RequestBody body = RequestBody.create(MediaType.parse("application/json"), json);
 
             String requestUrl = supabaseUrl + "/rest/v1/locations?id=eq." + location.getId();
-            android.util.Log.d("PalmasTour", "URL completa da requisição: " + requestUrl);
+            DataLog.d("URL completa da requisição: {}", requestUrl);
             
             Request request = new Request.Builder()
                     .url(requestUrl)
                     .patch(body)
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .addHeader("Content-Type", "application/json")
                     .addHeader("Prefer", "return=minimal")
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição para: " + request.url());
-            
-            Response response = client.newCall(request).execute();
-            
+            DataLog.d("Enviando requisição para: {}", request.url());
+            
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    DataLog.d("Localização atualizada com sucesso: {}", response.code());
+                    modelCache.invalidateLocation(location.getId());
+                    mirror(() -> localStore.putLocation(location));
+                    return true;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao atualizar localização: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            DataLog.e("Exceção ao atualizar localização", e);
+            return false;
+        } catch (Exception e) {
+            DataLog.e("Exceção inesperada ao atualizar localização", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Altera só o nome da localização: o PATCH leva apenas a coluna {@code name},
+     * sem precisar ler a localização e as suas fotos antes
+     * @return true se o servidor aceitou a alteração
+     */
+    public boolean updateLocationName(String locationId, String name) {
+        try {
+            UUID.fromString(locationId);
+        } catch (IllegalArgumentException e) {
+            DataLog.e("ID da localização não é um UUID válido: {}", locationId);
+            return false;
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("name", name);
+        RequestBody body = RequestBody.create(MediaType.parse("application/json"), gson.toJson(json));
+
+        Request request = new Request.Builder()
+                .url(supabaseUrl + "/rest/v1/locations?id=eq." + locationId)
+                .patch(body)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Prefer", "return=minimal")
+                .build();
+
+        try (Response response = execute(request)) {
             if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Localização atualizada com sucesso: " + response.code());
+                DataLog.d("Nome da localização atualizado: {}", response.code());
+                modelCache.renameLocation(locationId, name);
+                mirror(() -> localStore.renameLocation(locationId, name));
                 return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao atualizar localização: " + response.code() + ", Corpo: " + responseBody);
-                return false;
             }
+            String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+            DataLog.e("Erro ao atualizar nome da localização: {}, Corpo: {}", response.code(), responseBody);
+            return false;
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao atualizar localização: " + e.getMessage());
+            DataLog.e("Exceção ao atualizar nome da localização", e);
             return false;
-        } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao atualizar localização: " + e.getMessage());
+        }
+    }
+
+    public boolean deleteLocation(String locationId) {
+        return deleteLocations(Collections.singletonList(locationId));
+    }
+
+    /**
+     * Exclui localizações com as suas fotos e os arquivos delas no storage, em duas
+     * chamadas qualquer que seja o número de fotos: a função {@code delete_locations}
+     * exclui os registros (as fotos vão em cascata) e retorna os caminhos dos
+     * arquivos nas pastas das localizações, que são removidos de uma vez.
+     * Pode ser repetida com segurança: os arquivos que sobrarem voltam na resposta.
+     * @param locationIds IDs das localizações
+     * @return true se os registros e os arquivos foram excluídos
+     */
+    public boolean deleteLocations(List<String> locationIds) {
+        // Verificar conectividade de rede
+        if (!networkMonitor.isConnected()) {
+            DataLog.e("Sem conexão com a internet");
+            return false;
+        }
+
+        // Verificar se os IDs são UUIDs válidos
+        JsonArray ids = new JsonArray();
+        for (String locationId : locationIds) {
+            try {
+                UUID.fromString(locationId);
+                ids.add(locationId);
+            } catch (IllegalArgumentException e) {
+                DataLog.e("ID da localização não é um UUID válido: {}", locationId);
+            }
+        }
+        if (ids.size() == 0) {
+            return false;
+        }
+
+        JsonObject params = new JsonObject();
+        params.add("p_ids", ids);
+        RequestBody body = RequestBody.create(MediaType.parse("application/json"), gson.toJson(params));
+        // Repetir é seguro: localizações já excluídas são ignoradas
+        Request request = RetryInterceptor.idempotent(new Request.Builder())
+                .url(supabaseUrl + "/rest/v1/rpc/delete_locations")
+                .post(body)
+                .build();
+
+        List<String> storagePaths = new ArrayList<>();
+        try (Response response = execute(request)) {
+            if (!response.isSuccessful() || response.body() == null) {
+                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                DataLog.e("Erro ao excluir localizações: {}, Corpo: {}", response.code(), responseBody);
+                return false;
+            }
+            JsonObject result = gson.fromJson(response.body().charStream(), JsonObject.class);
+            for (JsonElement path : result.getAsJsonArray("storage_paths")) {
+                storagePaths.add(path.getAsString());
+            }
+            DataLog.d("Localizações excluídas: {}, arquivos a remover: {}",
+                    result.get("deleted").getAsInt(), storagePaths.size());
+        } catch (IOException | RuntimeException e) {
+            DataLog.e("Exceção ao excluir localizações", e);
             return false;
         }
+
+        for (JsonElement id : ids) {
+            String locationId = id.getAsString();
+            modelCache.removeLocation(locationId);
+            mirror(() -> localStore.deleteLocation(locationId));
+        }
+        return removeStorageObjects(PHOTOS_BUCKET, storagePaths);
     }
-    
-    public boolean deleteLocation(String locationId) {
+
+    /**
+     * Salva uma localização e todas as suas fotos em uma única transação,
+     * por meio da função {@code save_work} do banco de dados.
+     * As fotos já devem ter sido enviadas para o storage (ver {@link #uploadPhotoFile(Photo, File)}).
+     * @param location Localização a ser salva
+     * @param photos Fotos associadas à localização
+     * @return IDs persistidos ou null em caso de falha
+     */
+    public SaveWorkResult saveWork(Location location, List<Photo> photos) {
         try {
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
-                return false;
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
+                return null;
             }
             
             // Verificar se o ID é um UUID válido
             try {
-                UUID uuid = UUID.fromString(locationId);
-                android.util.Log.d("PalmasTour", "ID da localização é um UUID válido: " + uuid);
+                UUID.fromString(location.getId());
             } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "ID da localização não é um UUID válido: " + locationId);
-                return false;
+                String newId = Uuids.newId();
+                DataLog.d("Substituindo ID da localização por um UUID válido: {}", newId);
+                location.setId(newId);
+            }
+            
+            // Todas as fotos pertencem à localização que está sendo salva
+            JsonArray photosJson = new JsonArray();
+            for (Photo photo : photos) {
+                try {
+                    UUID.fromString(photo.getId());
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    photo.setId(Uuids.newId());
+                }
+                photo.setLocationId(location.getId());
+                photosJson.add(gson.toJsonTree(photo));
             }
             
-            // Primeiro, obter todas as fotos associadas a esta localização e excluí-las
-             List<Photo> photos = getPhotosByLocation(locationId);
-             if (photos != null && !photos.isEmpty()) {
-                 android.util.Log.d("PalmasTour", "Excluindo " + photos.size() + " fotos associadas à localização");
-                 
-                 for (Photo photo : photos) {
-                     boolean photoDeleted = deletePhoto(photo.getId());
-                     android.util.Log.d("PalmasTour", "Foto " + photo.getId() + " excluída: " + photoDeleted);
-                 }
-             } else {
-                 android.util.Log.d("PalmasTour", "Nenhuma foto associada à localização para excluir");
-             }
+            JsonObject params = new JsonObject();
+            params.add("p_location", gson.toJsonTree(location));
+            params.add("p_photos", photosJson);
+            String json = gson.toJson(params);
+            DataLog.d("Salvando trabalho com {} fotos", photos.size());
             
-            // Agora excluir a localização
-            String requestUrl = supabaseUrl + "/rest/v1/locations?id=eq." + locationId;
-            android.util.Log.d("PalmasTour", "URL completa da requisição de exclusão: " + requestUrl);
+            RequestBody body = RequestBody.create(MediaType.parse("application/json"), json);
             
-            Request request = new Request.Builder()
-                    .url(requestUrl)
-                    .delete()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
+            // save_work ignora registros já existentes, então pode ser repetida
+            Request request = RetryInterceptor.idempotent(new Request.Builder())
+                    .url(supabaseUrl + "/rest/v1/rpc/save_work")
+                    .post(body)
+                    .addHeader("Content-Type", "application/json")
                     .build();
-
-            android.util.Log.d("PalmasTour", "Enviando requisição para: " + request.url());
             
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Localização excluída com sucesso: " + response.code());
-                return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao excluir localização: " + response.code() + ", Corpo: " + responseBody);
-                return false;
+            try (Response response = execute(request)) {
+                if (response.isSuccessful() && response.body() != null) {
+                    SaveWorkResult result = gson.fromJson(response.body().charStream(), SaveWorkResult.class);
+                    DataLog.d("Trabalho salvo com sucesso, localização: {}", result.getLocationId());
+                    modelCache.invalidateLocation(location.getId());
+                    for (Photo photo : photos) {
+                        modelCache.invalidatePhoto(photo.getId(), location.getId());
+                    }
+                    mirror(() -> {
+                        localStore.putLocation(location);
+                        for (Photo photo : photos) {
+                            localStore.putPhoto(photo);
+                        }
+                    });
+                    return result;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao salvar trabalho: {}, Corpo: {}", response.code(), responseBody);
+                    return null;
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao excluir localização: " + e.getMessage());
-            return false;
+            DataLog.e("Exceção ao salvar trabalho", e);
+            return null;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao excluir localização: " + e.getMessage());
-            return false;
+            DataLog.e("Exceção inesperada ao salvar trabalho", e);
+            return null;
         }
     }
 
@@ -326,14 +1083,14 @@ public class SupabaseClient {
         try {
             // Verificar se o ID da foto é um UUID válido
             if (photo.getId() == null || photo.getId().isEmpty()) {
-                photo.setId(UUID.randomUUID().toString());
-                android.util.Log.d("PalmasTour", "Gerando novo ID para a foto: " + photo.getId());
+                photo.setId(Uuids.newId());
+                DataLog.d("Gerando novo ID para a foto: {}", photo.getId());
             } else {
                 try {
                     UUID.fromString(photo.getId());
                 } catch (IllegalArgumentException e) {
-                    String newId = UUID.randomUUID().toString();
-                    android.util.Log.d("PalmasTour", "Substituindo ID da foto por um UUID válido: " + newId);
+                    String newId = Uuids.newId();
+                    DataLog.d("Substituindo ID da foto por um UUID válido: {}", newId);
                     photo.setId(newId);
                 }
             }
@@ -342,272 +1099,471 @@ public class SupabaseClient {
             if (photo.getLocationId() != null && !photo.getLocationId().isEmpty()) {
                 try {
                     UUID.fromString(photo.getLocationId());
-                    android.util.Log.d("PalmasTour", "LocationId da foto é um UUID válido: " + photo.getLocationId());
+                    DataLog.d("LocationId da foto é um UUID válido: {}", photo.getLocationId());
                 } catch (IllegalArgumentException e) {
-                    android.util.Log.e("PalmasTour", "LocationId da foto não é um UUID válido: " + photo.getLocationId());
+                    DataLog.e("LocationId da foto não é um UUID válido: {}", photo.getLocationId());
                     return false; // Não podemos salvar a foto sem um locationId válido
                 }
             } else {
-                android.util.Log.e("PalmasTour", "LocationId da foto é nulo ou vazio");
+                DataLog.e("LocationId da foto é nulo ou vazio");
                 return false; // Não podemos salvar a foto sem um locationId
             }
             
             String json = gson.toJson(photo);
-            android.util.Log.d("PalmasTour", "JSON para envio de foto: " + json);
+            DataLog.d("JSON para envio de foto: {}", json);
             
             RequestBody body = RequestBody.create(MediaType.parse("application/json"), json);
 
             Request request = new Request.Builder()
                     .url(supabaseUrl + "/rest/v1/photos")
                     .post(body)
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .addHeader("Content-Type", "application/json")
                     .addHeader("Prefer", "return=minimal")
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição para salvar foto: " + request.url());
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Foto salva com sucesso: " + response.code());
-                return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao salvar foto: " + response.code() + ", Corpo: " + responseBody);
-                return false;
+            DataLog.d("Enviando requisição para salvar foto: {}", request.url());
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    DataLog.d("Foto salva com sucesso: {}", response.code());
+                    modelCache.invalidatePhoto(photo.getId(), photo.getLocationId());
+                    return true;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao salvar foto: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao salvar foto: " + e.getMessage());
+            DataLog.e("Exceção ao salvar foto", e);
             return false;
         }
     }
     
-    public boolean savePhoto(Photo photo, File photoFile) {
-        try {
-            android.util.Log.d("PalmasTour", "Iniciando salvamento de foto com arquivo: " + (photoFile != null ? photoFile.getName() : "null"));
-            
-            if (photoFile == null) {
-                android.util.Log.e("PalmasTour", "Arquivo de foto é nulo");
-                return false;
-            }
-            
-            if (!photoFile.exists()) {
-                android.util.Log.e("PalmasTour", "Arquivo de foto não existe: " + photoFile.getAbsolutePath());
-                return false;
-            }
-            
-            if (!photoFile.canRead()) {
-                android.util.Log.e("PalmasTour", "Não é possível ler o arquivo de foto: " + photoFile.getAbsolutePath());
-                return false;
+    /**
+     * Grava várias fotos (só os registros; os arquivos já devem estar no storage)
+     * em poucas requisições, inserindo as novas e substituindo as existentes pelo id.
+     * Fotos sem uma localização válida são recusadas sem ir ao servidor.
+     * @return Resultado de cada foto
+     */
+    public BulkResult savePhotos(List<Photo> photos) {
+        BulkResult result = new BulkResult();
+        if (!networkMonitor.isConnected()) {
+            DataLog.e("Sem conexão com a internet");
+            for (Photo photo : photos) {
+                result.failed(photo.getId(), "Sem conexão com a internet");
             }
-            
-            android.util.Log.d("PalmasTour", "Tamanho do arquivo: " + photoFile.length() + " bytes");
-            
-            // Verificar se o locationId é um UUID válido
-            if (photo.getLocationId() == null || photo.getLocationId().isEmpty()) {
-                android.util.Log.e("PalmasTour", "LocationId da foto é nulo ou vazio");
-                return false;
+            return result;
+        }
+
+        List<Photo> valid = new ArrayList<>(photos.size());
+        Map<String, String> locationOf = new HashMap<>();
+        for (Photo photo : photos) {
+            // Substituir IDs inválidos, como em savePhoto
+            try {
+                UUID.fromString(photo.getId());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                photo.setId(Uuids.newId());
             }
-            
             try {
                 UUID.fromString(photo.getLocationId());
-                android.util.Log.d("PalmasTour", "LocationId da foto é um UUID válido: " + photo.getLocationId());
-            } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "LocationId da foto não é um UUID válido: " + photo.getLocationId());
-                return false;
+            } catch (IllegalArgumentException | NullPointerException e) {
+                result.failed(photo.getId(), "LocationId da foto não é um UUID válido: " + photo.getLocationId());
+                continue;
             }
-            
+            valid.add(photo);
+            locationOf.put(photo.getId(), photo.getLocationId());
+        }
+
+        new BulkUpsert<Photo>(this::execute, gson, supabaseUrl, "photos", PhotoTypeAdapter.COLUMNS, Photo::getId)
+                .upsert(valid, result);
+        for (String photoId : result.getSavedIds()) {
+            modelCache.invalidatePhoto(photoId, locationOf.get(photoId));
+        }
+        DataLog.d("Fotos em lote: {}", result);
+        return result;
+    }
+    
+    public boolean savePhoto(Photo photo, File photoFile) {
+        try {
             // Primeiro, faz upload do arquivo para o storage
-            String photoUrl = uploadFile(photoFile, "photos", photo.getLocationId() + "/" + photoFile.getName());
-            android.util.Log.d("PalmasTour", "Resultado do upload: " + (photoUrl != null ? "sucesso" : "falha"));
-            
-            // Se o upload foi bem-sucedido, atualiza o caminho da foto e salva no banco
-            if (photoUrl != null) {
-                photo.setStorageUrl(photoUrl);
-                android.util.Log.d("PalmasTour", "URL de armazenamento definida: " + photoUrl);
-                boolean result = savePhoto(photo);
-                android.util.Log.d("PalmasTour", "Resultado do salvamento dos metadados da foto: " + (result ? "sucesso" : "falha"));
-                return result;
+            if (!uploadPhotoFile(photo, photoFile)) {
+                DataLog.e("Falha ao fazer upload do arquivo de foto");
+                return false;
             }
             
-            android.util.Log.e("PalmasTour", "Falha ao fazer upload do arquivo de foto");
-            return false;
+            // Se o upload foi bem-sucedido, salva os metadados no banco
+            boolean result = savePhoto(photo);
+            DataLog.d("Resultado do salvamento dos metadados da foto: {}", (result ? "sucesso" : "falha"));
+            return result;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao salvar foto com arquivo: " + e.getMessage());
-            android.util.Log.e("PalmasTour", "Stack trace: " + android.util.Log.getStackTraceString(e));
+            DataLog.e("Exceção ao salvar foto com arquivo", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Faz upload do arquivo de uma foto para o bucket de fotos e define a URL de armazenamento,
+     * sem salvar os metadados no banco
+     * @param photo Foto cujo arquivo será enviado
+     * @param photoFile Arquivo local da foto
+     * @return true se o upload foi bem-sucedido, false caso contrário
+     */
+    public boolean uploadPhotoFile(Photo photo, File photoFile) {
+        DataLog.d("Iniciando upload de foto com arquivo: {}", (photoFile != null ? photoFile.getName() : "null"));
+        
+        if (!canUploadPhotoFile(photo, photoFile)) {
+            return false;
+        }
+        
+        String photoUrl = uploadFile(photoFile, PHOTOS_BUCKET, photo.getLocationId() + "/" + photoFile.getName());
+        DataLog.d("Resultado do upload: {}", (photoUrl != null ? "sucesso" : "falha"));
+        if (photoUrl == null) {
+            return false;
+        }
+        
+        photo.setStorageUrl(photoUrl);
+        DataLog.d("URL de armazenamento definida: {}", photoUrl);
+        return true;
+    }
+    
+    /**
+     * Faz upload da miniatura de uma foto, ao lado do original no bucket de fotos
+     * ({@code <locationId>/thumbs/<arquivo>}), e define a URL da miniatura
+     * @param photo Foto à qual a miniatura pertence
+     * @param thumbnailFile Arquivo local da miniatura
+     * @return true se o upload foi bem-sucedido, false caso contrário
+     */
+    public boolean uploadThumbnailFile(Photo photo, File thumbnailFile) {
+        if (!canUploadPhotoFile(photo, thumbnailFile)) {
+            return false;
+        }
+        
+        String thumbnailUrl = uploadFile(thumbnailFile, PHOTOS_BUCKET, photo.getLocationId() + "/thumbs/" + thumbnailFile.getName());
+        if (thumbnailUrl == null) {
+            DataLog.e("Falha no upload da miniatura: {}", thumbnailFile.getName());
+            return false;
+        }
+        
+        photo.setThumbnailUrl(thumbnailUrl);
+        return true;
+    }
+    
+    private boolean canUploadPhotoFile(Photo photo, File photoFile) {
+        if (photoFile == null) {
+            DataLog.e("Arquivo de foto é nulo");
+            return false;
+        }
+        
+        if (!photoFile.exists()) {
+            DataLog.e("Arquivo de foto não existe: {}", photoFile.getAbsolutePath());
+            return false;
+        }
+        
+        if (!photoFile.canRead()) {
+            DataLog.e("Não é possível ler o arquivo de foto: {}", photoFile.getAbsolutePath());
+            return false;
+        }
+        
+        DataLog.d("Tamanho do arquivo: {} bytes", photoFile.length());
+        
+        // Verificar se o locationId é um UUID válido
+        if (photo.getLocationId() == null || photo.getLocationId().isEmpty()) {
+            DataLog.e("LocationId da foto é nulo ou vazio");
+            return false;
+        }
+        
+        try {
+            UUID.fromString(photo.getLocationId());
+            DataLog.d("LocationId da foto é um UUID válido: {}", photo.getLocationId());
+        } catch (IllegalArgumentException e) {
+            DataLog.e("LocationId da foto não é um UUID válido: {}", photo.getLocationId());
             return false;
         }
+        return true;
     }
 
     public List<Photo> getPhotosByLocation(String locationId) {
         try {
+            return refreshPhotosByLocation(locationId);
+        } catch (IOException e) {
+            DataLog.e("Erro ao buscar fotos", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Busca as fotos da localização no servidor e substitui as da cópia local
+     * @return As fotos da cópia local atualizada, incluindo as que ainda estão na fila de envio
+     * @throws IOException Se o servidor não puder ser consultado
+     */
+    public List<Photo> refreshPhotosByLocation(String locationId) throws IOException {
+        String url = supabaseUrl + "/rest/v1/photos?location_id=eq." + locationId;
+        return new ArrayList<>(modelCache.load(url, () -> {
+            long generation = modelCache.generation();
             Request request = new Request.Builder()
-                    .url(supabaseUrl + "/rest/v1/photos?location_id=eq." + locationId)
+                    .url(url)
                     .get()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .build();
 
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful() && response.body() != null) {
-                String json = response.body().string();
-                Photo[] photos = gson.fromJson(json, Photo[].class);
-                List<Photo> photoList = new ArrayList<>();
-                for (Photo photo : photos) {
-                    photoList.add(photo);
+            try (Response response = execute(request)) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("Erro ao buscar fotos: " + response.code());
+                }
+                List<Photo> photoList = JsonStreamDecoder.readPhotos(response.body().charStream(), gson);
+                DataLog.d("Fotos {}; cache HTTP: {}", describeSource(response), getHttpCacheStats());
+                modelCache.putPhotos(photoList, generation);
+                try {
+                    if (isFromCache(response)) {
+                        localStore.mergePhotos(locationId, photoList);
+                    } else {
+                        localStore.replacePhotos(locationId, photoList);
+                    }
+                    if (localStore.getLocation(locationId) != null) {
+                        return localStore.getPhotosByLocation(locationId);
+                    }
+                } catch (android.database.SQLException e) {
+                    DataLog.e("Erro ao atualizar a cópia local", e);
                 }
                 return photoList;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return new ArrayList<>();
+        }));
     }
     
+    /**
+     * Busca uma página de fotos da localização, das mais antigas para as mais recentes,
+     * usando paginação por chave em (created_at, id), e atualiza a cópia local
+     * @param after Cursor da página anterior, ou null para a primeira página
+     * @param limit Tamanho da página
+     * @return A página, incluindo as fotos da cópia local que ainda estão na fila de envio
+     * @throws IOException Se o servidor não puder ser consultado
+     */
+    public Page<Photo> getPhotosPage(String locationId, PageCursor after, int limit) throws IOException {
+        HttpUrl.Builder url = HttpUrl.get(supabaseUrl + "/rest/v1/photos").newBuilder()
+                .addQueryParameter("location_id", "eq." + locationId)
+                .addQueryParameter("order", "created_at.asc,id.asc")
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (after != null) {
+            String createdAt = after.createdAtIso();
+            url.addQueryParameter("or", "(created_at.gt." + createdAt
+                    + ",and(created_at.eq." + createdAt + ",id.gt." + after.getId() + "))");
+        }
+
+        HttpUrl pageUrl = url.build();
+        Page<Photo> page = modelCache.load(pageUrl.toString(), () -> {
+            long generation = modelCache.generation();
+            Request request = new Request.Builder()
+                    .url(pageUrl)
+                    .get()
+                    .build();
+
+            try (Response response = execute(request)) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("Erro ao buscar fotos: " + response.code());
+                }
+                List<Photo> photoList = JsonStreamDecoder.readPhotos(response.body().charStream(), gson);
+                PageCursor next = nextPhotoCursor(photoList, limit);
+                modelCache.putPhotos(photoList, generation);
+                try {
+                    if (isFromCache(response)) {
+                        localStore.mergePhotos(locationId, photoList);
+                    } else {
+                        localStore.replacePhotos(locationId, after, next, photoList);
+                    }
+                    if (localStore.getLocation(locationId) != null) {
+                        return new Page<>(localStore.getPhotosByLocation(locationId, after, next, 0), next);
+                    }
+                } catch (android.database.SQLException e) {
+                    DataLog.e("Erro ao atualizar a cópia local", e);
+                }
+                return new Page<>(photoList, next);
+            }
+        });
+        return new Page<>(new ArrayList<>(page.getItems()), page.getNextCursor());
+    }
+
+    private static PageCursor nextPhotoCursor(List<Photo> photos, int limit) {
+        if (photos.size() < limit) {
+            return null;
+        }
+        Photo last = photos.get(photos.size() - 1);
+        return last.getCreatedAt() != null ? new PageCursor(last.getCreatedAt(), last.getId()) : null;
+    }
+
     public boolean updatePhoto(Photo photo) {
         try {
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
                 return false;
             }
             
             // Verificar se o ID da foto é um UUID válido
             try {
                 UUID uuid = UUID.fromString(photo.getId());
-                android.util.Log.d("PalmasTour", "ID da foto é um UUID válido: " + uuid);
+                DataLog.d("ID da foto é um UUID válido: {}", uuid);
             } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "ID da foto não é um UUID válido: " + photo.getId());
+                DataLog.e("ID da foto não é um UUID válido: {}", photo.getId());
                 return false;
             }
             
             String json = gson.toJson(photo);
-            android.util.Log.d("PalmasTour", "JSON para atualização da foto: " + json);
+            DataLog.d("JSON para atualização da foto: {}", json);
             
             RequestBody body = RequestBody.create(MediaType.parse("application/json"), json);
 
             String requestUrl = supabaseUrl + "/rest/v1/photos?id=eq." + photo.getId();
-            android.util.Log.d("PalmasTour", "URL completa da requisição: " + requestUrl);
+            DataLog.d("URL completa da requisição: {}", requestUrl);
             
             Request request = new Request.Builder()
                     .url(requestUrl)
                     .patch(body)
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .addHeader("Content-Type", "application/json")
                     .addHeader("Prefer", "return=minimal")
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição para: " + request.url());
-            
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Foto atualizada com sucesso: " + response.code());
-                return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao atualizar foto: " + response.code() + ", Corpo: " + responseBody);
-                return false;
+            DataLog.d("Enviando requisição para: {}", request.url());
+            
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    DataLog.d("Foto atualizada com sucesso: {}", response.code());
+                    modelCache.invalidatePhoto(photo.getId(), photo.getLocationId());
+                    mirror(() -> localStore.putPhoto(photo));
+                    return true;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao atualizar foto: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao atualizar foto: " + e.getMessage());
+            DataLog.e("Exceção ao atualizar foto", e);
             return false;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao atualizar foto: " + e.getMessage());
+            DataLog.e("Exceção inesperada ao atualizar foto", e);
             return false;
         }
     }
     
+    /**
+     * Grava a URL do original de uma foto que foi salva só com a miniatura
+     * (envio adiado, ver {@link TransferScheduler})
+     * @return true se o servidor aceitou a alteração
+     */
+    public boolean updatePhotoStorageUrl(String photoId, String storageUrl) {
+        JsonObject json = new JsonObject();
+        json.addProperty("storage_url", storageUrl);
+        RequestBody body = RequestBody.create(MediaType.parse("application/json"), gson.toJson(json));
+
+        Request request = new Request.Builder()
+                .url(supabaseUrl + "/rest/v1/photos?id=eq." + photoId)
+                .patch(body)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Prefer", "return=minimal")
+                .build();
+
+        try (Response response = execute(request)) {
+            if (response.isSuccessful()) {
+                modelCache.invalidatePhoto(photoId, null);
+                mirror(() -> {
+                    Photo local = localStore.getPhoto(photoId);
+                    if (local != null) {
+                        local.setStorageUrl(storageUrl);
+                        localStore.putPhoto(local);
+                    }
+                });
+                return true;
+            }
+            String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+            DataLog.e("Erro ao gravar URL do original: {}, Corpo: {}", response.code(), responseBody);
+            return false;
+        } catch (IOException e) {
+            DataLog.e("Exceção ao gravar URL do original", e);
+            return false;
+        }
+    }
+
     public boolean deletePhoto(String photoId) {
         try {
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
                 return false;
             }
             
             // Verificar se o ID é um UUID válido
             try {
                 UUID uuid = UUID.fromString(photoId);
-                android.util.Log.d("PalmasTour", "ID da foto é um UUID válido: " + uuid);
+                DataLog.d("ID da foto é um UUID válido: {}", uuid);
             } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "ID da foto não é um UUID válido: " + photoId);
+                DataLog.e("ID da foto não é um UUID válido: {}", photoId);
                 return false;
             }
             
-            // Primeiro, obter a foto para conseguir a URL do storage
-            Photo photo = getPhotoById(photoId);
+            // Primeiro, obter a foto para conseguir a URL do storage, do cache em
+            // memória ou da cópia local quando possível
+            Photo photo = modelCache.getPhoto(photoId);
             if (photo == null) {
-                android.util.Log.e("PalmasTour", "Não foi possível obter a foto para exclusão: " + photoId);
+                Photo local = localStore.getPhoto(photoId);
+                photo = local != null && local.getStorageUrl() != null ? local : getPhotoById(photoId);
+            }
+            if (photo == null) {
+                DataLog.e("Não foi possível obter a foto para exclusão: {}", photoId);
                 return false;
             }
             
-            // Extrair o caminho do arquivo no storage a partir da URL
-            String storageUrl = photo.getStorageUrl();
-            if (storageUrl != null && !storageUrl.isEmpty()) {
-                String storagePath = extractStoragePathFromUrl(storageUrl);
-                if (storagePath != null) {
-                    // Excluir o arquivo do storage
-                    boolean storageDeleted = deleteFileFromStorage(storagePath);
-                    if (!storageDeleted) {
-                        android.util.Log.e("PalmasTour", "Não foi possível excluir o arquivo do storage: " + storagePath);
-                        // Continuar mesmo se a exclusão do storage falhar
-                    } else {
-                        android.util.Log.d("PalmasTour", "Arquivo excluído com sucesso do storage: " + storagePath);
-                    }
-                } else {
-                    android.util.Log.e("PalmasTour", "Não foi possível extrair o caminho do storage da URL: " + storageUrl);
-                }
-            } else {
-                android.util.Log.d("PalmasTour", "Foto não possui URL de storage para exclusão");
+            return deletePhoto(photo);
+        } catch (Exception e) {
+            DataLog.e("Exceção inesperada ao excluir foto", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Exclui os arquivos da foto no storage e o seu registro. Pode ser repetida
+     * com segurança: excluir uma foto que já não existe não é um erro.
+     * @param photo Foto com as URLs do storage já conhecidas
+     * @return true se o registro foi excluído (ou já não existia)
+     */
+    public boolean deletePhoto(Photo photo) {
+        try {
+            // Excluir o arquivo original e a miniatura do storage, em uma única chamada
+            List<String> storagePaths = new ArrayList<>();
+            addStoragePath(storagePaths, photo.getStorageUrl());
+            addStoragePath(storagePaths, photo.getThumbnailUrl());
+            if (!removeStorageObjects(PHOTOS_BUCKET, storagePaths)) {
+                // Não impede a exclusão do registro da foto
+                DataLog.e("Não foi possível excluir os arquivos da foto do storage: {}", storagePaths);
             }
             
             // Agora excluir o registro da foto no banco de dados
+            final String photoId = photo.getId();
             String requestUrl = supabaseUrl + "/rest/v1/photos?id=eq." + photoId;
-            android.util.Log.d("PalmasTour", "URL completa da requisição: " + requestUrl);
+            DataLog.d("URL completa da requisição: {}", requestUrl);
             
             Request request = new Request.Builder()
                     .url(requestUrl)
                     .delete()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição para: " + request.url());
-            
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Foto excluída com sucesso: " + response.code());
-                return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao excluir foto: " + response.code() + ", Corpo: " + responseBody);
-                return false;
+            DataLog.d("Enviando requisição para: {}", request.url());
+            
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    DataLog.d("Foto excluída com sucesso: {}", response.code());
+                    modelCache.invalidatePhoto(photoId, photo.getLocationId());
+                    mirror(() -> localStore.deletePhoto(photoId));
+                    return true;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao excluir foto: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao excluir foto: " + e.getMessage());
+            DataLog.e("Exceção ao excluir foto", e);
             return false;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao excluir foto: " + e.getMessage());
+            DataLog.e("Exceção inesperada ao excluir foto", e);
             return false;
         }
     }
@@ -615,49 +1571,58 @@ public class SupabaseClient {
     // Método para upload de arquivos
     public String uploadFile(File file, String bucket, String path) {
         try {
-            android.util.Log.d("PalmasTour", "Iniciando upload de arquivo: " + file.getName() + ", tamanho: " + file.length() + " bytes");
-            android.util.Log.d("PalmasTour", "Bucket: " + bucket + ", Path: " + path);
+            DataLog.d("Iniciando upload de arquivo: {}, tamanho: {} bytes", file.getName(), file.length());
+            DataLog.d("Bucket: {}, Path: {}", bucket, path);
             
             if (!file.exists()) {
-                android.util.Log.e("PalmasTour", "Arquivo não existe: " + file.getAbsolutePath());
+                DataLog.e("Arquivo não existe: {}", file.getAbsolutePath());
                 return null;
             }
             
             if (!file.canRead()) {
-                android.util.Log.e("PalmasTour", "Não é possível ler o arquivo: " + file.getAbsolutePath());
+                DataLog.e("Não é possível ler o arquivo: {}", file.getAbsolutePath());
+                return null;
+            }
+            
+            // Arquivos grandes usam o upload retomável, em blocos
+            if (file.length() > RESUMABLE_UPLOAD_THRESHOLD) {
+                DataLog.d("Usando upload retomável para {}", file.getName());
+                if (resumableUploader.upload(file, bucket, path)) {
+                    return supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + path;
+                }
                 return null;
             }
             
             RequestBody requestBody = new MultipartBody.Builder()
                     .setType(MultipartBody.FORM)
+                    .addFormDataPart("cacheControl", STORAGE_CACHE_CONTROL_SECONDS)
                     .addFormDataPart("file", file.getName(),
                             RequestBody.create(MediaType.parse("application/octet-stream"), file))
                     .build();
 
             String uploadUrl = supabaseUrl + "/storage/v1/object/" + bucket + "/" + path;
-            android.util.Log.d("PalmasTour", "URL de upload: " + uploadUrl);
+            DataLog.d("URL de upload: {}", uploadUrl);
             
-            Request request = new Request.Builder()
+            // Com upsert, reenviar o mesmo arquivo (ex.: na fila de envio) não falha
+            Request request = RetryInterceptor.idempotent(new Request.Builder())
                     .url(uploadUrl)
                     .post(requestBody)
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
+                    .addHeader("x-upsert", "true")
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição de upload");
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                String publicUrl = supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + path;
-                android.util.Log.d("PalmasTour", "Upload bem-sucedido. URL pública: " + publicUrl);
-                return publicUrl;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro no upload: " + response.code() + ", Corpo: " + responseBody);
+            DataLog.d("Enviando requisição de upload");
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    String publicUrl = supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + path;
+                    DataLog.d("Upload bem-sucedido. URL pública: {}", publicUrl);
+                    return publicUrl;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro no upload: {}, Corpo: {}", response.code(), responseBody);
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao fazer upload do arquivo: " + e.getMessage());
+            DataLog.e("Exceção ao fazer upload do arquivo", e);
         }
         return null;
     }
@@ -668,76 +1633,122 @@ public class SupabaseClient {
      * @return Objeto Photo ou null se não encontrado
      */
     public Photo getPhotoById(String photoId) {
+        Photo cached = modelCache.getPhoto(photoId);
+        if (cached != null) {
+            return cached;
+        }
         try {
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
                 return null;
             }
             
             // Verificar se o ID é um UUID válido
             try {
                 UUID uuid = UUID.fromString(photoId);
-                android.util.Log.d("PalmasTour", "ID da foto é um UUID válido: " + uuid);
+                DataLog.d("ID da foto é um UUID válido: {}", uuid);
             } catch (IllegalArgumentException e) {
-                android.util.Log.e("PalmasTour", "ID da foto não é um UUID válido: " + photoId);
+                DataLog.e("ID da foto não é um UUID válido: {}", photoId);
                 return null;
             }
             
             String requestUrl = supabaseUrl + "/rest/v1/photos?id=eq." + photoId;
-            android.util.Log.d("PalmasTour", "URL completa da requisição: " + requestUrl);
-            
-            Request request = new Request.Builder()
-                    .url(requestUrl)
-                    .get()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
-                    .build();
+            DataLog.d("URL completa da requisição: {}", requestUrl);
+            
+            Photo photo = modelCache.load(requestUrl, () -> {
+                long generation = modelCache.generation();
+                Request request = new Request.Builder()
+                        .url(requestUrl)
+                        .get()
+                        .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição para: " + request.url());
-            
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                String responseBody = response.body() != null ? response.body().string() : "[]";
-                android.util.Log.d("PalmasTour", "Resposta: " + responseBody);
-                
-                if (responseBody.equals("[]") || responseBody.isEmpty()) {
-                    android.util.Log.d("PalmasTour", "Nenhuma foto encontrada com o ID: " + photoId);
-                    return null;
-                }
+                DataLog.d("Enviando requisição para: {}", request.url());
                 
-                // Converter o JSON para um array de fotos
-                Photo[] photos = gson.fromJson(responseBody, Photo[].class);
-                
-                if (photos != null && photos.length > 0) {
-                    android.util.Log.d("PalmasTour", "Foto encontrada: " + photos[0].getId());
-                    return photos[0];
-                } else {
-                    android.util.Log.d("PalmasTour", "Nenhuma foto encontrada após conversão JSON");
-                    return null;
+                try (Response response = execute(request)) {
+                    if (response.isSuccessful()) {
+                        Photo found = response.body() != null
+                                ? JsonStreamDecoder.readFirst(response.body().charStream(), gson, Photo.class)
+                                : null;
+                        
+                        if (found != null) {
+                            DataLog.d("Foto encontrada: {}", found.getId());
+                            modelCache.putPhotos(Collections.singletonList(found), generation);
+                        } else {
+                            DataLog.d("Nenhuma foto encontrada com o ID: {}", photoId);
+                        }
+                        return found;
+                    } else {
+                        String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                        DataLog.e("Erro ao obter foto: {}, Corpo: {}", response.code(), responseBody);
+                        return null;
+                    }
                 }
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao obter foto: " + response.code() + ", Corpo: " + responseBody);
-                return null;
-            }
+            });
+            // Cada chamador recebe a sua própria cópia
+            return photo != null ? new Photo(photo) : null;
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao obter foto: " + e.getMessage());
+            DataLog.e("Exceção ao obter foto", e);
             return null;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao obter foto: " + e.getMessage());
+            DataLog.e("Exceção inesperada ao obter foto", e);
             return null;
         }
     }
     
+    /**
+     * Acrescenta à lista o caminho no bucket de fotos do arquivo apontado por uma URL pública, se houver
+     * @param storageUrl URL pública do arquivo no storage (pode ser nula)
+     */
+    private void addStoragePath(List<String> paths, String storageUrl) {
+        if (storageUrl == null || storageUrl.isEmpty()) {
+            return;
+        }
+        String storagePath = extractStoragePathFromUrl(storageUrl);
+        String bucketPrefix = PHOTOS_BUCKET + "/";
+        if (storagePath == null || !storagePath.startsWith(bucketPrefix)) {
+            DataLog.e("Não foi possível extrair o caminho do storage da URL: {}", storageUrl);
+            return;
+        }
+        paths.add(storagePath.substring(bucketPrefix.length()));
+    }
+
+    /**
+     * Remove vários arquivos de um bucket com uma chamada por lote de
+     * {@link #STORAGE_REMOVE_BATCH_SIZE}. Arquivos que já não existem são ignorados.
+     * @param bucket Bucket dos arquivos
+     * @param paths Caminhos dentro do bucket
+     * @return true se todos os lotes foram aceitos
+     */
+    boolean removeStorageObjects(String bucket, List<String> paths) {
+        for (int from = 0; from < paths.size(); from += STORAGE_REMOVE_BATCH_SIZE) {
+            List<String> batch = paths.subList(from, Math.min(from + STORAGE_REMOVE_BATCH_SIZE, paths.size()));
+            JsonArray prefixes = new JsonArray();
+            for (String path : batch) {
+                prefixes.add(path);
+            }
+            JsonObject params = new JsonObject();
+            params.add("prefixes", prefixes);
+            Request request = new Request.Builder()
+                    .url(supabaseUrl + "/storage/v1/object/" + bucket)
+                    .delete(RequestBody.create(MediaType.parse("application/json"), gson.toJson(params)))
+                    .build();
+
+            try (Response response = execute(request)) {
+                if (!response.isSuccessful()) {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao excluir arquivos do storage: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
+                DataLog.d("{} arquivos excluídos do storage", batch.size());
+            } catch (IOException e) {
+                DataLog.e("Exceção ao excluir arquivos do storage", e);
+                return false;
+            }
+        }
+        return true;
+    }
+    
     /**
      * Extrai o caminho do arquivo no storage a partir da URL pública
      * @param storageUrl URL pública do arquivo no storage
@@ -754,14 +1765,14 @@ public class SupabaseClient {
             
             if (storageUrl.startsWith(publicPrefix)) {
                 String path = storageUrl.substring(publicPrefix.length());
-                android.util.Log.d("PalmasTour", "Caminho extraído da URL: " + path);
+                DataLog.d("Caminho extraído da URL: {}", path);
                 return path;
             } else {
-                android.util.Log.e("PalmasTour", "URL não tem o formato esperado: " + storageUrl);
+                DataLog.e("URL não tem o formato esperado: {}", storageUrl);
                 return null;
             }
         } catch (Exception e) {
-            android.util.Log.e("PalmasTour", "Erro ao extrair caminho da URL: " + e.getMessage());
+            DataLog.e("Erro ao extrair caminho da URL", e);
             return null;
         }
     }
@@ -773,47 +1784,38 @@ public class SupabaseClient {
      */
     public boolean deleteFileFromStorage(String path) {
         try {
-            android.util.Log.d("PalmasTour", "Iniciando exclusão de arquivo no storage: " + path);
+            DataLog.d("Iniciando exclusão de arquivo no storage: {}", path);
             
             // Verificar conectividade de rede
-            android.net.ConnectivityManager cm = (android.net.ConnectivityManager) 
-                    context.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-            android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-            boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-            
-            if (!isConnected) {
-                android.util.Log.e("PalmasTour", "Sem conexão com a internet");
+            if (!networkMonitor.isConnected()) {
+                DataLog.e("Sem conexão com a internet");
                 return false;
             }
             
             String deleteUrl = supabaseUrl + "/storage/v1/object/" + path;
-            android.util.Log.d("PalmasTour", "URL de exclusão: " + deleteUrl);
+            DataLog.d("URL de exclusão: {}", deleteUrl);
             
             Request request = new Request.Builder()
                     .url(deleteUrl)
                     .delete()
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
                     .build();
 
-            android.util.Log.d("PalmasTour", "Enviando requisição de exclusão");
-            Response response = client.newCall(request).execute();
-            
-            if (response.isSuccessful()) {
-                android.util.Log.d("PalmasTour", "Arquivo excluído com sucesso do storage: " + response.code());
-                return true;
-            } else {
-                String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
-                android.util.Log.e("PalmasTour", "Erro ao excluir arquivo do storage: " + response.code() + ", Corpo: " + responseBody);
-                return false;
+            DataLog.d("Enviando requisição de exclusão");
+            try (Response response = execute(request)) {
+                if (response.isSuccessful()) {
+                    DataLog.d("Arquivo excluído com sucesso do storage: {}", response.code());
+                    return true;
+                } else {
+                    String responseBody = response.body() != null ? response.body().string() : "Sem corpo na resposta";
+                    DataLog.e("Erro ao excluir arquivo do storage: {}, Corpo: {}", response.code(), responseBody);
+                    return false;
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção ao excluir arquivo do storage: " + e.getMessage());
+            DataLog.e("Exceção ao excluir arquivo do storage", e);
             return false;
         } catch (Exception e) {
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Exceção inesperada ao excluir arquivo do storage: " + e.getMessage());
+            DataLog.e("Exceção inesperada ao excluir arquivo do storage", e);
             return false;
         }
     }
@@ -0,0 +1,74 @@
+package com.kopecode.palmastour.data;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+import okhttp3.Call;
+
+/**
+ * Referência para uma operação assíncrona do {@link SupabaseClient}.
+ *
+ * Cancelar a tarefa interrompe as requisições HTTP em andamento e garante que
+ * o callback não seja chamado, o que permite descartar o trabalho quando o
+ * fragmento é destruído.
+ */
+public final class SupabaseTask {
+    private static final ThreadLocal<SupabaseTask> CURRENT = new ThreadLocal<>();
+
+    private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+    private volatile Future<?> future;
+    private volatile boolean cancelled;
+
+    SupabaseTask() {
+    }
+
+    /**
+     * Cancela a operação e as requisições HTTP associadas a ela
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Call call : calls) {
+            call.cancel();
+        }
+        Future<?> current = future;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Tarefa em execução na thread atual, ou null fora de uma operação assíncrona
+     */
+    static SupabaseTask current() {
+        return CURRENT.get();
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void attachToCurrentThread() {
+        CURRENT.set(this);
+    }
+
+    void detachFromCurrentThread() {
+        CURRENT.remove();
+    }
+
+    void track(Call call) {
+        calls.add(call);
+        // A tarefa pode ter sido cancelada enquanto a chamada era criada
+        if (cancelled) {
+            call.cancel();
+        }
+    }
+
+    void untrack(Call call) {
+        calls.remove(call);
+    }
+}
@@ -0,0 +1,19 @@
+package com.kopecode.palmastour.data;
+
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Alterações devolvidas pela função {@code sync_changes} do servidor
+ */
+final class SyncChanges {
+    Date serverTime;
+    final List<Location> locations = new ArrayList<>();
+    final List<Photo> photos = new ArrayList<>();
+    final List<String> deletedLocationIds = new ArrayList<>();
+    final List<String> deletedPhotoIds = new ArrayList<>();
+}
@@ -0,0 +1,58 @@
+package com.kopecode.palmastour.data;
+
+import java.time.Instant;
+
+/**
+ * Resultado de uma sincronização incremental ({@link SupabaseClient#syncSince(Instant)})
+ */
+public final class SyncResult {
+    private final Instant highWaterMark;
+    private final boolean full;
+    private final int changedLocations;
+    private final int changedPhotos;
+    private final int deletedRows;
+
+    SyncResult(Instant highWaterMark, boolean full, int changedLocations, int changedPhotos, int deletedRows) {
+        this.highWaterMark = highWaterMark;
+        this.full = full;
+        this.changedLocations = changedLocations;
+        this.changedPhotos = changedPhotos;
+        this.deletedRows = deletedRows;
+    }
+
+    /**
+     * Horário do servidor a partir do qual a próxima sincronização deve começar
+     */
+    public Instant getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Se a cópia local foi substituída por completo, em vez de receber só as alterações
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    public int getChangedLocations() {
+        return changedLocations;
+    }
+
+    public int getChangedPhotos() {
+        return changedPhotos;
+    }
+
+    public int getDeletedRows() {
+        return deletedRows;
+    }
+
+    public boolean hasChanges() {
+        return full || changedLocations > 0 || changedPhotos > 0 || deletedRows > 0;
+    }
+
+    @Override
+    public String toString() {
+        return (full ? "sincronização completa" : "sincronização incremental") + ": "
+                + changedLocations + " localizações, " + changedPhotos + " fotos, " + deletedRows + " exclusões";
+    }
+}
@@ -0,0 +1,63 @@
+package com.kopecode.palmastour.data;
+
+import android.content.Context;
+import android.os.BatteryManager;
+
+/**
+ * Classifica os envios por urgência e decide quando cada classe pode usar a rede:
+ *
+ * - {@link Urgency#IMMEDIATE}: metadados (localizações, fotos, alterações e
+ *   exclusões) e miniaturas, que são pequenos e deixam o trabalho visível para
+ *   os outros aparelhos; saem assim que houver conexão
+ * - {@link Urgency#DEFERRED}: os arquivos originais em resolução total; esperam
+ *   uma rede não tarifada ou o aparelho carregando
+ *
+ * O agendamento fica com o WorkManager ({@link OutboxWorker}), que retoma sozinho
+ * o trabalho pausado quando a condição volta a ser atendida.
+ */
+class TransferScheduler {
+    enum Urgency { IMMEDIATE, DEFERRED }
+
+    private final Context context;
+    private final NetworkMonitor monitor;
+    private final BatteryManager battery;
+
+    TransferScheduler(Context context, NetworkMonitor monitor) {
+        this.context = context;
+        this.monitor = monitor;
+        this.battery = context.getSystemService(BatteryManager.class);
+    }
+
+    /**
+     * Urgência de uma operação da fila de envio
+     */
+    static Urgency urgencyOf(String operation) {
+        return Outbox.OP_UPLOAD_ORIGINAL.equals(operation) ? Urgency.DEFERRED : Urgency.IMMEDIATE;
+    }
+
+    /**
+     * Se o estado atual do link e da bateria permite enviar agora
+     */
+    boolean canSend(Urgency urgency) {
+        NetworkMonitor.LinkState state = monitor.getState();
+        if (!state.isConnected()) {
+            return false;
+        }
+        return urgency == Urgency.IMMEDIATE || !state.isMetered() || isCharging();
+    }
+
+    /**
+     * Agenda o envio das entradas pendentes com esta urgência
+     */
+    void schedule(Urgency urgency) {
+        if (urgency == Urgency.IMMEDIATE) {
+            OutboxWorker.schedule(context);
+        } else {
+            OutboxWorker.scheduleDeferred(context);
+        }
+    }
+
+    private boolean isCharging() {
+        return battery != null && battery.isCharging();
+    }
+}
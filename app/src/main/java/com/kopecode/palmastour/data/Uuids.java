@@ -0,0 +1,79 @@
+package com.kopecode.palmastour.data;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Identificadores UUIDv7 (RFC 9562), ordenados pelo instante de criação.
+ *
+ * Os 48 bits mais altos são os milissegundos desde 1970, seguidos da versão, de
+ * um contador de 12 bits e de 62 bits aleatórios. IDs gerados em sequência
+ * crescem sempre, mesmo no mesmo milissegundo ou se o relógio voltar: as
+ * inserções caem no fim dos índices de chave primária em vez de em posições
+ * aleatórias, e a ordem dos IDs é a ordem de criação. São UUIDs comuns para o
+ * banco e para {@link UUID#fromString(String)}.
+ */
+public final class Uuids {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_MAX = (1 << COUNTER_BITS) - 1;
+
+    // Último instante usado e o contador dentro dele
+    private static long lastMillis = -1;
+    private static int counter;
+
+    private Uuids() {
+    }
+
+    /**
+     * Novo UUIDv7, maior que todos os gerados antes neste processo
+     */
+    public static UUID v7() {
+        long millis;
+        int sequence;
+        synchronized (Uuids.class) {
+            millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis != lastMillis) {
+                // Começa em um ponto aleatório da metade de baixo, deixando espaço para incrementar
+                counter = RANDOM.nextInt(1 << (COUNTER_BITS - 1));
+            } else if (counter < COUNTER_MAX) {
+                counter++;
+            } else {
+                // Contador esgotado: avança para o milissegundo seguinte
+                millis++;
+                counter = RANDOM.nextInt(1 << (COUNTER_BITS - 1));
+            }
+            lastMillis = millis;
+            sequence = counter;
+        }
+        long mostSignificant = (millis & 0xFFFF_FFFF_FFFFL) << 16 | 0x7000L | sequence;
+        long leastSignificant = RANDOM.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    /**
+     * Novo UUIDv7 em texto, no formato dos IDs dos modelos
+     */
+    public static String newId() {
+        return v7().toString();
+    }
+
+    /**
+     * Instante de criação gravado em um UUIDv7, em milissegundos desde 1970
+     * @throws IllegalArgumentException se o ID não for um UUIDv7
+     */
+    public static long timestampOf(String id) {
+        return timestampOf(UUID.fromString(id));
+    }
+
+    /**
+     * Como {@link #timestampOf(String)}, sem converter o ID de volta do texto
+     * @throws IllegalArgumentException se o ID não for um UUIDv7
+     */
+    public static long timestampOf(UUID id) {
+        if (id.version() != 7) {
+            throw new IllegalArgumentException("Não é um UUIDv7: " + id);
+        }
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
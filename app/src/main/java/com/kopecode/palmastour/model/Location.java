@@ -2,6 +2,9 @@ package com.kopecode.palmastour.model;
 
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.annotations.Expose;
+import com.kopecode.palmastour.data.DataLog;
+import com.kopecode.palmastour.data.IsoDates;
+import com.kopecode.palmastour.data.Uuids;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -26,10 +29,32 @@ public class Location implements Serializable {
     @Expose(serialize = false)
     private transient List<Photo> photos;
 
+    // Resumo das fotos, mantido pelo servidor (ou calculado na cópia local) para
+    // quando as fotos não foram carregadas; photoCount é -1 se não for conhecido
+    private int photoCount = -1;
+    private String coverPhotoUrl;
+    private Date lastPhotoAt;
+
     public Location() {
-        this.id = UUID.randomUUID().toString();
-        this.createdAt = new Date();
+        this(Uuids.v7());
+    }
+
+    private Location(UUID uuid) {
         this.photos = new ArrayList<>();
+        if (uuid != null) {
+            // UUIDv7: sem outra data informada, a criação é o instante gravado no ID
+            this.id = uuid.toString();
+            this.createdAt = new Date(Uuids.timestampOf(uuid));
+        }
+    }
+
+    /**
+     * Localização sem ID nem data de criação, para os leitores do JSON e da cópia
+     * local, que preenchem os campos com os de um registro existente e não
+     * precisam gerar um ID novo para cada linha lida
+     */
+    public static Location blank() {
+        return new Location((UUID) null);
     }
 
     public Location(double latitude, double longitude) {
@@ -44,20 +69,39 @@ public class Location implements Serializable {
         this.latitude = latitude;
         this.longitude = longitude;
         this.name = name;
+        // A data informada substitui a do ID; a ordem dos IDs deixa de ser a de created_at
         try {
             // Tenta converter o timestamp para Date se necessário
             if (timestamp != null && !timestamp.isEmpty()) {
-                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", java.util.Locale.getDefault());
-                this.createdAt = sdf.parse(timestamp);
-                android.util.Log.d("PalmasTour", "Timestamp convertido para Date: " + this.createdAt);
+                this.createdAt = IsoDates.parse(timestamp);
+                DataLog.d("Timestamp convertido para Date: {}", this.createdAt);
             }
-        } catch (java.text.ParseException e) {
+        } catch (IllegalArgumentException e) {
             // Em caso de erro, mantém a data atual
-            e.printStackTrace();
-            android.util.Log.e("PalmasTour", "Erro ao converter timestamp: " + e.getMessage());
+            DataLog.e("Erro ao converter timestamp", e);
         }
     }
 
+    /**
+     * Cópia independente de outra localização, incluindo as fotos
+     */
+    public Location(Location other) {
+        this.id = other.id;
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+        this.name = other.name;
+        this.createdAt = other.createdAt != null ? new Date(other.createdAt.getTime()) : null;
+        this.photos = new ArrayList<>();
+        if (other.photos != null) {
+            for (Photo photo : other.photos) {
+                this.photos.add(new Photo(photo));
+            }
+        }
+        this.photoCount = other.photoCount;
+        this.coverPhotoUrl = other.coverPhotoUrl;
+        this.lastPhotoAt = other.lastPhotoAt != null ? new Date(other.lastPhotoAt.getTime()) : null;
+    }
+
     public String getId() {
         return id;
     }
@@ -96,8 +140,7 @@ public class Location implements Serializable {
     
     public String getCreatedAtString() {
         if (createdAt != null) {
-            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", java.util.Locale.getDefault());
-            return sdf.format(createdAt);
+            return IsoDates.format(createdAt);
         }
         return "";
     }
@@ -118,6 +161,50 @@ public class Location implements Serializable {
         this.photos.add(photo);
     }
 
+    /**
+     * Número de fotos da localização: a contagem recebida, se houver, ou o
+     * tamanho da lista de fotos carregadas
+     */
+    public int getPhotoCount() {
+        if (photoCount >= 0) {
+            return photoCount;
+        }
+        return photos != null ? photos.size() : 0;
+    }
+
+    public void setPhotoCount(int photoCount) {
+        this.photoCount = photoCount;
+    }
+
+    /**
+     * Imagem de capa (a miniatura da primeira foto), ou null se não houver
+     */
+    public String getCoverPhotoUrl() {
+        return coverPhotoUrl;
+    }
+
+    public void setCoverPhotoUrl(String coverPhotoUrl) {
+        this.coverPhotoUrl = coverPhotoUrl;
+    }
+
+    /**
+     * Data da foto mais recente, ou null se não houver fotos
+     */
+    public Date getLastPhotoAt() {
+        return lastPhotoAt;
+    }
+
+    public void setLastPhotoAt(Date lastPhotoAt) {
+        this.lastPhotoAt = lastPhotoAt;
+    }
+
+    /**
+     * Se o resumo das fotos (contagem, capa e data da mais recente) foi recebido
+     */
+    public boolean hasPhotoSummary() {
+        return photoCount >= 0;
+    }
+
     @Override
     public String toString() {
         return name + " (" + latitude + ", " + longitude + ")";
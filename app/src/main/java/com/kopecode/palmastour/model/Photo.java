@@ -2,12 +2,12 @@ package com.kopecode.palmastour.model;
 
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.annotations.Expose;
+import com.kopecode.palmastour.data.DataLog;
+import com.kopecode.palmastour.data.IsoDates;
+import com.kopecode.palmastour.data.Uuids;
 
 import java.io.Serializable;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 import java.util.UUID;
 
 public class Photo implements Serializable {
@@ -26,6 +26,10 @@ public class Photo implements Serializable {
     @Expose
     private String storageUrl;
     
+    @SerializedName("thumbnail_url")
+    @Expose
+    private String thumbnailUrl;
+    
     @SerializedName("created_at")
     @Expose
     private Date createdAt;
@@ -34,8 +38,23 @@ public class Photo implements Serializable {
     private String description;
 
     public Photo() {
-        this.id = UUID.randomUUID().toString();
-        this.createdAt = new Date();
+        this(Uuids.v7());
+    }
+
+    private Photo(UUID uuid) {
+        if (uuid != null) {
+            // Sem data informada, a criação é o instante gravado no próprio ID
+            this.id = uuid.toString();
+            this.createdAt = new Date(Uuids.timestampOf(uuid));
+        }
+    }
+
+    /**
+     * Foto sem ID nem data de criação, a ser preenchida com os campos de um
+     * registro lido do servidor ou da cópia local
+     */
+    public static Photo blank() {
+        return new Photo((UUID) null);
     }
 
     public Photo(String locationId, String filePath) {
@@ -51,27 +70,39 @@ public class Photo implements Serializable {
         this.filePath = filePath;
         this.description = description;
         
-        android.util.Log.d("PalmasTour", "Criando foto com locationId: " + locationId);
-        android.util.Log.d("PalmasTour", "Foto ID gerado: " + this.id);
+        DataLog.d("Criando foto com locationId: {}", locationId);
+        DataLog.d("Foto ID gerado: {}", this.id);
         
-        // Se timestamp não for nulo, tenta converter para Date
+        // Se timestamp não for nulo, tenta converter para Date; a data informada
+        // vale no lugar da gravada no ID
         if (timestamp != null && !timestamp.isEmpty()) {
             try {
-                android.util.Log.d("PalmasTour", "Tentando converter timestamp: " + timestamp);
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.getDefault());
-                this.createdAt = dateFormat.parse(timestamp);
-                android.util.Log.d("PalmasTour", "Timestamp convertido para Date: " + this.createdAt);
-            } catch (ParseException e) {
-                e.printStackTrace();
-                android.util.Log.e("PalmasTour", "Erro ao converter timestamp: " + e.getMessage());
+                DataLog.d("Tentando converter timestamp: {}", timestamp);
+                this.createdAt = IsoDates.parse(timestamp);
+                DataLog.d("Timestamp convertido para Date: {}", this.createdAt);
+            } catch (IllegalArgumentException e) {
+                DataLog.e("Erro ao converter timestamp", e);
                 // Mantém a data atual se não conseguir converter
-                android.util.Log.d("PalmasTour", "Usando data atual: " + this.createdAt);
+                DataLog.d("Usando data atual: {}", this.createdAt);
             }
         } else {
-            android.util.Log.d("PalmasTour", "Timestamp nulo ou vazio, usando data atual: " + this.createdAt);
+            DataLog.d("Timestamp nulo ou vazio, usando data atual: {}", this.createdAt);
         }
     }
 
+    /**
+     * Cópia independente de outra foto
+     */
+    public Photo(Photo other) {
+        this.id = other.id;
+        this.locationId = other.locationId;
+        this.filePath = other.filePath;
+        this.storageUrl = other.storageUrl;
+        this.thumbnailUrl = other.thumbnailUrl;
+        this.createdAt = other.createdAt != null ? new Date(other.createdAt.getTime()) : null;
+        this.description = other.description;
+    }
+
     public String getId() {
         return id;
     }
@@ -104,6 +135,14 @@ public class Photo implements Serializable {
         this.storageUrl = storageUrl;
     }
 
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
     public Date getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,49 @@
+package com.kopecode.palmastour.ui;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Pede a próxima página quando a lista chega perto do fim, para que ela já
+ * esteja carregada quando o usuário terminar de rolar.
+ * Funciona com LinearLayoutManager e GridLayoutManager.
+ */
+public abstract class PagingScrollListener extends RecyclerView.OnScrollListener {
+    // Quantos itens antes do fim a próxima página começa a ser buscada
+    private final int prefetchDistance;
+
+    protected PagingScrollListener(int prefetchDistance) {
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy <= 0 || isLoading() || !hasMore()) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) {
+            return;
+        }
+        int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+        if (lastVisible >= layoutManager.getItemCount() - 1 - prefetchDistance) {
+            onLoadMore();
+        }
+    }
+
+    /**
+     * Se uma página já está sendo carregada
+     */
+    protected abstract boolean isLoading();
+
+    /**
+     * Se ainda há páginas a carregar
+     */
+    protected abstract boolean hasMore();
+
+    /**
+     * Carrega a próxima página
+     */
+    protected abstract void onLoadMore();
+}
@@ -2,30 +2,143 @@ package com.kopecode.palmastour.ui.gallery;
 
 import android.app.AlertDialog;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.kopecode.palmastour.R;
+import com.kopecode.palmastour.data.LocationProjection;
+import com.kopecode.palmastour.data.Page;
+import com.kopecode.palmastour.data.PageCursor;
+import com.kopecode.palmastour.data.RealtimeService;
 import com.kopecode.palmastour.data.SupabaseClient;
+import com.kopecode.palmastour.data.SupabaseTask;
+import com.kopecode.palmastour.data.SyncResult;
 import com.kopecode.palmastour.databinding.FragmentGalleryBinding;
 import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+import com.kopecode.palmastour.ui.PagingScrollListener;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class GalleryFragment extends Fragment implements LocationAdapter.OnLocationClickListener {
 
+    private static final String TAG = "GalleryFragment";
+
     private FragmentGalleryBinding binding;
     private GalleryViewModel galleryViewModel;
     private LocationAdapter locationAdapter;
+    private final List<SupabaseTask> pendingTasks = new ArrayList<>();
+    // Paginação: cursor da próxima página (null se não houver mais) e se uma página está sendo carregada
+    private static final int PREFETCH_DISTANCE = 5;
+    private PageCursor nextCursor;
+    private boolean loadingPage;
+    // Se a cópia local foi sincronizada nesta abertura da tela
+    private boolean synced;
+    // Seleção múltipla: IDs marcados e a barra de ações exibida enquanto houver seleção
+    private final Set<String> selectedIds = new LinkedHashSet<>();
+    private ActionMode actionMode;
+    
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.gallery_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.action_delete_selected) {
+                onDeleteSelectedClick();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            actionMode = null;
+            selectedIds.clear();
+            locationAdapter.setSelectedIds(selectedIds);
+        }
+    };
+    
+    // Aplica na lista exibida as alterações recebidas em tempo real
+    private final RealtimeService.Listener realtimeListener = new RealtimeService.Listener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            List<Location> locations = currentLocations();
+            int index = indexOf(locations, location.getId());
+            if (index >= 0) {
+                // O evento traz o resumo das fotos mantido pelo banco; sem ele, fica o anterior
+                if (!location.hasPhotoSummary()) {
+                    Location previous = locations.get(index);
+                    location.setPhotoCount(previous.getPhotoCount());
+                    location.setCoverPhotoUrl(previous.getCoverPhotoUrl());
+                    location.setLastPhotoAt(previous.getLastPhotoAt());
+                }
+                locations.set(index, location);
+            } else {
+                int position = 0;
+                while (position < locations.size() && comesBefore(locations.get(position), location)) {
+                    position++;
+                }
+                // Depois da última página carregada: aparecerá ao rolar
+                if (position == locations.size() && nextCursor != null) {
+                    return;
+                }
+                locations.add(position, location);
+            }
+            galleryViewModel.setLocations(locations);
+        }
+
+        @Override
+        public void onLocationDeleted(String locationId) {
+            List<Location> locations = currentLocations();
+            int index = indexOf(locations, locationId);
+            if (index >= 0) {
+                locations.remove(index);
+                galleryViewModel.setLocations(locations);
+            }
+        }
+
+        @Override
+        public void onPhotoChanged(Photo photo) {
+            refreshPhotoSummary(photo.getLocationId());
+        }
+
+        @Override
+        public void onPhotoDeleted(String photoId, String locationId) {
+            refreshPhotoSummary(locationId);
+        }
+
+        @Override
+        public void onResync() {
+            if (binding != null && !loadingPage) {
+                loadLocalFirstPage();
+            }
+        }
+    };
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
@@ -38,6 +151,22 @@ public class GalleryFragment extends Fragment implements LocationAdapter.OnLocat
         binding.recyclerLocations.setLayoutManager(new LinearLayoutManager(getContext()));
         locationAdapter = new LocationAdapter(new ArrayList<>(), this);
         binding.recyclerLocations.setAdapter(locationAdapter);
+        binding.recyclerLocations.addOnScrollListener(new PagingScrollListener(PREFETCH_DISTANCE) {
+            @Override
+            protected boolean isLoading() {
+                return loadingPage;
+            }
+
+            @Override
+            protected boolean hasMore() {
+                return nextCursor != null;
+            }
+
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        });
 
         // Observar mudanças na lista de localizações
         galleryViewModel.getLocations().observe(getViewLifecycleOwner(), locations -> {
@@ -50,8 +179,9 @@ public class GalleryFragment extends Fragment implements LocationAdapter.OnLocat
             binding.progressLoading.setVisibility(isLoading ? View.VISIBLE : View.GONE);
         });
 
-        // Carregar localizações
+        // Carregar localizações e acompanhar as alterações de outros aparelhos
         loadLocations();
+        SupabaseClient.getInstance(requireContext()).getRealtime().addListener(realtimeListener);
 
         return root;
     }
@@ -59,23 +189,166 @@ public class GalleryFragment extends Fragment implements LocationAdapter.OnLocat
     private void loadLocations() {
         galleryViewModel.setIsLoading(true);
         
-        new Thread(() -> {
-            try {
-                SupabaseClient client = SupabaseClient.getInstance(requireContext());
-                List<Location> locations = client.getLocations();
-                
-                requireActivity().runOnUiThread(() -> {
-                    galleryViewModel.setLocations(locations);
-                    galleryViewModel.setIsLoading(false);
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(getContext(), R.string.error_loading_locations, Toast.LENGTH_SHORT).show();
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        
+        // Com o tempo real conectado, a cópia local já está em dia e não é preciso consultar o servidor
+        if (client.getRealtime().isLive()) {
+            synced = true;
+            loadLocalFirstPage();
+            return;
+        }
+        
+        // Exibir imediatamente a primeira página da cópia local enquanto ela é atualizada pela rede
+        final boolean[] refreshed = {false};
+        final boolean[] showingCached = {false};
+        nextCursor = null;
+        loadingPage = true;
+        pendingTasks.add(client.getCachedLocationsPageAsync(null, LocationProjection.SUMMARY, new SupabaseClient.Callback<Page<Location>>() {
+            @Override
+            public void onSuccess(Page<Location> page) {
+                if (!refreshed[0] && !page.getItems().isEmpty()) {
+                    showingCached[0] = true;
+                    galleryViewModel.setLocations(page.getItems());
                     galleryViewModel.setIsLoading(false);
-                });
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao ler a primeira página da cópia local", e);
+            }
+        }));
+        
+        // Com a sincronização incremental, a cópia local fica completa e as páginas vêm dela;
+        // se a sincronização falhar, as páginas são buscadas direto no servidor
+        synced = false;
+        pendingTasks.add(client.syncAsync(new SupabaseClient.Callback<SyncResult>() {
+            @Override
+            public void onSuccess(SyncResult result) {
+                synced = true;
+                refreshed[0] = true;
+                loadLocalFirstPage();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao sincronizar as localizações", e);
+                pendingTasks.add(client.getLocationsPageAsync(null, LocationProjection.SUMMARY, new SupabaseClient.Callback<Page<Location>>() {
+                    @Override
+                    public void onSuccess(Page<Location> page) {
+                        refreshed[0] = true;
+                        galleryViewModel.setLocations(page.getItems());
+                        nextCursor = page.getNextCursor();
+                        loadingPage = false;
+                        galleryViewModel.setIsLoading(false);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "Erro ao buscar a primeira página no servidor", e);
+                        refreshed[0] = true;
+                        // Sem rede, a lista local continua na tela e as próximas páginas também vêm dela
+                        if (!showingCached[0]) {
+                            Toast.makeText(getContext(), R.string.error_loading_locations, Toast.LENGTH_SHORT).show();
+                        }
+                        pendingTasks.add(client.getCachedLocationsPageAsync(null, LocationProjection.SUMMARY, new SupabaseClient.Callback<Page<Location>>() {
+                            @Override
+                            public void onSuccess(Page<Location> page) {
+                                if (!page.getItems().isEmpty()) {
+                                    galleryViewModel.setLocations(page.getItems());
+                                }
+                                nextCursor = page.getNextCursor();
+                                loadingPage = false;
+                                galleryViewModel.setIsLoading(false);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                Log.e(TAG, "Erro ao ler a primeira página da cópia local", e);
+                                loadingPage = false;
+                                galleryViewModel.setIsLoading(false);
+                            }
+                        }));
+                    }
+                }));
+            }
+        }));
+    }
+
+    /**
+     * Exibe a primeira página da cópia local, já sincronizada
+     */
+    private void loadLocalFirstPage() {
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        loadingPage = true;
+        pendingTasks.add(client.getCachedLocationsPageAsync(null, LocationProjection.SUMMARY, new SupabaseClient.Callback<Page<Location>>() {
+            @Override
+            public void onSuccess(Page<Location> page) {
+                galleryViewModel.setLocations(page.getItems());
+                nextCursor = page.getNextCursor();
+                loadingPage = false;
+                galleryViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao ler a primeira página da cópia local", e);
+                loadingPage = false;
+                galleryViewModel.setIsLoading(false);
+            }
+        }));
+    }
+
+    private void loadNextPage() {
+        PageCursor after = nextCursor;
+        if (after == null) {
+            return;
+        }
+        loadingPage = true;
+        galleryViewModel.setIsLoading(true);
+        
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        SupabaseClient.Callback<Page<Location>> appendPage = new SupabaseClient.Callback<Page<Location>>() {
+            @Override
+            public void onSuccess(Page<Location> page) {
+                List<Location> locations = new ArrayList<>();
+                if (galleryViewModel.getLocations().getValue() != null) {
+                    locations.addAll(galleryViewModel.getLocations().getValue());
+                }
+                locations.addAll(page.getItems());
+                galleryViewModel.setLocations(locations);
+                nextCursor = page.getNextCursor();
+                loadingPage = false;
+                galleryViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao carregar a próxima página", e);
+                Toast.makeText(getContext(), R.string.error_loading_locations, Toast.LENGTH_SHORT).show();
+                loadingPage = false;
+                galleryViewModel.setIsLoading(false);
             }
-        }).start();
+        };
+        
+        if (synced) {
+            pendingTasks.add(client.getCachedLocationsPageAsync(after, LocationProjection.SUMMARY, appendPage));
+            return;
+        }
+        
+        pendingTasks.add(client.getLocationsPageAsync(after, LocationProjection.SUMMARY, new SupabaseClient.Callback<Page<Location>>() {
+            @Override
+            public void onSuccess(Page<Location> page) {
+                appendPage.onSuccess(page);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao buscar a próxima página no servidor; usando a cópia local", e);
+                // Sem rede, continuar pela cópia local
+                pendingTasks.add(client.getCachedLocationsPageAsync(after, LocationProjection.SUMMARY, appendPage));
+            }
+        }));
     }
 
     private void updateEmptyView(List<Location> locations) {
@@ -90,6 +363,10 @@ public class GalleryFragment extends Fragment implements LocationAdapter.OnLocat
 
     @Override
     public void onLocationClick(Location location) {
+        if (actionMode != null) {
+            toggleSelection(location);
+            return;
+        }
         // Navegar para o fragmento de fotos com o ID da localização
         Bundle args = new Bundle();
         args.putString("locationId", location.getId());
@@ -97,6 +374,76 @@ public class GalleryFragment extends Fragment implements LocationAdapter.OnLocat
         Navigation.findNavController(requireView()).navigate(R.id.action_nav_gallery_to_nav_slideshow, args);
     }
     
+    @Override
+    public void onLocationLongClick(Location location) {
+        toggleSelection(location);
+    }
+    
+    private void toggleSelection(Location location) {
+        if (!selectedIds.remove(location.getId())) {
+            selectedIds.add(location.getId());
+        }
+        if (selectedIds.isEmpty()) {
+            if (actionMode != null) {
+                actionMode.finish();
+            }
+            return;
+        }
+        if (actionMode == null) {
+            actionMode = ((AppCompatActivity) requireActivity()).startSupportActionMode(selectionCallback);
+        }
+        if (actionMode != null) {
+            actionMode.setTitle(getString(R.string.locations_selected, selectedIds.size()));
+        }
+        locationAdapter.setSelectedIds(selectedIds);
+    }
+    
+    private void onDeleteSelectedClick() {
+        List<String> locationIds = new ArrayList<>(selectedIds);
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.confirm_delete_location_title)
+                .setMessage(getString(R.string.confirm_delete_locations_message, locationIds.size()))
+                .setPositiveButton(R.string.delete_location, (dialog, which) -> {
+                    if (actionMode != null) {
+                        actionMode.finish();
+                    }
+                    deleteLocations(locationIds);
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+    
+    /**
+     * Exclui as localizações selecionadas de uma vez: a exclusão é enviada ao
+     * servidor em uma única chamada, com os arquivos das fotos removidos em lote
+     */
+    private void deleteLocations(List<String> locationIds) {
+        galleryViewModel.setIsLoading(true);
+        
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        pendingTasks.add(client.deleteLocationsAsync(locationIds, new SupabaseClient.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean success) {
+                if (success) {
+                    List<Location> locations = currentLocations();
+                    locations.removeIf(location -> locationIds.contains(location.getId()));
+                    galleryViewModel.setLocations(locations);
+                    Toast.makeText(getContext(), R.string.locations_deleted, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), R.string.error_deleting_location, Toast.LENGTH_SHORT).show();
+                }
+                galleryViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao excluir as localizações selecionadas", e);
+                Toast.makeText(getContext(), R.string.error_deleting_location, Toast.LENGTH_SHORT).show();
+                galleryViewModel.setIsLoading(false);
+            }
+        }));
+    }
+    
     @Override
     public void onDeleteLocationClick(Location location, int position) {
         // Mostrar diálogo de confirmação
@@ -104,55 +451,111 @@ public class GalleryFragment extends Fragment implements LocationAdapter.OnLocat
                 .setTitle(R.string.confirm_delete_location_title)
                 .setMessage(R.string.confirm_delete_location_message)
                 .setPositiveButton(R.string.delete_location, (dialog, which) -> {
-                    deleteLocation(location, position);
+                    deleteLocation(location);
                 })
                 .setNegativeButton(R.string.cancel, null)
                 .show();
     }
     
-    private void deleteLocation(Location location, int position) {
+    private void deleteLocation(Location location) {
         galleryViewModel.setIsLoading(true);
         
-        new Thread(() -> {
-            try {
-                SupabaseClient client = SupabaseClient.getInstance(requireContext());
-                boolean success = client.deleteLocation(location.getId());
-                
-                requireActivity().runOnUiThread(() -> {
-                    if (success) {
-                        // Obter a lista atual de localizações
-                        List<Location> locations = galleryViewModel.getLocations().getValue();
-                        if (locations != null && position >= 0 && position < locations.size()) {
-                            // Criar uma nova lista sem a localização removida
-                            List<Location> updatedLocations = new ArrayList<>(locations);
-                            updatedLocations.remove(position);
-                            
-                            // Atualizar o ViewModel com a nova lista
-                            galleryViewModel.setLocations(updatedLocations);
-                            
-                            // Atualizar o adaptador
-                            locationAdapter.updateLocations(updatedLocations);
-                            
-                            Toast.makeText(getContext(), R.string.location_deleted, Toast.LENGTH_SHORT).show();
-                        }
-                    } else {
-                        Toast.makeText(getContext(), R.string.error_deleting_location, Toast.LENGTH_SHORT).show();
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        pendingTasks.add(client.deleteLocationAsync(location.getId(), new SupabaseClient.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean success) {
+                if (success) {
+                    // Pelo ID: a lista pode ter mudado (paginação, tempo real) desde o clique
+                    List<Location> locations = currentLocations();
+                    int index = indexOf(locations, location.getId());
+                    if (index >= 0) {
+                        locations.remove(index);
+                        galleryViewModel.setLocations(locations);
                     }
-                    galleryViewModel.setIsLoading(false);
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                requireActivity().runOnUiThread(() -> {
+                    Toast.makeText(getContext(), R.string.location_deleted, Toast.LENGTH_SHORT).show();
+                } else {
                     Toast.makeText(getContext(), R.string.error_deleting_location, Toast.LENGTH_SHORT).show();
-                    galleryViewModel.setIsLoading(false);
-                });
+                }
+                galleryViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao excluir a localização", e);
+                Toast.makeText(getContext(), R.string.error_deleting_location, Toast.LENGTH_SHORT).show();
+                galleryViewModel.setIsLoading(false);
             }
-        }).start();
+        }));
+    }
+
+    /**
+     * Relê o resumo das fotos de uma localização exibida na cópia local, que o
+     * tempo real já atualizou (a galeria não carrega as fotos)
+     */
+    private void refreshPhotoSummary(String locationId) {
+        if (locationId == null || indexOf(currentLocations(), locationId) < 0) {
+            return;
+        }
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        pendingTasks.add(client.getCachedLocationSummaryAsync(locationId, new SupabaseClient.Callback<Location>() {
+            @Override
+            public void onSuccess(Location summary) {
+                List<Location> locations = currentLocations();
+                int index = indexOf(locations, locationId);
+                if (summary != null && index >= 0) {
+                    Location location = new Location(locations.get(index));
+                    location.setPhotoCount(summary.getPhotoCount());
+                    location.setCoverPhotoUrl(summary.getCoverPhotoUrl());
+                    location.setLastPhotoAt(summary.getLastPhotoAt());
+                    locations.set(index, location);
+                    galleryViewModel.setLocations(locations);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao ler o resumo das fotos da localização", e);
+            }
+        }));
+    }
+
+    private List<Location> currentLocations() {
+        List<Location> locations = galleryViewModel.getLocations().getValue();
+        return locations != null ? new ArrayList<>(locations) : new ArrayList<>();
+    }
+
+    private static int indexOf(List<Location> locations, String locationId) {
+        for (int i = 0; i < locations.size(); i++) {
+            if (locations.get(i).getId().equals(locationId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Se a localização a vem antes de b na galeria (mais recentes primeiro)
+     */
+    private static boolean comesBefore(Location a, Location b) {
+        if (a.getCreatedAt() == null || b.getCreatedAt() == null) {
+            return b.getCreatedAt() == null && a.getCreatedAt() != null;
+        }
+        int byDate = a.getCreatedAt().compareTo(b.getCreatedAt());
+        return byDate != 0 ? byDate > 0 : a.getId().compareTo(b.getId()) > 0;
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        SupabaseClient.getInstance(requireContext()).getRealtime().removeListener(realtimeListener);
+        if (actionMode != null) {
+            actionMode.finish();
+        }
+        // Cancelar as operações pendentes para não atualizar uma view destruída
+        for (SupabaseTask task : pendingTasks) {
+            task.cancel();
+        }
+        pendingTasks.clear();
         binding = null;
     }
 }
\ No newline at end of file
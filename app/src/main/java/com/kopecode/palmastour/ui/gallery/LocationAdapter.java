@@ -1,16 +1,21 @@
 package com.kopecode.palmastour.ui.gallery;
 
 import android.app.AlertDialog;
+import android.content.res.ColorStateList;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
 import com.kopecode.palmastour.R;
 import com.kopecode.palmastour.data.SupabaseClient;
 import com.kopecode.palmastour.model.Location;
@@ -18,8 +23,10 @@ import com.kopecode.palmastour.model.Location;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.LocationViewHolder> {
 
@@ -28,9 +35,13 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
 
     public interface OnLocationClickListener {
         void onLocationClick(Location location);
+        void onLocationLongClick(Location location);
         void onDeleteLocationClick(Location location, int position);
     }
 
+    // IDs das localizações marcadas na seleção múltipla
+    private Set<String> selectedIds = new HashSet<>();
+
     public LocationAdapter(List<Location> locations, OnLocationClickListener listener) {
         this.locations = locations;
         this.listener = listener;
@@ -41,6 +52,14 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
         notifyDataSetChanged();
     }
     
+    /**
+     * Destaca as localizações selecionadas
+     */
+    public void setSelectedIds(Set<String> selectedIds) {
+        this.selectedIds = selectedIds;
+        notifyDataSetChanged();
+    }
+
     public void removeLocation(int position) {
         if (position >= 0 && position < locations.size()) {
             locations.remove(position);
@@ -60,7 +79,7 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
     @Override
     public void onBindViewHolder(@NonNull LocationViewHolder holder, int position) {
         Location location = locations.get(position);
-        holder.bind(location, listener, position);
+        holder.bind(location, listener, position, selectedIds.contains(location.getId()));
     }
 
     @Override
@@ -73,7 +92,11 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
         private final TextView textDate;
         private final TextView textCoordinates;
         private final TextView textPhotoCount;
+        private final TextView textLastPhoto;
+        private final ImageView imageCover;
         private final Button buttonDelete;
+        private final CardView card;
+        private final ColorStateList defaultCardColor;
 
         public LocationViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -81,11 +104,21 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
             textDate = itemView.findViewById(R.id.text_location_date);
             textCoordinates = itemView.findViewById(R.id.text_location_coordinates);
             textPhotoCount = itemView.findViewById(R.id.text_photos_count);
+            textLastPhoto = itemView.findViewById(R.id.text_last_photo);
+            imageCover = itemView.findViewById(R.id.image_cover);
             buttonDelete = itemView.findViewById(R.id.button_delete_location);
+            card = (CardView) itemView;
+            defaultCardColor = card.getCardBackgroundColor();
         }
 
-        public void bind(final Location location, final OnLocationClickListener listener, final int position) {
+        public void bind(final Location location, final OnLocationClickListener listener, final int position,
+                         boolean selected) {
             textName.setText(location.getName());
+            if (selected) {
+                card.setCardBackgroundColor(ContextCompat.getColor(itemView.getContext(), R.color.selected_item));
+            } else {
+                card.setCardBackgroundColor(defaultCardColor);
+            }
             
             // Formatar a data
             SimpleDateFormat outputFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
@@ -102,10 +135,34 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
             textCoordinates.setText(coordinates);
             
             // Contar fotos
-            int photoCount = location.getPhotos() != null ? location.getPhotos().size() : 0;
+            int photoCount = location.getPhotoCount();
             textPhotoCount.setText(String.format(Locale.getDefault(), 
                     "Fotos: %d", photoCount));
             
+            // Data da foto mais recente
+            Date lastPhotoAt = location.getLastPhotoAt();
+            if (lastPhotoAt != null) {
+                textLastPhoto.setText(itemView.getContext().getString(R.string.last_photo_at,
+                        outputFormat.format(lastPhotoAt)));
+                textLastPhoto.setVisibility(View.VISIBLE);
+            } else {
+                textLastPhoto.setVisibility(View.GONE);
+            }
+            
+            // Capa: a miniatura da primeira foto
+            String coverUrl = location.getCoverPhotoUrl();
+            if (coverUrl != null && !coverUrl.isEmpty()) {
+                Glide.with(itemView.getContext())
+                        .load(coverUrl)
+                        .placeholder(R.drawable.ic_menu_gallery)
+                        .error(R.drawable.ic_menu_gallery)
+                        .centerCrop()
+                        .into(imageCover);
+            } else {
+                Glide.with(itemView.getContext()).clear(imageCover);
+                imageCover.setImageResource(R.drawable.ic_menu_gallery);
+            }
+            
             // Configurar o clique no item
             itemView.setOnClickListener(v -> {
                 if (listener != null) {
@@ -113,6 +170,14 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
                 }
             });
             
+            // Toque longo inicia a seleção múltipla
+            itemView.setOnLongClickListener(v -> {
+                if (listener != null) {
+                    listener.onLocationLongClick(location);
+                }
+                return true;
+            });
+            
             // Configurar o clique no botão de exclusão
             buttonDelete.setOnClickListener(v -> {
                 if (listener != null) {
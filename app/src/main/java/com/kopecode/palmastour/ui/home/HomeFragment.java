@@ -5,8 +5,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -36,6 +34,7 @@ import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.kopecode.palmastour.R;
+import com.kopecode.palmastour.data.IsoDates;
 import com.kopecode.palmastour.data.SupabaseClient;
 import com.kopecode.palmastour.databinding.FragmentHomeBinding;
 import com.kopecode.palmastour.model.Location;
@@ -365,23 +364,14 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
             return;
         }
         
-        // Verificar conectividade de rede
-        ConnectivityManager connectivityManager = (ConnectivityManager) requireContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
-        boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-        
-        if (!isConnected) {
-            Toast.makeText(getContext(), "Sem conexão com a internet. Verifique sua conexão e tente novamente.", Toast.LENGTH_LONG).show();
-            return;
-        }
-        
         // Indicar que o processo de salvamento começou
         homeViewModel.setIsSaving(true);
-        Toast.makeText(getContext(), "Iniciando salvamento...", Toast.LENGTH_SHORT).show();
 
         // Preparar dados para salvar no Supabase
-        String timeStamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.getDefault()).format(new Date());
-        String locationName = "Localização " + timeStamp;
+        Date now = new Date();
+        String timeStamp = IsoDates.format(now);
+        // O nome continua mostrando a hora local do aparelho
+        String locationName = "Localização " + new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.getDefault()).format(now);
         
         Log.d("PalmasTour", "Timestamp gerado: " + timeStamp);
 
@@ -396,210 +386,65 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
         // Log para debug
         Log.d("PalmasTour", "Tentando salvar localização: " + location.getId() + ", lat: " + location.getLatitude() + ", lng: " + location.getLongitude());
 
-        // Salva a localização e as fotos em uma thread separada
-        new Thread(() -> {
-            try {
-                // Obtém a instância do cliente Supabase
-                SupabaseClient client = SupabaseClient.getInstance(requireContext());
-                
-                // Tenta salvar a localização
-                Log.d("PalmasTour", "Enviando requisição para salvar localização");
-                boolean locationSaved = client.saveLocation(location);
-                Log.d("PalmasTour", "Resultado do salvamento da localização: " + locationSaved);
+        // Grava o trabalho no aparelho e o coloca na fila de envio: o salvamento termina
+        // na hora, mesmo sem conexão, e as fotos são enviadas em segundo plano
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        Context appContext = requireContext().getApplicationContext();
+        final int totalPhotos = photosPaths.size();
+        
+        // Monta as fotos a partir dos arquivos capturados
+        List<Photo> photos = new ArrayList<>();
+        for (String photoPath : photosPaths) {
+            if (new File(photoPath).exists()) {
+                String photoTimestamp = IsoDates.format(new Date());
+                photos.add(new Photo(
+                        location.getId(),
+                        photoPath,
+                        photoTimestamp,
+                        "Foto da localização"
+                ));
+            } else {
+                Log.e("PalmasTour", "Arquivo de foto não encontrado: " + photoPath);
+                Toast.makeText(appContext, "Arquivo de foto não encontrado: " + photoPath, Toast.LENGTH_SHORT).show();
+            }
+        }
+        
+        if (photos.isEmpty()) {
+            homeViewModel.setIsSaving(false);
+            return;
+        }
+        
+        client.queueWorkAsync(location, photos, new SupabaseClient.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer savedCount) {
+                Log.d("PalmasTour", "Trabalho salvo na localização " + location.getId() + " com " + savedCount + " fotos");
+                String message = String.format("Trabalho salvo! %d/%d fotos serão enviadas em segundo plano.", savedCount, totalPhotos);
+                Toast.makeText(appContext, message, Toast.LENGTH_LONG).show();
                 
-                if (locationSaved) {
-                    try {
-                        // Aguarda um momento para garantir que a localização foi salva no servidor
-                        // Aumentando o tempo de espera para garantir que a localização seja registrada no servidor
-                        Log.d("PalmasTour", "Aguardando sincronização com o servidor...");
-                        Thread.sleep(3000);
-                        
-                        // Obtém o ID da localização após salvar
-                        Log.d("PalmasTour", "Buscando localizações para encontrar a recém-salva");
-                        List<Location> locations = client.getLocations();
-                        Log.d("PalmasTour", "Número de localizações encontradas: " + locations.size());
-                        
-                        Location savedLocation = null;
-                        
-                        // Procura a localização recém-salva (a mais recente com as mesmas coordenadas)
-                        // Aumentando a margem de erro para comparação de coordenadas
-                        double errorMargin = 0.0001; // Margem de erro maior para comparação de coordenadas
-                        
-                        // Ordenar localizações por data de criação (mais recentes primeiro)
-                        locations.sort((loc1, loc2) -> {
-                            try {
-                                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.getDefault());
-                                Date date1 = loc1.getCreatedAt();
-                                Date date2 = loc2.getCreatedAt();
-                                return date2.compareTo(date1); // Ordem decrescente (mais recente primeiro)
-                            } catch (Exception e) {
-                                return 0;
-                            }
-                        });
-                        
-                        for (Location loc : locations) {
-                            Log.d("PalmasTour", "Verificando localização: " + loc.getId() + ", lat: " + loc.getLatitude() + ", lng: " + loc.getLongitude() + ", data: " + loc.getCreatedAt());
-                            
-                            // Compara as coordenadas com uma margem de erro
-                            if (Math.abs(loc.getLatitude() - location.getLatitude()) < errorMargin && 
-                                Math.abs(loc.getLongitude() - location.getLongitude()) < errorMargin) {
-                                // Encontrou a localização salva
-                                savedLocation = loc;
-                                Log.d("PalmasTour", "Localização encontrada com ID: " + loc.getId());
-                                break;
-                            }
-                        }
-                        
-                        if (savedLocation != null) {
-                            final String locationId = savedLocation.getId();
-                            Log.d("PalmasTour", "Usando locationId: " + locationId + " para salvar fotos");
-                            
-                            // Contador para acompanhar o progresso
-                            final int[] successCount = {0};
-                            final int totalPhotos = photosPaths.size();
-                            
-                            // Salva cada foto com tratamento de erros
-                            for (String photoPath : photosPaths) {
-                                try {
-                                    File photoFile = new File(photoPath);
-                                    if (photoFile.exists()) {
-                                        Log.d("PalmasTour", "Salvando foto: " + photoPath + ", tamanho: " + photoFile.length() + " bytes");
-                                        // Usar o mesmo formato de timestamp para a foto
-                                        String photoTimestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.getDefault()).format(new Date());
-                                        Log.d("PalmasTour", "Timestamp para foto: " + photoTimestamp);
-                                        
-                                        Photo photo = new Photo(
-                                                locationId,
-                                                photoPath,
-                                                photoTimestamp,
-                                                "Foto da localização"
-                                        );
-                                        
-                                        Log.d("PalmasTour", "Criada foto com ID: " + photo.getId() + ", locationId: " + photo.getLocationId());
-                                        boolean photoSaved = client.savePhoto(photo, photoFile);
-                                        if (photoSaved) {
-                                            successCount[0]++;
-                                            Log.d("PalmasTour", "Foto salva com sucesso: " + photoPath);
-                                        } else {
-                                            Log.e("PalmasTour", "Falha ao salvar foto: " + photoPath);
-                                        }
-                                    } else {
-                                        Log.e("PalmasTour", "Arquivo de foto não encontrado: " + photoPath);
-                                        requireActivity().runOnUiThread(() -> {
-                                            Toast.makeText(getContext(), "Arquivo de foto não encontrado: " + photoPath, Toast.LENGTH_SHORT).show();
-                                        });
-                                    }
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                    final String errorMsg = e.getMessage();
-                                    Log.e("PalmasTour", "Erro ao salvar foto: " + errorMsg);
-                                    requireActivity().runOnUiThread(() -> {
-                                        Toast.makeText(getContext(), "Erro ao salvar foto: " + errorMsg, Toast.LENGTH_SHORT).show();
-                                    });
-                                }
-                            }
-                            
-                            // Notifica sucesso na UI thread
-                            final int finalSuccessCount = successCount[0];
-                            requireActivity().runOnUiThread(() -> {
-                                String message = String.format("Trabalho salvo! %d/%d fotos salvas com sucesso.", finalSuccessCount, totalPhotos);
-                                Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
-                                // Limpa os dados após salvar
-                                photosPaths.clear();
-                                updatePhotosCount();
-                                mMap.clear();
-                                homeViewModel.setIsSaving(false);
-                                
-                                // Ocultar os botões após salvar
-                                binding.btnTakePhoto.setVisibility(View.GONE);
-                                binding.btnSaveWork.setVisibility(View.GONE);
-                            });
-                        } else {
-                            // Tenta uma abordagem alternativa: usar o ID da localização que acabamos de criar
-                            Log.d("PalmasTour", "Tentando usar o ID da localização recém-criada: " + location.getId());
-                            final String locationId = location.getId();
-                            
-                            // Contador para acompanhar o progresso
-                            final int[] successCount = {0};
-                            final int totalPhotos = photosPaths.size();
-                            
-                            // Salva cada foto com tratamento de erros
-                            for (String photoPath : photosPaths) {
-                                try {
-                                    File photoFile = new File(photoPath);
-                                    if (photoFile.exists()) {
-                                        Log.d("PalmasTour", "Salvando foto com ID alternativo: " + photoPath);
-                                        Photo photo = new Photo(
-                                                locationId,
-                                                photoPath,
-                                                timeStamp,
-                                                "Foto da localização"
-                                        );
-                                        boolean photoSaved = client.savePhoto(photo, photoFile);
-                                        if (photoSaved) {
-                                            successCount[0]++;
-                                            Log.d("PalmasTour", "Foto salva com sucesso usando ID alternativo: " + photoPath);
-                                        } else {
-                                            Log.e("PalmasTour", "Falha ao salvar foto com ID alternativo: " + photoPath);
-                                        }
-                                    } else {
-                                        Log.e("PalmasTour", "Arquivo de foto não encontrado: " + photoPath);
-                                        requireActivity().runOnUiThread(() -> {
-                                            Toast.makeText(getContext(), "Arquivo de foto não encontrado: " + photoPath, Toast.LENGTH_SHORT).show();
-                                        });
-                                    }
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                    final String errorMsg = e.getMessage();
-                                    Log.e("PalmasTour", "Erro ao salvar foto com ID alternativo: " + errorMsg);
-                                    requireActivity().runOnUiThread(() -> {
-                                        Toast.makeText(getContext(), "Erro ao salvar foto: " + errorMsg, Toast.LENGTH_SHORT).show();
-                                    });
-                                }
-                            }
-                            
-                            // Notifica sucesso na UI thread
-                            final int finalSuccessCount = successCount[0];
-                            requireActivity().runOnUiThread(() -> {
-                                if (finalSuccessCount > 0) {
-                                    String message = String.format("Trabalho salvo! %d/%d fotos salvas com sucesso.", finalSuccessCount, totalPhotos);
-                                    Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
-                                    // Limpa os dados após salvar
-                                    photosPaths.clear();
-                                    updatePhotosCount();
-                                    mMap.clear();
-                                } else {
-                                    Toast.makeText(getContext(), "Localização salva, mas não foi possível salvar as fotos. Tente novamente.", Toast.LENGTH_LONG).show();
-                                }
-                                homeViewModel.setIsSaving(false);
-                            });
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        final String errorMsg = e.getMessage();
-                        Log.e("PalmasTour", "Erro ao recuperar localização: " + errorMsg);
-                        requireActivity().runOnUiThread(() -> {
-                            Toast.makeText(getContext(), "Erro ao recuperar localização: " + errorMsg, Toast.LENGTH_LONG).show();
-                            homeViewModel.setIsSaving(false);
-                        });
-                    }
-                } else {
-                    Log.e("PalmasTour", "Falha ao salvar localização");
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Erro ao salvar localização. Verifique sua conexão com a internet e tente novamente.", Toast.LENGTH_LONG).show();
-                        homeViewModel.setIsSaving(false);
-                    });
+                // A view pode ter sido destruída durante o salvamento
+                if (binding == null) {
+                    return;
                 }
-            } catch (Exception e) {
+                
+                // Limpa os dados após salvar
+                photosPaths.clear();
+                updatePhotosCount();
+                mMap.clear();
+                homeViewModel.setIsSaving(false);
+                
+                // Ocultar os botões após salvar
+                binding.btnTakePhoto.setVisibility(View.GONE);
+                binding.btnSaveWork.setVisibility(View.GONE);
+            }
+
+            @Override
+            public void onError(Exception e) {
                 e.printStackTrace();
-                final String errorMsg = e.getMessage();
-                Log.e("PalmasTour", "Erro durante o salvamento: " + errorMsg);
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(getContext(), "Erro durante o salvamento: " + errorMsg, Toast.LENGTH_LONG).show();
-                    homeViewModel.setIsSaving(false);
-                });
+                Log.e("PalmasTour", "Erro durante o salvamento: " + e.getMessage());
+                Toast.makeText(appContext, e.getMessage(), Toast.LENGTH_LONG).show();
+                homeViewModel.setIsSaving(false);
             }
-        }).start();
+        });
     }
 
     @Override
@@ -1,6 +1,8 @@
 package com.kopecode.palmastour.ui.slideshow;
 
 import android.app.AlertDialog;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,8 +16,10 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.kopecode.palmastour.R;
 import com.kopecode.palmastour.data.SupabaseClient;
+import com.kopecode.palmastour.data.SupabaseTask;
 import com.kopecode.palmastour.model.Photo;
 import com.kopecode.palmastour.ui.slideshow.SlideshowViewModel;
 
@@ -27,8 +31,11 @@ import java.util.Locale;
 
 public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHolder> {
 
+    private static final String TAG = "PhotoAdapter";
+
     private List<Photo> photos;
     private SlideshowViewModel viewModel;
+    private final List<SupabaseTask> pendingTasks = new ArrayList<>();
 
     public PhotoAdapter(List<Photo> photos) {
         this.photos = photos;
@@ -49,6 +56,16 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         return photos;
     }
     
+    /**
+     * Cancela as exclusões e edições ainda em andamento
+     */
+    public void cancelPendingTasks() {
+        for (SupabaseTask task : pendingTasks) {
+            task.cancel();
+        }
+        pendingTasks.clear();
+    }
+    
     public void removePhoto(int position) {
         if (position >= 0 && position < photos.size()) {
             photos.remove(position);
@@ -66,7 +83,7 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
     public PhotoViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_photo, parent, false);
-        return new PhotoViewHolder(view);
+        return new PhotoViewHolder(view, pendingTasks);
     }
 
     @Override
@@ -86,9 +103,11 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         private final TextView textDescription;
         private final Button btnEditPhoto;
         private final Button btnDeletePhoto;
+        private final List<SupabaseTask> pendingTasks;
 
-        public PhotoViewHolder(@NonNull View itemView) {
+        public PhotoViewHolder(@NonNull View itemView, List<SupabaseTask> pendingTasks) {
             super(itemView);
+            this.pendingTasks = pendingTasks;
             imagePhoto = itemView.findViewById(R.id.image_photo);
             textDate = itemView.findViewById(R.id.text_photo_date);
             textDescription = itemView.findViewById(R.id.text_photo_description);
@@ -98,7 +117,15 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
 
         public void bind(final Photo photo) {
             // Carregar a imagem usando Glide
-            if (photo.getStorageUrl() != null && !photo.getStorageUrl().isEmpty()) {
+            if (photo.getThumbnailUrl() != null && !photo.getThumbnailUrl().isEmpty()) {
+                // A grade usa a miniatura; a foto original só é baixada ao tocar nela
+                Glide.with(itemView.getContext())
+                        .load(photo.getThumbnailUrl())
+                        .placeholder(R.drawable.ic_menu_gallery)
+                        .error(R.drawable.ic_menu_gallery)
+                        .centerCrop()
+                        .into(imagePhoto);
+            } else if (photo.getStorageUrl() != null && !photo.getStorageUrl().isEmpty()) {
                 // Se tiver URL de armazenamento, carrega da URL
                 Glide.with(itemView.getContext())
                         .load(photo.getStorageUrl())
@@ -134,6 +161,9 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
             // Definir a descrição
             textDescription.setText(photo.getDescription());
             
+            // Abrir a foto original ao tocar na imagem
+            imagePhoto.setOnClickListener(v -> showOriginalDialog(photo));
+            
             // Configurar o botão de edição
             btnEditPhoto.setOnClickListener(v -> showEditDialog(photo));
             
@@ -141,6 +171,34 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
             btnDeletePhoto.setOnClickListener(v -> showDeleteConfirmationDialog(photo));
         }
         
+        private void showOriginalDialog(final Photo photo) {
+            Object source = photo.getStorageUrl() != null && !photo.getStorageUrl().isEmpty()
+                    ? photo.getStorageUrl()
+                    : photo.getFilePath();
+            if (source == null || source.toString().isEmpty()) {
+                return;
+            }
+            
+            ImageView imageView = new ImageView(itemView.getContext());
+            imageView.setAdjustViewBounds(true);
+            imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+            
+            RequestBuilder<Drawable> request = Glide.with(itemView.getContext())
+                    .load(source)
+                    .error(R.drawable.ic_menu_gallery)
+                    .fitCenter();
+            if (photo.getThumbnailUrl() != null && !photo.getThumbnailUrl().isEmpty()) {
+                // A miniatura já carregada é exibida enquanto a original é baixada
+                request = request.thumbnail(Glide.with(itemView.getContext()).load(photo.getThumbnailUrl()));
+            }
+            request.into(imageView);
+            
+            AlertDialog.Builder builder = new AlertDialog.Builder(itemView.getContext());
+            builder.setView(imageView);
+            builder.setPositiveButton(android.R.string.ok, (dialog, which) -> dialog.dismiss());
+            builder.show();
+        }
+        
         private void showDeleteConfirmationDialog(final Photo photo) {
             AlertDialog.Builder builder = new AlertDialog.Builder(itemView.getContext());
             builder.setTitle(R.string.confirm_delete_title);
@@ -156,41 +214,38 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         }
         
         private void deletePhoto(final Photo photo) {
-            // Iniciar uma thread para excluir a foto no Supabase
-            new Thread(() -> {
-                try {
-                    SupabaseClient client = SupabaseClient.getInstance(itemView.getContext());
-                    boolean success = client.deletePhoto(photo.getId());
-                    
-                    // Atualizar a UI na thread principal
-                    ((android.app.Activity) itemView.getContext()).runOnUiThread(() -> {
-                        if (success) {
-                            // Remover a foto da lista e notificar o adaptador
-                            int position = getAdapterPosition();
-                            if (position != RecyclerView.NO_POSITION) {
-                                // Remover a foto da lista
-                                RecyclerView recyclerView = (RecyclerView) itemView.getParent();
-                                if (recyclerView != null) {
-                                    RecyclerView.Adapter adapter = recyclerView.getAdapter();
-                                    if (adapter instanceof PhotoAdapter) {
-                                        PhotoAdapter photoAdapter = (PhotoAdapter) adapter;
-                                        photoAdapter.removePhoto(position);
-                                    }
+            // Excluir a foto no Supabase em segundo plano
+            SupabaseClient client = SupabaseClient.getInstance(itemView.getContext());
+            pendingTasks.add(client.deletePhotoAsync(photo.getId(), new SupabaseClient.Callback<Boolean>() {
+                @Override
+                public void onSuccess(Boolean success) {
+                    if (success) {
+                        // Remover a foto da lista e notificar o adaptador
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION) {
+                            // Remover a foto da lista
+                            RecyclerView recyclerView = (RecyclerView) itemView.getParent();
+                            if (recyclerView != null) {
+                                RecyclerView.Adapter adapter = recyclerView.getAdapter();
+                                if (adapter instanceof PhotoAdapter) {
+                                    PhotoAdapter photoAdapter = (PhotoAdapter) adapter;
+                                    photoAdapter.removePhoto(position);
                                 }
-                                
-                                Toast.makeText(itemView.getContext(), R.string.photo_deleted, Toast.LENGTH_SHORT).show();
                             }
-                        } else {
-                            Toast.makeText(itemView.getContext(), R.string.error_deleting_photo, Toast.LENGTH_SHORT).show();
+                            
+                            Toast.makeText(itemView.getContext(), R.string.photo_deleted, Toast.LENGTH_SHORT).show();
                         }
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    ((android.app.Activity) itemView.getContext()).runOnUiThread(() -> {
+                    } else {
                         Toast.makeText(itemView.getContext(), R.string.error_deleting_photo, Toast.LENGTH_SHORT).show();
-                    });
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Log.e(TAG, "Erro ao excluir foto", e);
+                    Toast.makeText(itemView.getContext(), R.string.error_deleting_photo, Toast.LENGTH_SHORT).show();
                 }
-            }).start();
+            }));
         }
         
         private void showEditDialog(final Photo photo) {
@@ -218,26 +273,23 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
             textDescription.setText(newDescription);
             
             // Atualizar no Supabase
-            new Thread(() -> {
-                try {
-                    SupabaseClient client = SupabaseClient.getInstance(itemView.getContext());
-                    boolean success = client.updatePhoto(photo);
-                    
-                    // Atualizar a UI na thread principal
-                    ((android.app.Activity) itemView.getContext()).runOnUiThread(() -> {
-                        if (success) {
-                            Toast.makeText(itemView.getContext(), R.string.photo_description_updated, Toast.LENGTH_SHORT).show();
-                        } else {
-                            Toast.makeText(itemView.getContext(), R.string.error_updating_photo_description, Toast.LENGTH_SHORT).show();
-                        }
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    ((android.app.Activity) itemView.getContext()).runOnUiThread(() -> {
-                        Toast.makeText(itemView.getContext(), itemView.getContext().getString(R.string.error_updating_photo_description) + ": " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
+            SupabaseClient client = SupabaseClient.getInstance(itemView.getContext());
+            pendingTasks.add(client.updatePhotoAsync(photo, new SupabaseClient.Callback<Boolean>() {
+                @Override
+                public void onSuccess(Boolean success) {
+                    if (success) {
+                        Toast.makeText(itemView.getContext(), R.string.photo_description_updated, Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(itemView.getContext(), R.string.error_updating_photo_description, Toast.LENGTH_SHORT).show();
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Log.e(TAG, "Erro ao atualizar descrição da foto", e);
+                    Toast.makeText(itemView.getContext(), itemView.getContext().getString(R.string.error_updating_photo_description) + ": " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 }
-            }).start();
+            }));
         }
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.kopecode.palmastour.ui.slideshow;
 
 import android.app.AlertDialog;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,21 +15,96 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.GridLayoutManager;
 
 import com.kopecode.palmastour.R;
+import com.kopecode.palmastour.data.Page;
+import com.kopecode.palmastour.data.PageCursor;
+import com.kopecode.palmastour.data.RealtimeService;
 import com.kopecode.palmastour.data.SupabaseClient;
+import com.kopecode.palmastour.data.SupabaseTask;
+import com.kopecode.palmastour.data.SyncResult;
 import com.kopecode.palmastour.databinding.FragmentSlideshowBinding;
 import com.kopecode.palmastour.model.Location;
 import com.kopecode.palmastour.model.Photo;
+import com.kopecode.palmastour.ui.PagingScrollListener;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class SlideshowFragment extends Fragment {
 
+    private static final String TAG = "SlideshowFragment";
+
     private FragmentSlideshowBinding binding;
     private SlideshowViewModel slideshowViewModel;
     private PhotoAdapter photoAdapter;
     private String locationId;
     private String locationName;
+    private final List<SupabaseTask> pendingTasks = new ArrayList<>();
+    // Paginação: cursor da próxima página (null se não houver mais) e se uma página está sendo carregada
+    private static final int PREFETCH_DISTANCE = 6;
+    private PageCursor nextCursor;
+    private boolean loadingPage;
+    // Se a cópia local foi sincronizada nesta abertura da tela
+    private boolean synced;
+    
+    // Aplica na grade as alterações recebidas em tempo real
+    private final RealtimeService.Listener realtimeListener = new RealtimeService.Listener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            if (location.getId().equals(locationId) && location.getName() != null
+                    && !location.getName().equals(locationName)) {
+                locationName = location.getName();
+                slideshowViewModel.setLocationName(locationName);
+            }
+        }
+
+        @Override
+        public void onLocationDeleted(String deletedLocationId) {
+            if (deletedLocationId.equals(locationId)) {
+                nextCursor = null;
+                slideshowViewModel.setPhotos(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void onPhotoChanged(Photo photo) {
+            if (!photo.getLocationId().equals(locationId)) {
+                return;
+            }
+            List<Photo> photos = currentPhotos();
+            int index = indexOf(photos, photo.getId());
+            if (index >= 0) {
+                photos.set(index, photo);
+            } else {
+                int position = photos.size();
+                while (position > 0 && comesBefore(photo, photos.get(position - 1))) {
+                    position--;
+                }
+                // Depois da última página carregada: aparecerá ao rolar
+                if (position == photos.size() && nextCursor != null) {
+                    return;
+                }
+                photos.add(position, photo);
+            }
+            slideshowViewModel.setPhotos(photos);
+        }
+
+        @Override
+        public void onPhotoDeleted(String photoId, String photoLocationId) {
+            List<Photo> photos = currentPhotos();
+            int index = indexOf(photos, photoId);
+            if (index >= 0) {
+                photos.remove(index);
+                slideshowViewModel.setPhotos(photos);
+            }
+        }
+
+        @Override
+        public void onResync() {
+            if (binding != null && !loadingPage && locationId != null) {
+                loadLocalFirstPage();
+            }
+        }
+    };
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
@@ -60,6 +136,22 @@ public class SlideshowFragment extends Fragment {
         binding.recyclerPhotos.setLayoutManager(new GridLayoutManager(getContext(), 2));
         photoAdapter = new PhotoAdapter(new ArrayList<>(), slideshowViewModel);
         binding.recyclerPhotos.setAdapter(photoAdapter);
+        binding.recyclerPhotos.addOnScrollListener(new PagingScrollListener(PREFETCH_DISTANCE) {
+            @Override
+            protected boolean isLoading() {
+                return loadingPage;
+            }
+
+            @Override
+            protected boolean hasMore() {
+                return nextCursor != null;
+            }
+
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        });
 
         // Observar mudanças na lista de fotos
         slideshowViewModel.getPhotos().observe(getViewLifecycleOwner(), photos -> {
@@ -72,9 +164,10 @@ public class SlideshowFragment extends Fragment {
             binding.progressLoading.setVisibility(isLoading ? View.VISIBLE : View.GONE);
         });
 
-        // Carregar fotos
+        // Carregar fotos e acompanhar as alterações de outros aparelhos
         if (locationId != null) {
             loadPhotos(locationId);
+            SupabaseClient.getInstance(requireContext()).getRealtime().addListener(realtimeListener);
         }
 
         return root;
@@ -83,23 +176,166 @@ public class SlideshowFragment extends Fragment {
     private void loadPhotos(String locationId) {
         slideshowViewModel.setIsLoading(true);
         
-        new Thread(() -> {
-            try {
-                SupabaseClient client = SupabaseClient.getInstance(requireContext());
-                List<Photo> photos = client.getPhotosByLocation(locationId);
-                
-                requireActivity().runOnUiThread(() -> {
-                    slideshowViewModel.setPhotos(photos);
-                    slideshowViewModel.setIsLoading(false);
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(getContext(), R.string.error_loading_photos, Toast.LENGTH_SHORT).show();
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        
+        // Com o tempo real conectado, a cópia local já está em dia e não é preciso consultar o servidor
+        if (client.getRealtime().isLive()) {
+            synced = true;
+            loadLocalFirstPage();
+            return;
+        }
+        
+        // Exibir imediatamente a primeira página da cópia local enquanto ela é atualizada pela rede
+        final boolean[] refreshed = {false};
+        final boolean[] showingCached = {false};
+        nextCursor = null;
+        loadingPage = true;
+        pendingTasks.add(client.getCachedPhotosPageAsync(locationId, null, new SupabaseClient.Callback<Page<Photo>>() {
+            @Override
+            public void onSuccess(Page<Photo> page) {
+                if (!refreshed[0] && !page.getItems().isEmpty()) {
+                    showingCached[0] = true;
+                    slideshowViewModel.setPhotos(page.getItems());
                     slideshowViewModel.setIsLoading(false);
-                });
+                }
             }
-        }).start();
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao ler fotos em cache", e);
+            }
+        }));
+        
+        // Com a sincronização incremental, a cópia local fica completa e as páginas vêm dela;
+        // se a sincronização falhar, as páginas são buscadas direto no servidor
+        synced = false;
+        pendingTasks.add(client.syncAsync(new SupabaseClient.Callback<SyncResult>() {
+            @Override
+            public void onSuccess(SyncResult result) {
+                synced = true;
+                refreshed[0] = true;
+                loadLocalFirstPage();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao sincronizar fotos do local", e);
+                pendingTasks.add(client.getPhotosPageAsync(locationId, null, new SupabaseClient.Callback<Page<Photo>>() {
+                    @Override
+                    public void onSuccess(Page<Photo> page) {
+                        refreshed[0] = true;
+                        slideshowViewModel.setPhotos(page.getItems());
+                        nextCursor = page.getNextCursor();
+                        loadingPage = false;
+                        slideshowViewModel.setIsLoading(false);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "Erro ao carregar primeira página de fotos", e);
+                        refreshed[0] = true;
+                        // Sem rede, as fotos locais continuam na tela e as próximas páginas também vêm delas
+                        if (!showingCached[0]) {
+                            Toast.makeText(getContext(), R.string.error_loading_photos, Toast.LENGTH_SHORT).show();
+                        }
+                        pendingTasks.add(client.getCachedPhotosPageAsync(locationId, null, new SupabaseClient.Callback<Page<Photo>>() {
+                            @Override
+                            public void onSuccess(Page<Photo> page) {
+                                if (!page.getItems().isEmpty()) {
+                                    slideshowViewModel.setPhotos(page.getItems());
+                                }
+                                nextCursor = page.getNextCursor();
+                                loadingPage = false;
+                                slideshowViewModel.setIsLoading(false);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                Log.e(TAG, "Erro ao ler fotos em cache após falha de rede", e);
+                                loadingPage = false;
+                                slideshowViewModel.setIsLoading(false);
+                            }
+                        }));
+                    }
+                }));
+            }
+        }));
+    }
+
+    /**
+     * Exibe a primeira página de fotos da cópia local, já sincronizada
+     */
+    private void loadLocalFirstPage() {
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        loadingPage = true;
+        pendingTasks.add(client.getCachedPhotosPageAsync(locationId, null, new SupabaseClient.Callback<Page<Photo>>() {
+            @Override
+            public void onSuccess(Page<Photo> page) {
+                slideshowViewModel.setPhotos(page.getItems());
+                nextCursor = page.getNextCursor();
+                loadingPage = false;
+                slideshowViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao recarregar fotos locais", e);
+                loadingPage = false;
+                slideshowViewModel.setIsLoading(false);
+            }
+        }));
+    }
+
+    private void loadNextPage() {
+        PageCursor after = nextCursor;
+        if (after == null || locationId == null) {
+            return;
+        }
+        loadingPage = true;
+        slideshowViewModel.setIsLoading(true);
+        
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        SupabaseClient.Callback<Page<Photo>> appendPage = new SupabaseClient.Callback<Page<Photo>>() {
+            @Override
+            public void onSuccess(Page<Photo> page) {
+                List<Photo> photos = new ArrayList<>();
+                if (slideshowViewModel.getPhotos().getValue() != null) {
+                    photos.addAll(slideshowViewModel.getPhotos().getValue());
+                }
+                photos.addAll(page.getItems());
+                slideshowViewModel.setPhotos(photos);
+                nextCursor = page.getNextCursor();
+                loadingPage = false;
+                slideshowViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao carregar página de fotos", e);
+                Toast.makeText(getContext(), R.string.error_loading_photos, Toast.LENGTH_SHORT).show();
+                loadingPage = false;
+                slideshowViewModel.setIsLoading(false);
+            }
+        };
+        
+        if (synced) {
+            pendingTasks.add(client.getCachedPhotosPageAsync(locationId, after, appendPage));
+            return;
+        }
+        
+        pendingTasks.add(client.getPhotosPageAsync(locationId, after, new SupabaseClient.Callback<Page<Photo>>() {
+            @Override
+            public void onSuccess(Page<Photo> page) {
+                appendPage.onSuccess(page);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao carregar próxima página de fotos", e);
+                // Sem rede, continuar pela cópia local
+                pendingTasks.add(client.getCachedPhotosPageAsync(locationId, after, appendPage));
+            }
+        }));
     }
 
     private void updateEmptyView(List<Photo> photos) {
@@ -153,50 +389,77 @@ public class SlideshowFragment extends Fragment {
         // Mostrar um indicador de progresso
         slideshowViewModel.setIsLoading(true);
         
-        new Thread(() -> {
-            try {
-                SupabaseClient client = SupabaseClient.getInstance(requireContext());
-                
-                // Obter a localização atual
-                Location location = client.getLocation(locationId);
-                if (location == null) {
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), R.string.location_not_found, Toast.LENGTH_SHORT).show();
-                        slideshowViewModel.setIsLoading(false);
-                    });
-                    return;
+        SupabaseClient client = SupabaseClient.getInstance(requireContext());
+        pendingTasks.add(client.submit(() -> {
+            // Só o nome é enviado ao servidor (pela fila); a localização só é
+            // buscada se ainda não estiver na cópia local
+            if (client.getOutbox().enqueueRenameLocation(locationId, newName)) {
+                return true;
+            }
+            if (client.getLocation(locationId) == null) {
+                return null;
+            }
+            return client.getOutbox().enqueueRenameLocation(locationId, newName);
+        }, new SupabaseClient.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean success) {
+                if (success == null) {
+                    Toast.makeText(getContext(), R.string.location_not_found, Toast.LENGTH_SHORT).show();
+                } else if (success) {
+                    // Atualizar o nome na UI
+                    locationName = newName;
+                    slideshowViewModel.setLocationName(newName);
+                    Toast.makeText(getContext(), R.string.location_updated, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), R.string.error_updating_location, Toast.LENGTH_SHORT).show();
                 }
-                
-                // Atualizar o nome da localização
-                location.setName(newName);
-                
-                // Salvar a localização atualizada
-                boolean success = client.updateLocation(location);
-                
-                requireActivity().runOnUiThread(() -> {
-                    if (success) {
-                        // Atualizar o nome na UI
-                        locationName = newName;
-                        slideshowViewModel.setLocationName(newName);
-                        Toast.makeText(getContext(), R.string.location_updated, Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(getContext(), R.string.error_updating_location, Toast.LENGTH_SHORT).show();
-                    }
-                    slideshowViewModel.setIsLoading(false);
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(getContext(), getString(R.string.error_updating_location) + ": " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    slideshowViewModel.setIsLoading(false);
-                });
+                slideshowViewModel.setIsLoading(false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Erro ao atualizar local", e);
+                Toast.makeText(getContext(), getString(R.string.error_updating_location) + ": " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                slideshowViewModel.setIsLoading(false);
             }
-        }).start();
+        }));
     }
     
+    private List<Photo> currentPhotos() {
+        List<Photo> photos = slideshowViewModel.getPhotos().getValue();
+        return photos != null ? new ArrayList<>(photos) : new ArrayList<>();
+    }
+
+    private static int indexOf(List<Photo> photos, String photoId) {
+        for (int i = 0; i < photos.size(); i++) {
+            if (photos.get(i).getId().equals(photoId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Se a foto a vem antes de b na grade (mais antigas primeiro)
+     */
+    private static boolean comesBefore(Photo a, Photo b) {
+        if (a.getCreatedAt() == null || b.getCreatedAt() == null) {
+            return a.getCreatedAt() == null && b.getCreatedAt() != null;
+        }
+        int byDate = a.getCreatedAt().compareTo(b.getCreatedAt());
+        return byDate != 0 ? byDate < 0 : a.getId().compareTo(b.getId()) < 0;
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        SupabaseClient.getInstance(requireContext()).getRealtime().removeListener(realtimeListener);
+        // Cancelar as operações pendentes para não atualizar uma view destruída
+        for (SupabaseTask task : pendingTasks) {
+            task.cancel();
+        }
+        pendingTasks.clear();
+        photoAdapter.cancelPendingTasks();
         binding = null;
     }
 }
\ No newline at end of file
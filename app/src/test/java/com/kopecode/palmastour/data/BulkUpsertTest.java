@@ -0,0 +1,233 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.kopecode.palmastour.model.Photo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Divisão dos lotes do {@link BulkUpsert} e tratamento das recusas, contra um
+ * PostgREST simulado.
+ */
+public class BulkUpsertTest {
+    private static final String LOCATION_ID = "0190f5c2-5a3b-7c4d-8e5f-6a7b8c9d0e1f";
+
+    private final Gson gson = ModelTypeAdaptersTest.adapterGson();
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer server;
+    private BulkUpsert<Photo> upsert;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        String supabaseUrl = server.url("/").toString().replaceAll("/$", "");
+        upsert = new BulkUpsert<>(request -> client.newCall(request).execute(), gson, supabaseUrl,
+                "photos", PhotoTypeAdapter.COLUMNS, Photo::getId);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void splitsByRowCount() throws Exception {
+        server.setDispatcher(status(201));
+        List<Photo> photos = photos(BulkUpsert.MAX_ROWS * 2 + 1, 0);
+        BulkResult result = new BulkResult();
+        upsert.upsert(photos, result);
+
+        assertTrue(result.isComplete());
+        assertEquals(ids(photos), result.getSavedIds());
+        assertEquals(3, result.getRequestCount());
+        assertEquals(BulkUpsert.MAX_ROWS, rowsOf(server.takeRequest()).size());
+        assertEquals(BulkUpsert.MAX_ROWS, rowsOf(server.takeRequest()).size());
+        assertEquals(1, rowsOf(server.takeRequest()).size());
+    }
+
+    @Test
+    public void splitsByBodySize() throws Exception {
+        server.setDispatcher(status(201));
+        // Cada linha ocupa um pouco mais que um quinto do limite do corpo
+        List<Photo> photos = photos(9, BulkUpsert.MAX_BODY_CHARS / 5);
+        BulkResult result = new BulkResult();
+        upsert.upsert(photos, result);
+
+        assertTrue(result.isComplete());
+        assertEquals(3, result.getRequestCount());
+        int rows = 0;
+        for (int i = 0; i < 3; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertTrue(request.getBodySize() <= BulkUpsert.MAX_BODY_CHARS);
+            int size = rowsOf(request).size();
+            assertEquals(i < 2 ? 4 : 1, size);
+            rows += size;
+        }
+        assertEquals(photos.size(), rows);
+    }
+
+    @Test
+    public void sendsUpsertByIdWithListedColumns() throws Exception {
+        server.setDispatcher(status(201));
+        upsert.upsert(photos(1, 0), new BulkResult());
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/rest/v1/photos", request.getRequestUrl().encodedPath());
+        assertEquals(PhotoTypeAdapter.COLUMNS, request.getRequestUrl().queryParameter("columns"));
+        assertEquals("id", request.getRequestUrl().queryParameter("on_conflict"));
+        assertTrue(request.getHeader("Prefer").contains("resolution=merge-duplicates"));
+    }
+
+    @Test
+    public void bisectsRejectedRows() {
+        for (int code : new int[]{400, 409, 422}) {
+            List<Photo> photos = photos(8, 0);
+            String rejected = photos.get(5).getId();
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    boolean bad = request.getBody().readUtf8().contains(rejected);
+                    return new MockResponse().setResponseCode(bad ? code : 201);
+                }
+            });
+            BulkResult result = new BulkResult();
+            upsert.upsert(photos, result);
+
+            List<String> expected = ids(photos);
+            expected.remove(rejected);
+            // As metades são enviadas antes de serem divididas, então a ordem muda
+            assertEquals(expected.size(), result.getSavedIds().size());
+            assertEquals(new HashSet<>(expected), new HashSet<>(result.getSavedIds()));
+            assertEquals(Arrays.asList(rejected), new ArrayList<>(result.getErrors().keySet()));
+            assertTrue(result.getErrors().get(rejected).startsWith(code + ":"));
+            // 8 -> 4 + 4 -> 2 + 2 -> 1 + 1
+            assertEquals(7, result.getRequestCount());
+        }
+    }
+
+    @Test
+    public void postgrestErrorsFailTheWholeBatch() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(400)
+                        .setBody("{\"code\":\"PGRST204\",\"message\":\"Could not find the 'x' column\"}");
+            }
+        });
+        List<Photo> photos = photos(8, 0);
+        BulkResult result = new BulkResult();
+        upsert.upsert(photos, result);
+
+        assertEquals(1, result.getRequestCount());
+        assertTrue(result.getSavedIds().isEmpty());
+        assertEquals(ids(photos), new ArrayList<>(result.getErrors().keySet()));
+    }
+
+    @Test
+    public void sameRejectionInBothHalvesFailsTheBatch() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(422)
+                        .setBody("{\"code\":\"23514\",\"message\":\"violates check constraint\"}");
+            }
+        });
+        List<Photo> photos = photos(8, 0);
+        BulkResult result = new BulkResult();
+        upsert.upsert(photos, result);
+
+        // 8 -> 4 + 4, as duas recusadas com o mesmo erro
+        assertEquals(3, result.getRequestCount());
+        assertTrue(result.getSavedIds().isEmpty());
+        assertEquals(ids(photos).size(), result.getErrors().size());
+        assertTrue(result.getErrors().get(photos.get(0).getId()).startsWith("422:"));
+    }
+
+    @Test
+    public void authAndServerErrorsFailTheWholeBatch() {
+        for (int code : new int[]{401, 403, 408, 429, 500, 503}) {
+            server.setDispatcher(status(code));
+            List<Photo> photos = photos(8, 0);
+            BulkResult result = new BulkResult();
+            upsert.upsert(photos, result);
+
+            assertEquals("HTTP " + code, 1, result.getRequestCount());
+            assertTrue(result.getSavedIds().isEmpty());
+            assertEquals(ids(photos), new ArrayList<>(result.getErrors().keySet()));
+        }
+    }
+
+    @Test
+    public void networkFailureFailsTheBatch() throws Exception {
+        server.shutdown();
+        List<Photo> photos = photos(3, 0);
+        BulkResult result = new BulkResult();
+        upsert.upsert(photos, result);
+
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getRequestCount());
+        assertEquals(ids(photos), new ArrayList<>(result.getErrors().keySet()));
+    }
+
+    private static Dispatcher status(int code) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(code).setBody(code >= 400 ? "{\"message\":\"erro\"}" : "");
+            }
+        };
+    }
+
+    private static JsonArray rowsOf(RecordedRequest request) {
+        return JsonParser.parseString(request.getBody().readUtf8()).getAsJsonArray();
+    }
+
+    /**
+     * Fotos com IDs distintos e descrição do tamanho pedido
+     */
+    private static List<Photo> photos(int count, int descriptionChars) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < descriptionChars; i++) {
+            description.append('a');
+        }
+        List<Photo> photos = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Photo photo = Photo.blank();
+            photo.setId(String.format("0190f5c2-5a3c-7000-9abc-%012d", i));
+            photo.setLocationId(LOCATION_ID);
+            photo.setFilePath("fotos/" + i + ".jpg");
+            photo.setCreatedAt(new Date(1714566900000L + i));
+            photo.setDescription(description.toString());
+            photos.add(photo);
+        }
+        return photos;
+    }
+
+    private static List<String> ids(List<Photo> photos) {
+        List<String> ids = new ArrayList<>();
+        for (Photo photo : photos) {
+            ids.add(photo.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,116 @@
+package com.kopecode.palmastour.data;
+
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Datas ISO-8601 como o PostgREST devolve e como o aplicativo envia.
+ */
+public class IsoDatesTest {
+
+    @Test
+    public void parsesUtcDesignator() {
+        assertEquals(millis("2024-05-01T12:34:56.789Z"), IsoDates.parseMillis("2024-05-01T12:34:56.789Z"));
+        assertEquals(millis("2024-05-01T12:34:56.789Z"), IsoDates.parseMillis("2024-05-01t12:34:56.789z"));
+    }
+
+    @Test
+    public void parsesOffsets() {
+        long utc = millis("2024-05-01T12:34:56Z");
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01T12:34:56+00:00"));
+        // Palmas fica em UTC-3
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01T09:34:56-03:00"));
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01T18:04:56+05:30"));
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01T18:04:56+0530"));
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01T15:34:56+03"));
+        // Sem deslocamento, a hora é UTC
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01T12:34:56"));
+        assertEquals(utc, IsoDates.parseMillis("2024-05-01 12:34:56+00"));
+    }
+
+    @Test
+    public void offsetCanChangeTheDay() {
+        assertEquals(millis("2024-03-01T01:30:00Z"), IsoDates.parseMillis("2024-02-29T22:30:00-03:00"));
+        assertEquals(millis("2023-12-31T23:00:00Z"), IsoDates.parseMillis("2024-01-01T02:00:00+03:00"));
+    }
+
+    @Test
+    public void parsesZeroToSixFractionDigits() {
+        String base = "2024-05-01T12:34:56";
+        long seconds = millis(base + "Z");
+        assertEquals(seconds, IsoDates.parseMillis(base + "Z"));
+        assertEquals(seconds + 700, IsoDates.parseMillis(base + ".7Z"));
+        assertEquals(seconds + 780, IsoDates.parseMillis(base + ".78Z"));
+        assertEquals(seconds + 789, IsoDates.parseMillis(base + ".789Z"));
+        assertEquals(seconds + 789, IsoDates.parseMillis(base + ".7891Z"));
+        assertEquals(seconds + 789, IsoDates.parseMillis(base + ".78912Z"));
+        // Microssegundos, como o timestamptz do PostgREST: truncados, não arredondados
+        assertEquals(seconds + 789, IsoDates.parseMillis(base + ".789999+00:00"));
+        assertEquals(seconds + 5, IsoDates.parseMillis(base + ".005123+00:00"));
+    }
+
+    @Test
+    public void parsesWithoutSeconds() {
+        assertEquals(millis("2024-05-01T12:34:00Z"), IsoDates.parseMillis("2024-05-01T12:34Z"));
+    }
+
+    @Test
+    public void parsesDatesBefore1970() {
+        assertEquals(millis("1969-12-31T23:59:59.999Z"), IsoDates.parseMillis("1969-12-31T23:59:59.999Z"));
+        assertEquals(millis("1900-03-01T00:00:00Z"), IsoDates.parseMillis("1900-03-01T00:00:00Z"));
+    }
+
+    @Test
+    public void rejectsInvalidText() {
+        String[] invalid = {
+                "",
+                "2024-05-01",
+                "2024/05/01T12:34:56Z",
+                "2024-05-01X12:34:56Z",
+                "2024-13-01T12:34:56Z",
+                "2023-02-29T12:34:56Z",
+                "2024-04-31T12:34:56Z",
+                "2024-05-01T24:00:00Z",
+                "2024-05-01T12:60:00Z",
+                "2024-05-01T12:34:56.Z",
+                "2024-05-01T12:34:56.1234567890Z",
+                "2024-05-01T12:34:56+19:00",
+                "2024-05-01T12:34:56+03:60",
+                "2024-05-01T12:34:56+3",
+                "2024-05-01T12:34:56Z ",
+                "2024-05-01T12:34:56 UTC",
+                "abcd-ef-ghTij:kl:mnZ",
+        };
+        for (String text : invalid) {
+            try {
+                IsoDates.parseMillis(text);
+                fail("Deveria rejeitar: " + text);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void formatsInUtcWithMillis() {
+        Date date = new Date(millis("2024-05-01T09:34:56.007-03:00"));
+        assertEquals("2024-05-01T12:34:56.007Z", IsoDates.format(date));
+        assertEquals("1970-01-01T00:00:00.000Z", IsoDates.format(new Date(0)));
+    }
+
+    @Test
+    public void formatThenParseKeepsTheInstant() {
+        long[] instants = {0L, 1L, -1L, 1714566896789L, 253402300799999L};
+        for (long instant : instants) {
+            assertEquals(instant, IsoDates.parse(IsoDates.format(new Date(instant))).getTime());
+        }
+    }
+
+    private static long millis(String text) {
+        return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,132 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.internal.bind.util.ISO8601Utils;
+import com.google.gson.reflect.TypeToken;
+import com.kopecode.palmastour.model.Photo;
+
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compara a leitura das respostas do PostgREST pelos adaptadores com a leitura
+ * por reflexão e o {@code setDateFormat} usados antes. Não é um teste (não tem
+ * {@code @Test}); roda na JVM, a partir das classes compiladas dos testes:
+ *
+ * <pre>
+ * ./gradlew :app:compileDebugUnitTestJavaWithJavac
+ * java -cp &lt;classes do app e dos testes&gt;:&lt;gson&gt; com.kopecode.palmastour.data.ModelDecodingBenchmark
+ * </pre>
+ *
+ * Cada medida é a mediana de várias rodadas, depois de um aquecimento para o JIT.
+ */
+public final class ModelDecodingBenchmark {
+    private static final int PHOTOS = 1000;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int ROUNDS = 200;
+    private static final Type PHOTO_LIST = new TypeToken<List<Photo>>() {}.getType();
+
+    // Resultado de cada rodada, para o JIT não descartar o trabalho
+    private static long sink;
+
+    private ModelDecodingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String json = photoArray(PHOTOS);
+        Gson adapters = ModelTypeAdaptersTest.adapterGson();
+        Gson reflective = new GsonBuilder()
+                .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+                .excludeFieldsWithoutExposeAnnotation()
+                .create();
+
+        double reflectiveMs = median(() -> sink += reflective.<List<Photo>>fromJson(json, PHOTO_LIST).size());
+        double adapterMs = median(() -> sink += JsonStreamDecoder.readPhotos(new StringReader(json), adapters).size());
+        report(PHOTOS + " fotos, reflexão", reflectiveMs);
+        report(PHOTOS + " fotos, adaptadores", adapterMs);
+        System.out.printf(Locale.ROOT, "  %.1fx%n", reflectiveMs / adapterMs);
+
+        // Datas como o PostgREST devolve: o padrão com 'Z' literal falha e só então o Gson tenta ISO-8601
+        String[] dates = new String[PHOTOS];
+        for (int i = 0; i < PHOTOS; i++) {
+            dates[i] = String.format(Locale.ROOT, "2024-05-01T12:%02d:%02d.%06d+00:00", i / 60 % 60, i % 60, i * 997);
+        }
+        SimpleDateFormat oldFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        double oldDatesMs = median(() -> {
+            for (String date : dates) {
+                try {
+                    sink += oldFormat.parse(date).getTime();
+                } catch (ParseException e) {
+                    sink += ISO8601Utils.parse(date, new ParsePosition(0)).getTime();
+                }
+            }
+        });
+        double isoDatesMs = median(() -> {
+            for (String date : dates) {
+                sink += IsoDates.parseMillis(date);
+            }
+        });
+        report(PHOTOS + " datas, SimpleDateFormat + ISO8601Utils", oldDatesMs);
+        report(PHOTOS + " datas, IsoDates", isoDatesMs);
+        System.out.printf(Locale.ROOT, "  %.1fx%n", oldDatesMs / isoDatesMs);
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private interface Round {
+        void run() throws Exception;
+    }
+
+    /**
+     * Mediana, em milissegundos, do tempo de uma rodada
+     */
+    private static double median(Round round) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long[] times = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[ROUNDS / 2] / 1_000_000.0;
+    }
+
+    private static void report(String label, double millis) {
+        System.out.printf(Locale.ROOT, "%-45s %8.3f ms%n", label, millis);
+    }
+
+    /**
+     * Array de fotos no formato de {@code GET /rest/v1/photos}
+     */
+    private static String photoArray(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String id = String.format(Locale.ROOT, "0190f5c2-5a3b-7c4d-8e5f-%012d", i);
+            json.append("{\"id\":\"").append(id)
+                    .append("\",\"location_id\":\"0190f5c2-5a3b-7c4d-8e5f-6a7b8c9d0e1f\"")
+                    .append(",\"file_path\":\"/storage/emulated/0/Pictures/foto_").append(i).append(".jpg\"")
+                    .append(",\"storage_url\":\"https://exemplo.supabase.co/storage/v1/object/public/photos/")
+                    .append(id).append(".jpg\"")
+                    .append(",\"thumbnail_url\":null")
+                    .append(",\"description\":\"Foto da localização\"")
+                    .append(String.format(Locale.ROOT, ",\"created_at\":\"2024-05-01T12:%02d:%02d.%06d+00:00\"",
+                            i / 60 % 60, i % 60, i * 997))
+                    .append(",\"updated_at\":\"2024-05-01T12:00:00+00:00\"}");
+        }
+        return json.append(']').toString();
+    }
+}
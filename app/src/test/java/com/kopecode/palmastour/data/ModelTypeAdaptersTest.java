@@ -0,0 +1,225 @@
+package com.kopecode.palmastour.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.kopecode.palmastour.model.Location;
+import com.kopecode.palmastour.model.Photo;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LocationTypeAdapter} e {@link PhotoTypeAdapter} comparados com a
+ * serialização por reflexão que eles substituíram.
+ */
+public class ModelTypeAdaptersTest {
+    private static final String LOCATION_ID = "0190f5c2-5a3b-7c4d-8e5f-6a7b8c9d0e1f";
+    private static final String PHOTO_ID = "0190f5c2-5a3c-7000-9abc-def012345678";
+
+    private final Gson adapters = adapterGson();
+    // Mesma configuração de antes dos adaptadores, só com o formato de data corrigido
+    private final Gson reflective = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new IsoDateAdapter())
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+
+    @Test
+    public void locationWriteMatchesReflectiveOutput() {
+        Location location = sampleLocation();
+        location.addPhoto(samplePhoto());
+        location.setPhotoCount(1);
+        location.setCoverPhotoUrl("https://exemplo.supabase.co/thumb.jpg");
+        location.setLastPhotoAt(new Date(1714566900000L));
+
+        assertEquals(reflective.toJson(location), adapters.toJson(location));
+        assertEquals("{\"id\":\"" + LOCATION_ID + "\",\"latitude\":-10.184,\"longitude\":-48.3336,"
+                        + "\"name\":\"Praça dos Girassóis\",\"created_at\":\"2024-05-01T12:34:56.789Z\"}",
+                adapters.toJson(location));
+    }
+
+    @Test
+    public void photoWriteMatchesReflectiveOutput() {
+        Photo photo = samplePhoto();
+        assertEquals(reflective.toJson(photo), adapters.toJson(photo));
+
+        // Campos nulos não são escritos, como na reflexão
+        photo.setStorageUrl(null);
+        photo.setThumbnailUrl(null);
+        photo.setDescription(null);
+        assertEquals(reflective.toJson(photo), adapters.toJson(photo));
+    }
+
+    @Test
+    public void photoRoundTrip() {
+        Photo photo = samplePhoto();
+        Photo read = adapters.fromJson(adapters.toJson(photo), Photo.class);
+        assertPhotoEquals(photo, read);
+        assertPhotoEquals(reflective.fromJson(reflective.toJson(photo), Photo.class), read);
+    }
+
+    @Test
+    public void locationRoundTrip() {
+        Location location = sampleLocation();
+        Location read = adapters.fromJson(adapters.toJson(location), Location.class);
+        Location old = reflective.fromJson(reflective.toJson(location), Location.class);
+        for (Location other : new Location[]{location, old}) {
+            assertEquals(other.getId(), read.getId());
+            assertEquals(other.getLatitude(), read.getLatitude(), 0);
+            assertEquals(other.getLongitude(), read.getLongitude(), 0);
+            assertEquals(other.getName(), read.getName());
+            assertEquals(other.getCreatedAt(), read.getCreatedAt());
+        }
+    }
+
+    @Test
+    public void readsEmbeddedPhotosAndSummary() throws Exception {
+        String json = "[{\"id\":\"" + LOCATION_ID + "\",\"latitude\":-10.184,\"longitude\":-48.3336,"
+                + "\"name\":\"Praça dos Girassóis\",\"created_at\":\"2024-05-01T12:34:56.789123+00:00\","
+                + "\"updated_at\":\"2024-05-02T08:00:00+00:00\","
+                + "\"photo_count\":3,\"cover_photo_url\":\"https://exemplo/capa.jpg\","
+                + "\"last_photo_at\":\"2024-05-01T09:40:00-03:00\","
+                + "\"photos\":[{\"id\":\"" + PHOTO_ID + "\",\"location_id\":\"" + LOCATION_ID + "\","
+                + "\"file_path\":\"fotos/a.jpg\",\"storage_url\":null,\"created_at\":\"2024-05-01T12:35:00Z\"}]}]";
+        List<Location> locations = JsonStreamDecoder.readLocations(new StringReader(json), adapters);
+
+        assertEquals(1, locations.size());
+        Location location = locations.get(0);
+        assertEquals(LOCATION_ID, location.getId());
+        assertEquals(1714566896789L, location.getCreatedAt().getTime());
+        assertEquals(3, location.getPhotoCount());
+        assertEquals("https://exemplo/capa.jpg", location.getCoverPhotoUrl());
+        assertEquals(1714567200000L, location.getLastPhotoAt().getTime());
+        assertEquals(1, location.getPhotos().size());
+        Photo photo = location.getPhotos().get(0);
+        assertEquals(PHOTO_ID, photo.getId());
+        assertEquals("fotos/a.jpg", photo.getFilePath());
+        assertNull(photo.getStorageUrl());
+    }
+
+    @Test
+    public void readsPostgrestCountAsPhotoCount() {
+        // select=photo_count:photos(count) traz a contagem como uma lista com um objeto
+        Location location = adapters.fromJson("{\"id\":\"" + LOCATION_ID + "\",\"photo_count\":[{\"count\":4}]}",
+                Location.class);
+        assertEquals(4, location.getPhotoCount());
+        assertTrue(location.getPhotos().isEmpty());
+    }
+
+    @Test
+    public void nullAndMissingFieldsKeepDefaults() {
+        Location location = adapters.fromJson("{\"id\":\"" + LOCATION_ID + "\",\"name\":null,"
+                + "\"created_at\":null,\"photo_count\":null,\"desconhecido\":{\"a\":[1,2]}}", Location.class);
+        assertEquals(LOCATION_ID, location.getId());
+        assertNull(location.getName());
+        assertNull(location.getCreatedAt());
+        assertEquals(0, location.getLatitude(), 0);
+        assertFalse(location.hasPhotoSummary());
+        assertTrue(location.getPhotos().isEmpty());
+
+        Photo photo = adapters.fromJson("{\"location_id\":\"" + LOCATION_ID + "\"}", Photo.class);
+        assertNull(photo.getId());
+        assertNull(photo.getCreatedAt());
+        assertEquals(LOCATION_ID, photo.getLocationId());
+
+        assertNull(adapters.fromJson("null", Location.class));
+        assertNull(adapters.fromJson("null", Photo.class));
+    }
+
+    @Test
+    public void nullModelsAreWrittenAsNull() {
+        assertEquals("null", adapters.toJson(null, Location.class));
+        assertEquals("null", adapters.toJson(null, Photo.class));
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void invalidDateIsSyntaxError() {
+        adapters.fromJson("{\"id\":\"" + PHOTO_ID + "\",\"created_at\":\"ontem\"}", Photo.class);
+    }
+
+    @Test
+    public void invalidJsonIsRejectedLikeReflection() {
+        String[] invalid = {
+                "{\"id\":\"" + LOCATION_ID + "\",\"latitude\":\"norte\"}",
+                "{\"id\":\"" + LOCATION_ID + "\",\"name\":{}}",
+                "[]",
+                "{\"id\":",
+        };
+        for (String json : invalid) {
+            assertEquals(json, failure(reflective, json), failure(adapters, json));
+        }
+    }
+
+    @Test
+    public void writtenColumnsMatchConstants() {
+        assertEquals(LocationTypeAdapter.COLUMNS, String.join(",",
+                JsonParser.parseString(adapters.toJson(sampleLocation())).getAsJsonObject().keySet()));
+        assertEquals(PhotoTypeAdapter.COLUMNS, String.join(",",
+                JsonParser.parseString(adapters.toJson(samplePhoto())).getAsJsonObject().keySet()));
+    }
+
+    /**
+     * Classe da exceção lançada ao ler o JSON como localização
+     */
+    private static Class<?> failure(Gson gson, String json) {
+        try {
+            gson.fromJson(json, Location.class);
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+        fail("Deveria rejeitar: " + json);
+        return null;
+    }
+
+    /**
+     * Mesma configuração do {@link SupabaseClient}
+     */
+    static Gson adapterGson() {
+        IsoDateAdapter dateAdapter = new IsoDateAdapter();
+        PhotoTypeAdapter photoAdapter = new PhotoTypeAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Photo.class, photoAdapter)
+                .registerTypeAdapter(Location.class, new LocationTypeAdapter(photoAdapter, dateAdapter))
+                .excludeFieldsWithoutExposeAnnotation()
+                .create();
+    }
+
+    private static Location sampleLocation() {
+        Location location = Location.blank();
+        location.setId(LOCATION_ID);
+        location.setLatitude(-10.184);
+        location.setLongitude(-48.3336);
+        location.setName("Praça dos Girassóis");
+        location.setCreatedAt(new Date(1714566896789L));
+        return location;
+    }
+
+    private static Photo samplePhoto() {
+        Photo photo = Photo.blank();
+        photo.setId(PHOTO_ID);
+        photo.setLocationId(LOCATION_ID);
+        photo.setFilePath("/storage/emulated/0/Pictures/a.jpg");
+        photo.setStorageUrl("https://exemplo.supabase.co/storage/v1/object/public/photos/a.jpg");
+        photo.setThumbnailUrl("https://exemplo.supabase.co/storage/v1/object/public/photos/a_thumb.jpg");
+        photo.setCreatedAt(new Date(1714566900123L));
+        photo.setDescription("Foto da localização");
+        return photo;
+    }
+
+    private static void assertPhotoEquals(Photo expected, Photo actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getLocationId(), actual.getLocationId());
+        assertEquals(expected.getFilePath(), actual.getFilePath());
+        assertEquals(expected.getStorageUrl(), actual.getStorageUrl());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getDescription(), actual.getDescription());
+    }
+}
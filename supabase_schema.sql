@@ -1,18 +1,34 @@
 -- Esquema do banco de dados Supabase para o aplicativo PalmasTour
+--
+-- O script pode ser executado de novo em um projeto já implantado: tabelas,
+-- índices, políticas e gatilhos existentes são mantidos ou recriados, e as
+-- colunas acrescentadas depois da primeira versão entram por ALTER TABLE.
 
 -- Tabela para armazenar localizações
-CREATE TABLE locations (
+CREATE TABLE IF NOT EXISTS locations (
     id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
     latitude DOUBLE PRECISION NOT NULL,
     longitude DOUBLE PRECISION NOT NULL,
     name TEXT,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW()
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    -- Resumo das fotos, mantido pelos gatilhos de photos (ver abaixo)
+    photo_count INTEGER NOT NULL DEFAULT 0,
+    cover_photo_url TEXT,
+    last_photo_at TIMESTAMP WITH TIME ZONE
 );
 
+-- Colunas acrescentadas depois da primeira versão (projetos já implantados)
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW();
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS photo_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS cover_photo_url TEXT;
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS last_photo_at TIMESTAMP WITH TIME ZONE;
+
 -- Habilitar RLS (Row Level Security) para a tabela locations
 ALTER TABLE locations ENABLE ROW LEVEL SECURITY;
 
 -- Criar política para permitir acesso anônimo de leitura e escrita
+DROP POLICY IF EXISTS "Permitir acesso anônimo a locations" ON locations;
 CREATE POLICY "Permitir acesso anônimo a locations" ON locations
     FOR ALL
     TO anon
@@ -20,32 +36,369 @@ CREATE POLICY "Permitir acesso anônimo a locations" ON locations
     WITH CHECK (true);
 
 -- Tabela para armazenar fotos associadas a localizações
-CREATE TABLE photos (
+CREATE TABLE IF NOT EXISTS photos (
     id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
     location_id UUID NOT NULL REFERENCES locations(id) ON DELETE CASCADE,
     file_path TEXT,
     storage_url TEXT,
+    thumbnail_url TEXT,
     description TEXT,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW()
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
 );
 
+ALTER TABLE photos ADD COLUMN IF NOT EXISTS thumbnail_url TEXT;
+ALTER TABLE photos ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW();
+
 -- Habilitar RLS (Row Level Security) para a tabela photos
 ALTER TABLE photos ENABLE ROW LEVEL SECURITY;
 
 -- Criar política para permitir acesso anônimo de leitura e escrita
+DROP POLICY IF EXISTS "Permitir acesso anônimo a photos" ON photos;
 CREATE POLICY "Permitir acesso anônimo a photos" ON photos
     FOR ALL
     TO anon
     USING (true)
     WITH CHECK (true);
 
--- Criar índice para melhorar a performance de consultas por location_id
-CREATE INDEX idx_photos_location_id ON photos(location_id);
+-- Índices na ordem da paginação por chave (created_at, id) usada pelo aplicativo.
+-- O de photos começa por location_id e substitui o antigo idx_photos_location_id
+-- nas consultas por localização e na exclusão em cascata; o antigo só é
+-- removido depois que o novo existe.
+CREATE INDEX IF NOT EXISTS idx_locations_created_at_id ON locations(created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_photos_location_created_at_id ON photos(location_id, created_at, id);
+DROP INDEX IF EXISTS idx_photos_location_id;
+
+-- Resumo das fotos em locations ------------------------------------------------
+
+-- photo_count, cover_photo_url (miniatura da primeira foto) e last_photo_at
+-- (data da foto mais recente) ficam na própria linha da localização, para que
+-- a galeria seja uma leitura de locations pelo idx_locations_created_at_id, sem
+-- juntar nem contar fotos. As três consultas usam idx_photos_location_created_at_id.
+-- A linha só é alterada se o resumo mudou; quando muda, updated_at também muda e
+-- a localização chega aos aparelhos pela sincronização e pelo tempo real.
+CREATE OR REPLACE FUNCTION refresh_location_summaries(p_ids UUID[])
+RETURNS VOID
+LANGUAGE sql
+AS $$
+    UPDATE locations l
+    SET photo_count = s.photo_count,
+        cover_photo_url = s.cover_photo_url,
+        last_photo_at = s.last_photo_at
+    FROM (
+        SELECT l2.id,
+               (SELECT COUNT(*) FROM photos p WHERE p.location_id = l2.id) AS photo_count,
+               (SELECT COALESCE(p.thumbnail_url, p.storage_url)
+                FROM photos p
+                WHERE p.location_id = l2.id AND COALESCE(p.thumbnail_url, p.storage_url) IS NOT NULL
+                ORDER BY p.created_at, p.id
+                LIMIT 1) AS cover_photo_url,
+               (SELECT MAX(p.created_at) FROM photos p WHERE p.location_id = l2.id) AS last_photo_at
+        FROM locations l2
+        WHERE l2.id = ANY(p_ids)
+    ) s
+    WHERE l.id = s.id
+      AND (l.photo_count, l.cover_photo_url, l.last_photo_at)
+          IS DISTINCT FROM (s.photo_count, s.cover_photo_url, s.last_photo_at);
+$$;
+
+-- Gatilhos por instrução, com as tabelas de transição: uma gravação em lote de
+-- fotos recalcula cada localização afetada uma única vez. O PostgreSQL não aceita
+-- tabelas de transição em gatilhos com mais de um evento, por isso são três.
+CREATE OR REPLACE FUNCTION refresh_photo_locations()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM refresh_location_summaries(ARRAY(SELECT DISTINCT location_id FROM new_rows));
+    ELSIF TG_OP = 'UPDATE' THEN
+        -- Inclui a localização anterior de uma foto movida
+        PERFORM refresh_location_summaries(ARRAY(
+            SELECT location_id FROM new_rows UNION SELECT location_id FROM old_rows));
+    ELSE
+        -- Na exclusão em cascata a localização já não existe, e nada é alterado
+        PERFORM refresh_location_summaries(ARRAY(SELECT DISTINCT location_id FROM old_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS photos_refresh_summary_insert ON photos;
+CREATE TRIGGER photos_refresh_summary_insert
+    AFTER INSERT ON photos
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_photo_locations();
+
+DROP TRIGGER IF EXISTS photos_refresh_summary_update ON photos;
+CREATE TRIGGER photos_refresh_summary_update
+    AFTER UPDATE ON photos
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_photo_locations();
+
+DROP TRIGGER IF EXISTS photos_refresh_summary_delete ON photos;
+CREATE TRIGGER photos_refresh_summary_delete
+    AFTER DELETE ON photos
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_photo_locations();
+
+-- Sincronização incremental ---------------------------------------------------
+
+-- updated_at é mantido pelo banco em toda inserção e alteração, para que o
+-- aplicativo possa buscar apenas o que mudou desde a última sincronização
+CREATE OR REPLACE FUNCTION set_updated_at()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    NEW.updated_at := NOW();
+    RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS locations_set_updated_at ON locations;
+CREATE TRIGGER locations_set_updated_at
+    BEFORE INSERT OR UPDATE ON locations
+    FOR EACH ROW EXECUTE FUNCTION set_updated_at();
+
+DROP TRIGGER IF EXISTS photos_set_updated_at ON photos;
+CREATE TRIGGER photos_set_updated_at
+    BEFORE INSERT OR UPDATE ON photos
+    FOR EACH ROW EXECUTE FUNCTION set_updated_at();
+
+CREATE INDEX IF NOT EXISTS idx_locations_updated_at ON locations(updated_at);
+CREATE INDEX IF NOT EXISTS idx_photos_updated_at ON photos(updated_at);
+
+-- created_at é gravado com a precisão do aplicativo (milissegundos). O cursor da
+-- paginação por chave devolve ao servidor o created_at da última linha recebida;
+-- com microssegundos, o valor devolvido não seria igual ao gravado e as linhas do
+-- mesmo milissegundo seriam puladas ou repetidas entre páginas.
+CREATE OR REPLACE FUNCTION truncate_created_at()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    NEW.created_at := date_trunc('milliseconds', NEW.created_at);
+    RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS locations_truncate_created_at ON locations;
+CREATE TRIGGER locations_truncate_created_at
+    BEFORE INSERT OR UPDATE OF created_at ON locations
+    FOR EACH ROW EXECUTE FUNCTION truncate_created_at();
+
+DROP TRIGGER IF EXISTS photos_truncate_created_at ON photos;
+CREATE TRIGGER photos_truncate_created_at
+    BEFORE INSERT OR UPDATE OF created_at ON photos
+    FOR EACH ROW EXECUTE FUNCTION truncate_created_at();
+
+-- Linhas gravadas antes do gatilho. Fica depois dos gatilhos de updated_at para
+-- que os aparelhos recebam o novo valor na próxima sincronização incremental.
+UPDATE locations SET created_at = date_trunc('milliseconds', created_at)
+    WHERE created_at <> date_trunc('milliseconds', created_at);
+UPDATE photos SET created_at = date_trunc('milliseconds', created_at)
+    WHERE created_at <> date_trunc('milliseconds', created_at);
+
+-- Preenche o resumo das fotos das localizações que já existiam antes dos
+-- gatilhos de resumo. Fica depois de locations_set_updated_at para que as linhas
+-- alteradas cheguem aos aparelhos na próxima sincronização incremental; as que
+-- já estão em dia não são alteradas.
+SELECT refresh_location_summaries(ARRAY(SELECT id FROM locations));
+
+-- Registros excluídos (tombstones), para que a exclusão também chegue aos
+-- aparelhos que sincronizam depois dela. Fotos excluídas em cascata junto com
+-- a localização também são registradas.
+CREATE TABLE IF NOT EXISTS deleted_rows (
+    table_name TEXT NOT NULL,
+    row_id UUID NOT NULL,
+    deleted_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (table_name, row_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_deleted_rows_deleted_at ON deleted_rows(deleted_at);
+
+ALTER TABLE deleted_rows ENABLE ROW LEVEL SECURITY;
+
+DROP POLICY IF EXISTS "Permitir leitura anônima de deleted_rows" ON deleted_rows;
+CREATE POLICY "Permitir leitura anônima de deleted_rows" ON deleted_rows
+    FOR SELECT
+    TO anon
+    USING (true);
+
+-- SECURITY DEFINER: o acesso anônimo só pode ler deleted_rows, mas suas
+-- exclusões precisam registrar o tombstone. O search_path fixo e o nome
+-- qualificado impedem que um objeto criado em outro esquema seja usado no lugar
+-- de public.deleted_rows com os privilégios do dono da função.
+CREATE OR REPLACE FUNCTION record_deleted_row()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public, pg_temp
+AS $$
+BEGIN
+    INSERT INTO public.deleted_rows (table_name, row_id, deleted_at)
+    VALUES (TG_TABLE_NAME, OLD.id, NOW())
+    ON CONFLICT (table_name, row_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at;
+    RETURN OLD;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS locations_record_deleted ON locations;
+CREATE TRIGGER locations_record_deleted
+    AFTER DELETE ON locations
+    FOR EACH ROW EXECUTE FUNCTION record_deleted_row();
+
+DROP TRIGGER IF EXISTS photos_record_deleted ON photos;
+CREATE TRIGGER photos_record_deleted
+    AFTER DELETE ON photos
+    FOR EACH ROW EXECUTE FUNCTION record_deleted_row();
+
+-- Os tombstones são mantidos por 30 dias; um aparelho que ficar mais tempo sem
+-- sincronizar baixa tudo de novo. Agende a limpeza (ex.: pg_cron, diariamente):
+--   SELECT purge_deleted_rows();
+CREATE OR REPLACE FUNCTION purge_deleted_rows()
+RETURNS VOID
+LANGUAGE sql
+AS $$
+    DELETE FROM deleted_rows WHERE deleted_at < NOW() - INTERVAL '30 days';
+$$;
+
+-- Alterações desde p_since, em uma única resposta: localizações e fotos
+-- inseridas ou alteradas, e os IDs excluídos. Sem p_since, retorna tudo.
+-- server_time é o próximo ponto de partida do aplicativo.
+CREATE OR REPLACE FUNCTION sync_changes(p_since TIMESTAMP WITH TIME ZONE DEFAULT NULL)
+RETURNS JSONB
+LANGUAGE sql
+STABLE
+AS $$
+    SELECT jsonb_build_object(
+        'server_time', NOW(),
+        'locations', COALESCE((
+            SELECT jsonb_agg(l ORDER BY l.updated_at, l.id)
+            FROM locations l
+            WHERE p_since IS NULL OR l.updated_at > p_since
+        ), '[]'::JSONB),
+        'photos', COALESCE((
+            SELECT jsonb_agg(p ORDER BY p.updated_at, p.id)
+            FROM photos p
+            WHERE p_since IS NULL OR p.updated_at > p_since
+        ), '[]'::JSONB),
+        'deleted', COALESCE((
+            SELECT jsonb_agg(jsonb_build_object('table_name', d.table_name, 'row_id', d.row_id))
+            FROM deleted_rows d
+            WHERE p_since IS NOT NULL AND d.deleted_at > p_since
+        ), '[]'::JSONB)
+    );
+$$;
+
+GRANT EXECUTE ON FUNCTION sync_changes(TIMESTAMP WITH TIME ZONE) TO anon;
+
+-- Publicar as alterações das tabelas no Supabase Realtime (postgres_changes).
+-- ADD TABLE falha se a tabela já estiver na publicação.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_publication_tables
+                   WHERE pubname = 'supabase_realtime' AND tablename = 'locations') THEN
+        ALTER PUBLICATION supabase_realtime ADD TABLE locations;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_publication_tables
+                   WHERE pubname = 'supabase_realtime' AND tablename = 'photos') THEN
+        ALTER PUBLICATION supabase_realtime ADD TABLE photos;
+    END IF;
+END;
+$$;
+
+-- Função para salvar uma localização e suas fotos em uma única transação.
+-- Recebe a localização e a lista de fotos em JSON e retorna os IDs persistidos,
+-- evitando que o aplicativo precise buscar a localização recém-criada.
+-- É idempotente: a localização e as fotos já existentes (mesmo ID) são mantidas,
+-- o que permite enviar as fotos de uma mesma localização em várias chamadas.
+CREATE OR REPLACE FUNCTION save_work(p_location JSONB, p_photos JSONB DEFAULT '[]'::JSONB)
+RETURNS JSONB
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_location_id UUID := COALESCE((p_location->>'id')::UUID, uuid_generate_v4());
+    v_photo_ids UUID[];
+BEGIN
+    INSERT INTO locations (id, latitude, longitude, name, created_at)
+    VALUES (
+        v_location_id,
+        (p_location->>'latitude')::DOUBLE PRECISION,
+        (p_location->>'longitude')::DOUBLE PRECISION,
+        p_location->>'name',
+        COALESCE((p_location->>'created_at')::TIMESTAMP WITH TIME ZONE, NOW())
+    )
+    ON CONFLICT (id) DO NOTHING;
+
+    WITH requested AS (
+        SELECT
+            COALESCE((photo->>'id')::UUID, uuid_generate_v4()) AS id,
+            photo
+        FROM jsonb_array_elements(COALESCE(p_photos, '[]'::JSONB)) AS photo
+    ), inserted AS (
+        INSERT INTO photos (id, location_id, file_path, storage_url, thumbnail_url, description, created_at)
+        SELECT
+            id,
+            v_location_id,
+            photo->>'file_path',
+            photo->>'storage_url',
+            photo->>'thumbnail_url',
+            photo->>'description',
+            COALESCE((photo->>'created_at')::TIMESTAMP WITH TIME ZONE, NOW())
+        FROM requested
+        ON CONFLICT (id) DO NOTHING
+        RETURNING id
+    )
+    SELECT COALESCE(array_agg(requested.id), '{}') INTO v_photo_ids
+    FROM requested
+    WHERE requested.id IN (SELECT id FROM inserted)
+       OR EXISTS (SELECT 1 FROM photos p WHERE p.id = requested.id AND p.location_id = v_location_id);
+
+    RETURN jsonb_build_object('location_id', v_location_id, 'photo_ids', to_jsonb(v_photo_ids));
+END;
+$$;
+
+-- Permitir que o acesso anônimo execute a função
+GRANT EXECUTE ON FUNCTION save_work(JSONB, JSONB) TO anon;
+
+-- Exclusão em lote -------------------------------------------------------------
+
+-- Exclui as localizações (as fotos vão junto, em cascata) e retorna os caminhos
+-- dos arquivos nas pastas delas no bucket de fotos (<id>/ e <id>/thumbs/),
+-- inclusive os enviados por um salvamento que não chegou a terminar. O
+-- aplicativo remove esses arquivos com uma única chamada à API do storage:
+-- apagar as linhas de storage.objects pelo SQL deixaria os arquivos para trás.
+-- Pode ser repetida: enquanto os arquivos existirem, eles voltam na resposta.
+CREATE OR REPLACE FUNCTION delete_locations(p_ids UUID[])
+RETURNS JSONB
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_paths JSONB;
+    v_deleted INTEGER;
+BEGIN
+    SELECT COALESCE(jsonb_agg(o.name), '[]'::JSONB) INTO v_paths
+    FROM storage.objects o
+    WHERE o.bucket_id = 'photos'
+      AND o.name LIKE ANY (SELECT id::TEXT || '/%' FROM unnest(p_ids) AS id);
+
+    DELETE FROM locations WHERE id = ANY(p_ids);
+    GET DIAGNOSTICS v_deleted = ROW_COUNT;
+
+    RETURN jsonb_build_object('deleted', v_deleted, 'storage_paths', v_paths);
+END;
+$$;
+
+GRANT EXECUTE ON FUNCTION delete_locations(UUID[]) TO anon;
 
 -- Configurar bucket de armazenamento para as fotos
-INSERT INTO storage.buckets (id, name, public) VALUES ('photos', 'photos', true);
+INSERT INTO storage.buckets (id, name, public) VALUES ('photos', 'photos', true)
+ON CONFLICT (id) DO NOTHING;
 
 -- Criar política para permitir acesso anônimo ao bucket de fotos
+DROP POLICY IF EXISTS "Permitir acesso anônimo ao bucket de fotos" ON storage.objects;
 CREATE POLICY "Permitir acesso anônimo ao bucket de fotos" ON storage.objects
     FOR ALL
     TO anon